@@ -0,0 +1,140 @@
+package top.yifan.datasource;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import top.yifan.DBConnectionPoolMXBeanDTO;
+import top.yifan.ExecuteSQLFunction;
+import top.yifan.RetryBudget;
+import top.yifan.RetryableConnection;
+import top.yifan.SQLExecutionMetrics;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 连接池热路径的基准测试，使用 {@link InMemoryDataSourcePool}，不需要真实的数据库。
+ *
+ * <p>测量的内容：
+ * <ul>
+ *     <li>根据配置获取并归还连接（包括 {@link PoolKey#of} 与连接池查找）</li>
+ *     <li>根据预先计算的 {@link PoolKey} 获取并归还连接</li>
+ *     <li>{@link PoolKey#of} 本身，即原 generateCacheKey 的开销</li>
+ *     <li>{@link RetryableConnection#execute} 执行空函数的开销，以及创建、执行、关闭的完整过程</li>
+ *     <li>{@link RDBMSDataSourcePoolUtil#listAllPoolMXBeans()}</li>
+ * </ul>
+ *
+ * <p>连接池注册在专用的 {@link RDBMSType#InMemory} 类型下，缓存键与真实的 MySQL、SQL Server 连接池不会相互混淆。
+ *
+ * <p>运行方式：在IDE中直接运行 main 方法，或先执行 {@code mvn install -DskipTests -pl quickstart-datasource-pool-benchmark -am}，再执行
+ * {@code mvn exec:exec -pl quickstart-datasource-pool-benchmark -Dexec.executable=java -Dexec.args="-cp %classpath org.openjdk.jmh.Main DataSourcePoolBenchmark"}，
+ * 使用 -t 参数可以测量多线程竞争下的表现。不能使用 exec:java，@Fork 启动的子进程拿不到 Maven 在进程内设置的类路径
+ *
+ * @author Star Zheng
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class DataSourcePoolBenchmark {
+
+    private static final ExecuteSQLFunction<Object> NO_OP = conn -> null;
+
+    @Param({"16", "256"})
+    private int tenants;
+
+    private AbstractRDBMSDataSourcePool pool;
+    private RDBMSConnectionConfiguration config;
+    private PoolKey poolKey;
+    private RetryableConnection retryableConnection;
+
+    @Setup
+    public void setup() throws SQLException {
+        AbstractRDBMSDataSourcePool.registerInstance(RDBMSType.InMemory, new InMemoryDataSourcePool());
+        pool = AbstractRDBMSDataSourcePool.findInstance(RDBMSType.InMemory);
+        for (int i = 0; i < tenants; i++) {
+            // 预先创建所有连接池，测量时只走已存在连接池的路径
+            pool.getConnection(newConfig(i)).close();
+        }
+        config = newConfig(tenants / 2);
+        poolKey = PoolKey.of(config);
+        retryableConnection = newRetryableConnection();
+    }
+
+    @TearDown
+    public void tearDown() {
+        retryableConnection.close();
+        for (PooledDataSource dataSource : AbstractRDBMSDataSourcePool.listAllDataSources()) {
+            AbstractRDBMSDataSourcePool.evict(dataSource);
+        }
+    }
+
+    @Benchmark
+    public void getConnectionByConfig() throws SQLException {
+        Connection conn = pool.getConnection(config);
+        conn.close();
+    }
+
+    @Benchmark
+    public void getConnectionByPoolKey() throws SQLException {
+        Connection conn = pool.getConnection(poolKey);
+        conn.close();
+    }
+
+    @Benchmark
+    public PoolKey generateCacheKey() {
+        return PoolKey.of(config);
+    }
+
+    @Benchmark
+    public Object retryableExecuteNoOp() throws SQLException, InterruptedException {
+        return retryableConnection.execute(NO_OP, 3);
+    }
+
+    @Benchmark
+    public Object retryableConnectionRoundTrip() throws SQLException, InterruptedException {
+        try (RetryableConnection conn = newRetryableConnection()) {
+            return conn.execute(NO_OP, 3);
+        }
+    }
+
+    @Benchmark
+    public List<DBConnectionPoolMXBeanDTO> listAllPoolMXBeans() {
+        return RDBMSDataSourcePoolUtil.listAllPoolMXBeans();
+    }
+
+    /**
+     * 与 {@link RDBMSDataSourcePoolUtil#getRetryableConnection(RDBMSConnectionConfiguration)} 的构建方式保持一致
+     */
+    private RetryableConnection newRetryableConnection() {
+        return RetryableConnection.builder(() -> pool.getConnection(poolKey))
+                .metrics(SQLExecutionMetrics.of(poolKey.toString()))
+                .classifier(pool.getExceptionClassifier())
+                .retryBudget(RetryBudget.of(poolKey.toString()))
+                .build();
+    }
+
+    private static RDBMSConnectionConfiguration newConfig(int i) {
+        return RDBMSConnectionConfiguration.builder()
+                .type(RDBMSType.InMemory)
+                .server("10.0.0." + (i % 255))
+                .database("tenant_" + i)
+                .username("user_" + i)
+                .password("password_" + i)
+                .build();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(DataSourcePoolBenchmark.class.getSimpleName())
+                .build();
+        new Runner(options).run();
+    }
+
+}
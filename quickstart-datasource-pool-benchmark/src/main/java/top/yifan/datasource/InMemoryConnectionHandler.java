@@ -0,0 +1,95 @@
+package top.yifan.datasource;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+
+/**
+ * {@link InMemoryDriver} 创建的连接
+ *
+ * @author Star Zheng
+ */
+class InMemoryConnectionHandler implements InvocationHandler {
+
+    private final String url;
+
+    private boolean closed;
+    private boolean autoCommit = true;
+    private boolean readOnly;
+    private int transactionIsolation = Connection.TRANSACTION_READ_COMMITTED;
+    private int networkTimeout;
+    private String catalog;
+    private String schema;
+
+    InMemoryConnectionHandler(String url) {
+        this.url = url;
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) throws SQLException {
+        String name = method.getName();
+        switch (name) {
+            case "close":
+                closed = true;
+                return null;
+            case "isClosed":
+                return closed;
+            case "isValid":
+                return !closed;
+            case "getAutoCommit":
+                return autoCommit;
+            case "setAutoCommit":
+                autoCommit = (Boolean) args[0];
+                return null;
+            case "isReadOnly":
+                return readOnly;
+            case "setReadOnly":
+                readOnly = (Boolean) args[0];
+                return null;
+            case "getTransactionIsolation":
+                return transactionIsolation;
+            case "setTransactionIsolation":
+                transactionIsolation = (Integer) args[0];
+                return null;
+            case "getNetworkTimeout":
+                return networkTimeout;
+            case "setNetworkTimeout":
+                networkTimeout = (Integer) args[1];
+                return null;
+            case "getCatalog":
+                return catalog;
+            case "setCatalog":
+                catalog = (String) args[0];
+                return null;
+            case "getSchema":
+                return schema;
+            case "setSchema":
+                schema = (String) args[0];
+                return null;
+            case "commit":
+            case "rollback":
+            case "clearWarnings":
+                return null;
+            case "getWarnings":
+                return null;
+            case "isWrapperFor":
+                return ((Class<?>) args[0]).isInstance(proxy);
+            case "unwrap":
+                if (((Class<?>) args[0]).isInstance(proxy)) {
+                    return proxy;
+                }
+                throw new SQLException("Not a wrapper for " + args[0]);
+            case "equals":
+                return proxy == args[0];
+            case "hashCode":
+                return System.identityHashCode(proxy);
+            case "toString":
+                return "InMemoryConnection[" + url + "]";
+            default:
+                throw new SQLFeatureNotSupportedException("Connection." + name + " is not supported in memory");
+        }
+    }
+
+}
@@ -0,0 +1,20 @@
+package top.yifan.datasource;
+
+/**
+ * 使用 {@link InMemoryDriver} 的连接池，除驱动外与真实数据库的连接池走完全相同的路径
+ *
+ * @author Star Zheng
+ */
+public class InMemoryDataSourcePool extends AbstractRDBMSDataSourcePool {
+
+    @Override
+    protected String generateJdbcUrl(RDBMSConnectionConfiguration connectionConfig) {
+        return InMemoryDriver.URL_PREFIX + "//" + connectionConfig.getServer() + "/" + connectionConfig.getDatabase();
+    }
+
+    @Override
+    protected String getDriverName() {
+        return InMemoryDriver.class.getName();
+    }
+
+}
@@ -0,0 +1,73 @@
+package top.yifan.datasource;
+
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.Driver;
+import java.sql.DriverManager;
+import java.sql.DriverPropertyInfo;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.util.Properties;
+import java.util.logging.Logger;
+
+/**
+ * 只存在于内存中的JDBC驱动，接受 jdbc:inmemory: 开头的URL，创建连接不需要任何网络与磁盘操作，
+ * 用于在没有真实数据库的环境中测量连接池本身的开销
+ *
+ * <p>连接只维护 Hikari 需要的状态（关闭、自动提交、只读、隔离级别等），创建语句会抛出
+ * {@link SQLFeatureNotSupportedException}。
+ *
+ * @author Star Zheng
+ */
+public class InMemoryDriver implements Driver {
+
+    static final String URL_PREFIX = "jdbc:inmemory:";
+
+    static {
+        try {
+            DriverManager.registerDriver(new InMemoryDriver());
+        } catch (SQLException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    @Override
+    public Connection connect(String url, Properties info) {
+        if (!acceptsURL(url)) {
+            return null;
+        }
+        return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(), new Class[]{Connection.class},
+                new InMemoryConnectionHandler(url));
+    }
+
+    @Override
+    public boolean acceptsURL(String url) {
+        return url != null && url.startsWith(URL_PREFIX);
+    }
+
+    @Override
+    public DriverPropertyInfo[] getPropertyInfo(String url, Properties info) {
+        return new DriverPropertyInfo[0];
+    }
+
+    @Override
+    public int getMajorVersion() {
+        return 1;
+    }
+
+    @Override
+    public int getMinorVersion() {
+        return 0;
+    }
+
+    @Override
+    public boolean jdbcCompliant() {
+        return false;
+    }
+
+    @Override
+    public Logger getParentLogger() throws SQLFeatureNotSupportedException {
+        throw new SQLFeatureNotSupportedException();
+    }
+
+}
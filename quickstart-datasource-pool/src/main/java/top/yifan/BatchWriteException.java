@@ -0,0 +1,26 @@
+package top.yifan;
+
+import java.sql.SQLException;
+
+/**
+ * 批量写入失败，并记录失败前已经提交的行数，调用方可以据此跳过已写入的数据继续写入
+ *
+ * @author Star Zheng
+ */
+public class BatchWriteException extends SQLException {
+
+    private static final long serialVersionUID = -3377411632617389612L;
+
+    private final long committedRows;
+
+    public BatchWriteException(String message, long committedRows, Throwable cause) {
+        super(message, cause instanceof SQLException ? ((SQLException) cause).getSQLState() : null,
+                cause instanceof SQLException ? ((SQLException) cause).getErrorCode() : 0, cause);
+        this.committedRows = committedRows;
+    }
+
+    public long getCommittedRows() {
+        return committedRows;
+    }
+
+}
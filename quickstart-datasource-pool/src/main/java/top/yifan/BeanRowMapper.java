@@ -0,0 +1,369 @@
+package top.yifan;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.math.BigDecimal;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 基于 MethodHandle 的 JavaBean 行映射器。
+ *
+ * <p>按照 目标类型 + 列标签 构建一次映射器并全局缓存，构建时完成列与 setter 的匹配（忽略大小写和下划线，
+ * 例如 user_name 对应 setUserName），映射时只按列序号读取数据并直接调用 setter，不再查找列名和反射调用。
+ * 基本类型 int、long、double、boolean 的读取和赋值不会产生装箱；没有对应 setter 的列将被忽略。
+ * char 属性按字符串读取，值只能为单个字符，空字符串视为NULL。
+ *
+ * <p>目标类型必须是 public 的，并且有 public 的无参构造方法。
+ *
+ * @author Star Zheng
+ *
+ * @param <T> 目标类型
+ */
+public final class BeanRowMapper<T> implements RowMapper<T> {
+
+    private static final ConcurrentHashMap<MapperKey, BeanRowMapper<?>> MAPPERS = new ConcurrentHashMap<>();
+
+    private static final MethodType CONSTRUCTOR_TYPE = MethodType.methodType(Object.class);
+
+    private final Class<T> type;
+    private final MethodHandle constructor;
+    private final ColumnSetter[] setters;
+
+    private BeanRowMapper(Class<T> type, String[] labels) {
+        this.type = type;
+        MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+        try {
+            this.constructor = lookup.findConstructor(type, MethodType.methodType(void.class)).asType(CONSTRUCTOR_TYPE);
+        } catch (NoSuchMethodException | IllegalAccessException e) {
+            throw new UnsupportedTypeException("No public no-arg constructor found: " + type.getName());
+        }
+
+        Map<String, List<Method>> properties = new HashMap<>();
+        Map<String, Class<?>> getterTypes = new HashMap<>();
+        for (Method method : type.getMethods()) {
+            if (Modifier.isStatic(method.getModifiers()) || method.isBridge()) {
+                continue;
+            }
+            String name = method.getName();
+            if (name.length() > 3 && name.startsWith("set") && method.getParameterCount() == 1) {
+                properties.computeIfAbsent(normalize(name.substring(3)), k -> new ArrayList<>(1)).add(method);
+            } else if (method.getParameterCount() == 0 && method.getReturnType() != void.class) {
+                if (name.length() > 3 && name.startsWith("get") && !"getClass".equals(name)) {
+                    getterTypes.put(normalize(name.substring(3)), method.getReturnType());
+                } else if (name.length() > 2 && name.startsWith("is")) {
+                    getterTypes.putIfAbsent(normalize(name.substring(2)), method.getReturnType());
+                }
+            }
+        }
+        List<ColumnSetter> list = new ArrayList<>(labels.length);
+        for (int i = 0; i < labels.length; i++) {
+            String property = normalize(labels[i]);
+            Method method = findSetter(type, property, properties.get(property), getterTypes.get(property));
+            if (method != null) {
+                try {
+                    list.add(ColumnSetter.of(i + 1, method.getParameterTypes()[0], lookup.unreflect(method)));
+                } catch (IllegalAccessException e) {
+                    throw new UnsupportedTypeException("Setter is not accessible: " + method);
+                }
+            }
+        }
+        this.setters = list.toArray(new ColumnSetter[0]);
+    }
+
+    /**
+     * 获取目标类型与结果集列对应的映射器，同一个结果集的所有行应当使用同一个映射器
+     *
+     * @param type     - 目标类型
+     * @param metaData - 结果集的元数据
+     * @return 返回缓存的映射器，不存在时创建
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> BeanRowMapper<T> of(Class<T> type, ResultSetMetaData metaData) throws SQLException {
+        Objects.requireNonNull(type, "Type is required");
+        String[] labels = new String[metaData.getColumnCount()];
+        for (int i = 0; i < labels.length; i++) {
+            labels[i] = metaData.getColumnLabel(i + 1);
+        }
+        MapperKey key = new MapperKey(type, labels);
+        BeanRowMapper<?> mapper = MAPPERS.get(key);
+        if (mapper == null) {
+            mapper = MAPPERS.computeIfAbsent(key, k -> new BeanRowMapper<>(type, labels));
+        }
+        return (BeanRowMapper<T>) mapper;
+    }
+
+    /**
+     * 读取结果集的剩余行并映射为对象，不会关闭结果集
+     *
+     * @param rs   - 结果集
+     * @param type - 目标类型
+     * @return 返回映射后的对象
+     */
+    public static <T> List<T> mapAll(ResultSet rs, Class<T> type) throws SQLException {
+        BeanRowMapper<T> mapper = of(type, rs.getMetaData());
+        List<T> rows = new ArrayList<>();
+        while (rs.next()) {
+            rows.add(mapper.mapRow(rs));
+        }
+        return rows;
+    }
+
+    @Override
+    public T mapRow(ResultSet rs) throws SQLException {
+        try {
+            Object bean = (Object) constructor.invokeExact();
+            for (ColumnSetter setter : setters) {
+                setter.set(bean, rs);
+            }
+            return type.cast(bean);
+        } catch (SQLException | RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new SQLException("Map row to " + type.getName() + " failed, message: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * 属性有多个重载的 setter 时，选择参数类型与 getter 返回类型一致的那一个，无法确定时抛出异常，
+     * 而不是依赖 {@link Class#getMethods()} 未定义的返回顺序
+     */
+    private static Method findSetter(Class<?> type, String property, List<Method> candidates, Class<?> getterType) {
+        if (candidates == null) {
+            return null;
+        }
+        if (candidates.size() == 1) {
+            return candidates.get(0);
+        }
+        for (Method method : candidates) {
+            if (method.getParameterTypes()[0] == getterType) {
+                return method;
+            }
+        }
+        throw new UnsupportedTypeException("Ambiguous setters for property " + property + " of " + type.getName()
+                + ": " + candidates);
+    }
+
+    private static String normalize(String name) {
+        return name.replace("_", "").toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * 按列序号读取数据并赋值给属性
+     */
+    private abstract static class ColumnSetter {
+
+        private static final MethodType INT_SETTER = MethodType.methodType(void.class, Object.class, int.class);
+        private static final MethodType LONG_SETTER = MethodType.methodType(void.class, Object.class, long.class);
+        private static final MethodType DOUBLE_SETTER = MethodType.methodType(void.class, Object.class, double.class);
+        private static final MethodType BOOLEAN_SETTER = MethodType.methodType(void.class, Object.class, boolean.class);
+        private static final MethodType OBJECT_SETTER = MethodType.methodType(void.class, Object.class, Object.class);
+
+        final int index;
+        final MethodHandle handle;
+
+        ColumnSetter(int index, MethodHandle handle) {
+            this.index = index;
+            this.handle = handle;
+        }
+
+        abstract void set(Object bean, ResultSet rs) throws Throwable;
+
+        static ColumnSetter of(int index, Class<?> propertyType, MethodHandle setter) {
+            if (propertyType == int.class) {
+                return new IntSetter(index, setter.asType(INT_SETTER));
+            }
+            if (propertyType == long.class) {
+                return new LongSetter(index, setter.asType(LONG_SETTER));
+            }
+            if (propertyType == double.class) {
+                return new DoubleSetter(index, setter.asType(DOUBLE_SETTER));
+            }
+            if (propertyType == boolean.class) {
+                return new BooleanSetter(index, setter.asType(BOOLEAN_SETTER));
+            }
+            return new ObjectSetter(index, setter.asType(OBJECT_SETTER), propertyType);
+        }
+
+    }
+
+    /**
+     * 值为NULL时不调用setter，基本类型的属性保持默认值
+     */
+    private static final class IntSetter extends ColumnSetter {
+
+        IntSetter(int index, MethodHandle handle) {
+            super(index, handle);
+        }
+
+        @Override
+        void set(Object bean, ResultSet rs) throws Throwable {
+            int value = rs.getInt(index);
+            if (!rs.wasNull()) {
+                handle.invokeExact(bean, value);
+            }
+        }
+
+    }
+
+    private static final class LongSetter extends ColumnSetter {
+
+        LongSetter(int index, MethodHandle handle) {
+            super(index, handle);
+        }
+
+        @Override
+        void set(Object bean, ResultSet rs) throws Throwable {
+            long value = rs.getLong(index);
+            if (!rs.wasNull()) {
+                handle.invokeExact(bean, value);
+            }
+        }
+
+    }
+
+    private static final class DoubleSetter extends ColumnSetter {
+
+        DoubleSetter(int index, MethodHandle handle) {
+            super(index, handle);
+        }
+
+        @Override
+        void set(Object bean, ResultSet rs) throws Throwable {
+            double value = rs.getDouble(index);
+            if (!rs.wasNull()) {
+                handle.invokeExact(bean, value);
+            }
+        }
+
+    }
+
+    private static final class BooleanSetter extends ColumnSetter {
+
+        BooleanSetter(int index, MethodHandle handle) {
+            super(index, handle);
+        }
+
+        @Override
+        void set(Object bean, ResultSet rs) throws Throwable {
+            boolean value = rs.getBoolean(index);
+            if (!rs.wasNull()) {
+                handle.invokeExact(bean, value);
+            }
+        }
+
+    }
+
+    private static final class ObjectSetter extends ColumnSetter {
+
+        private final Class<?> propertyType;
+        private final boolean primitive;
+
+        ObjectSetter(int index, MethodHandle handle, Class<?> propertyType) {
+            super(index, handle);
+            this.propertyType = propertyType;
+            this.primitive = propertyType.isPrimitive();
+        }
+
+        @Override
+        void set(Object bean, ResultSet rs) throws Throwable {
+            Object value = read(rs);
+            if (value != null || !primitive) {
+                handle.invokeExact(bean, value);
+            }
+        }
+
+        private Object read(ResultSet rs) throws SQLException {
+            Object value;
+            if (propertyType == String.class) {
+                return rs.getString(index);
+            } else if (propertyType == BigDecimal.class) {
+                return rs.getBigDecimal(index);
+            } else if (propertyType == java.sql.Timestamp.class || propertyType == java.util.Date.class) {
+                return rs.getTimestamp(index);
+            } else if (propertyType == java.sql.Date.class) {
+                return rs.getDate(index);
+            } else if (propertyType == java.sql.Time.class) {
+                return rs.getTime(index);
+            } else if (propertyType == byte[].class) {
+                return rs.getBytes(index);
+            } else if (propertyType == Integer.class) {
+                value = rs.getInt(index);
+            } else if (propertyType == Long.class) {
+                value = rs.getLong(index);
+            } else if (propertyType == Double.class) {
+                value = rs.getDouble(index);
+            } else if (propertyType == float.class || propertyType == Float.class) {
+                value = rs.getFloat(index);
+            } else if (propertyType == short.class || propertyType == Short.class) {
+                value = rs.getShort(index);
+            } else if (propertyType == byte.class || propertyType == Byte.class) {
+                value = rs.getByte(index);
+            } else if (propertyType == Boolean.class) {
+                value = rs.getBoolean(index);
+            } else if (propertyType == char.class || propertyType == Character.class) {
+                // 驱动一般不支持 getObject(index, char.class)，按字符串读取
+                return toChar(rs.getString(index));
+            } else {
+                return rs.getObject(index, propertyType);
+            }
+            return rs.wasNull() ? null : value;
+        }
+
+        private Character toChar(String value) throws SQLException {
+            if (value == null || value.isEmpty()) {
+                return null;
+            }
+            if (value.length() > 1) {
+                throw new SQLException("Column " + index + " value of length " + value.length()
+                        + " cannot be mapped to " + propertyType.getName());
+            }
+            return value.charAt(0);
+        }
+
+    }
+
+    private static final class MapperKey {
+
+        private final Class<?> type;
+        private final String[] labels;
+        private final int hash;
+
+        MapperKey(Class<?> type, String[] labels) {
+            this.type = type;
+            this.labels = labels;
+            this.hash = 31 * type.hashCode() + Arrays.hashCode(labels);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof MapperKey)) {
+                return false;
+            }
+            MapperKey that = (MapperKey) o;
+            return hash == that.hash && type == that.type && Arrays.equals(labels, that.labels);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+    }
+
+}
@@ -0,0 +1,26 @@
+package top.yifan;
+
+import java.sql.SQLException;
+
+/**
+ * 租户超出其连接配额且等待队列已满，或者排队超时，获取连接的请求被拒绝。
+ * 此异常不会被 {@link DefaultSQLExceptionClassifier} 视为可重试，以免被拒绝的请求立即重试加剧拥塞
+ *
+ * @author Star Zheng
+ */
+public class BulkheadRejectedException extends SQLException {
+
+    private static final long serialVersionUID = 5571389960457432018L;
+
+    private final String tenant;
+
+    public BulkheadRejectedException(String message, String tenant) {
+        super(message);
+        this.tenant = tenant;
+    }
+
+    public String getTenant() {
+        return tenant;
+    }
+
+}
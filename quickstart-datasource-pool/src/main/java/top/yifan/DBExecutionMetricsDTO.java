@@ -0,0 +1,216 @@
+package top.yifan;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+
+/**
+ * DBExecutionMetricsDTO，耗时的单位均为微秒
+ *
+ * @author Star Zheng
+ */
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class DBExecutionMetricsDTO {
+
+    private String key;
+
+    private Long executions;
+
+    private Long failures;
+
+    private Long retries;
+
+    private Long acquireP50;
+
+    private Long acquireP99;
+
+    private Long acquireMax;
+
+    private Long executeP50;
+
+    private Long executeP99;
+
+    private Long executeMax;
+
+    private Long backoffTotal;
+
+    private Long backoffP99;
+
+    /**
+     * 以下为最近一段时间内的指标，windowMillis 为覆盖的时长
+     */
+    private Long windowMillis;
+
+    private Long windowExecutions;
+
+    private Long windowFailures;
+
+    private Long windowRetries;
+
+    private Long windowAcquireP99;
+
+    private Long windowExecuteP50;
+
+    private Long windowExecuteP99;
+
+    private Long windowBackoffP99;
+
+    public String getKey() {
+        return key;
+    }
+
+    public void setKey(String key) {
+        this.key = key;
+    }
+
+    public Long getExecutions() {
+        return executions;
+    }
+
+    public void setExecutions(Long executions) {
+        this.executions = executions;
+    }
+
+    public Long getFailures() {
+        return failures;
+    }
+
+    public void setFailures(Long failures) {
+        this.failures = failures;
+    }
+
+    public Long getRetries() {
+        return retries;
+    }
+
+    public void setRetries(Long retries) {
+        this.retries = retries;
+    }
+
+    public Long getAcquireP50() {
+        return acquireP50;
+    }
+
+    public void setAcquireP50(Long acquireP50) {
+        this.acquireP50 = acquireP50;
+    }
+
+    public Long getAcquireP99() {
+        return acquireP99;
+    }
+
+    public void setAcquireP99(Long acquireP99) {
+        this.acquireP99 = acquireP99;
+    }
+
+    public Long getAcquireMax() {
+        return acquireMax;
+    }
+
+    public void setAcquireMax(Long acquireMax) {
+        this.acquireMax = acquireMax;
+    }
+
+    public Long getExecuteP50() {
+        return executeP50;
+    }
+
+    public void setExecuteP50(Long executeP50) {
+        this.executeP50 = executeP50;
+    }
+
+    public Long getExecuteP99() {
+        return executeP99;
+    }
+
+    public void setExecuteP99(Long executeP99) {
+        this.executeP99 = executeP99;
+    }
+
+    public Long getExecuteMax() {
+        return executeMax;
+    }
+
+    public void setExecuteMax(Long executeMax) {
+        this.executeMax = executeMax;
+    }
+
+    public Long getBackoffTotal() {
+        return backoffTotal;
+    }
+
+    public void setBackoffTotal(Long backoffTotal) {
+        this.backoffTotal = backoffTotal;
+    }
+
+    public Long getBackoffP99() {
+        return backoffP99;
+    }
+
+    public void setBackoffP99(Long backoffP99) {
+        this.backoffP99 = backoffP99;
+    }
+
+    public Long getWindowMillis() {
+        return windowMillis;
+    }
+
+    public void setWindowMillis(Long windowMillis) {
+        this.windowMillis = windowMillis;
+    }
+
+    public Long getWindowExecutions() {
+        return windowExecutions;
+    }
+
+    public void setWindowExecutions(Long windowExecutions) {
+        this.windowExecutions = windowExecutions;
+    }
+
+    public Long getWindowFailures() {
+        return windowFailures;
+    }
+
+    public void setWindowFailures(Long windowFailures) {
+        this.windowFailures = windowFailures;
+    }
+
+    public Long getWindowRetries() {
+        return windowRetries;
+    }
+
+    public void setWindowRetries(Long windowRetries) {
+        this.windowRetries = windowRetries;
+    }
+
+    public Long getWindowAcquireP99() {
+        return windowAcquireP99;
+    }
+
+    public void setWindowAcquireP99(Long windowAcquireP99) {
+        this.windowAcquireP99 = windowAcquireP99;
+    }
+
+    public Long getWindowExecuteP50() {
+        return windowExecuteP50;
+    }
+
+    public void setWindowExecuteP50(Long windowExecuteP50) {
+        this.windowExecuteP50 = windowExecuteP50;
+    }
+
+    public Long getWindowExecuteP99() {
+        return windowExecuteP99;
+    }
+
+    public void setWindowExecuteP99(Long windowExecuteP99) {
+        this.windowExecuteP99 = windowExecuteP99;
+    }
+
+    public Long getWindowBackoffP99() {
+        return windowBackoffP99;
+    }
+
+    public void setWindowBackoffP99(Long windowBackoffP99) {
+        this.windowBackoffP99 = windowBackoffP99;
+    }
+
+}
@@ -0,0 +1,33 @@
+package top.yifan;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+
+/**
+ * 连接池注册表的汇总状态
+ *
+ * @author Star Zheng
+ */
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class DBPoolRegistryDTO {
+
+    private Integer livePoolCount;
+
+    private Long evictedPoolCount;
+
+    public Integer getLivePoolCount() {
+        return livePoolCount;
+    }
+
+    public void setLivePoolCount(Integer livePoolCount) {
+        this.livePoolCount = livePoolCount;
+    }
+
+    public Long getEvictedPoolCount() {
+        return evictedPoolCount;
+    }
+
+    public void setEvictedPoolCount(Long evictedPoolCount) {
+        this.evictedPoolCount = evictedPoolCount;
+    }
+
+}
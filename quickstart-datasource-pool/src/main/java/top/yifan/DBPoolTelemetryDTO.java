@@ -0,0 +1,163 @@
+package top.yifan;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+
+/**
+ * 连接池在一段时间内的采样汇总，速率的单位均为次/秒
+ *
+ * @author Star Zheng
+ */
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class DBPoolTelemetryDTO {
+
+    private String pool;
+
+    private Long latestTimestamp;
+
+    private Integer activeConnections;
+
+    private Integer idleConnections;
+
+    private Integer totalConnections;
+
+    private Integer threadsAwaitingConnection;
+
+    private Integer samples;
+
+    private Integer minActiveConnections;
+
+    private Integer maxActiveConnections;
+
+    private Integer minIdleConnections;
+
+    private Integer maxIdleConnections;
+
+    private Integer maxTotalConnections;
+
+    private Integer maxThreadsAwaitingConnection;
+
+    private Double executionRate;
+
+    private Double failureRate;
+
+    public String getPool() {
+        return pool;
+    }
+
+    public void setPool(String pool) {
+        this.pool = pool;
+    }
+
+    public Long getLatestTimestamp() {
+        return latestTimestamp;
+    }
+
+    public void setLatestTimestamp(Long latestTimestamp) {
+        this.latestTimestamp = latestTimestamp;
+    }
+
+    public Integer getActiveConnections() {
+        return activeConnections;
+    }
+
+    public void setActiveConnections(Integer activeConnections) {
+        this.activeConnections = activeConnections;
+    }
+
+    public Integer getIdleConnections() {
+        return idleConnections;
+    }
+
+    public void setIdleConnections(Integer idleConnections) {
+        this.idleConnections = idleConnections;
+    }
+
+    public Integer getTotalConnections() {
+        return totalConnections;
+    }
+
+    public void setTotalConnections(Integer totalConnections) {
+        this.totalConnections = totalConnections;
+    }
+
+    public Integer getThreadsAwaitingConnection() {
+        return threadsAwaitingConnection;
+    }
+
+    public void setThreadsAwaitingConnection(Integer threadsAwaitingConnection) {
+        this.threadsAwaitingConnection = threadsAwaitingConnection;
+    }
+
+    public Integer getSamples() {
+        return samples;
+    }
+
+    public void setSamples(Integer samples) {
+        this.samples = samples;
+    }
+
+    public Integer getMinActiveConnections() {
+        return minActiveConnections;
+    }
+
+    public void setMinActiveConnections(Integer minActiveConnections) {
+        this.minActiveConnections = minActiveConnections;
+    }
+
+    public Integer getMaxActiveConnections() {
+        return maxActiveConnections;
+    }
+
+    public void setMaxActiveConnections(Integer maxActiveConnections) {
+        this.maxActiveConnections = maxActiveConnections;
+    }
+
+    public Integer getMinIdleConnections() {
+        return minIdleConnections;
+    }
+
+    public void setMinIdleConnections(Integer minIdleConnections) {
+        this.minIdleConnections = minIdleConnections;
+    }
+
+    public Integer getMaxIdleConnections() {
+        return maxIdleConnections;
+    }
+
+    public void setMaxIdleConnections(Integer maxIdleConnections) {
+        this.maxIdleConnections = maxIdleConnections;
+    }
+
+    public Integer getMaxTotalConnections() {
+        return maxTotalConnections;
+    }
+
+    public void setMaxTotalConnections(Integer maxTotalConnections) {
+        this.maxTotalConnections = maxTotalConnections;
+    }
+
+    public Integer getMaxThreadsAwaitingConnection() {
+        return maxThreadsAwaitingConnection;
+    }
+
+    public void setMaxThreadsAwaitingConnection(Integer maxThreadsAwaitingConnection) {
+        this.maxThreadsAwaitingConnection = maxThreadsAwaitingConnection;
+    }
+
+    public Double getExecutionRate() {
+        return executionRate;
+    }
+
+    public void setExecutionRate(Double executionRate) {
+        this.executionRate = executionRate;
+    }
+
+    public Double getFailureRate() {
+        return failureRate;
+    }
+
+    public void setFailureRate(Double failureRate) {
+        this.failureRate = failureRate;
+    }
+
+}
@@ -0,0 +1,83 @@
+package top.yifan;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+
+/**
+ * 连接池中单个租户的隔离状态
+ *
+ * @author Star Zheng
+ */
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class DBTenantBulkheadDTO {
+
+    private String pool;
+
+    private String tenant;
+
+    private Integer weight;
+
+    private Integer maxInFlight;
+
+    private Integer inFlight;
+
+    private Integer queued;
+
+    private Long rejected;
+
+    public String getPool() {
+        return pool;
+    }
+
+    public void setPool(String pool) {
+        this.pool = pool;
+    }
+
+    public String getTenant() {
+        return tenant;
+    }
+
+    public void setTenant(String tenant) {
+        this.tenant = tenant;
+    }
+
+    public Integer getWeight() {
+        return weight;
+    }
+
+    public void setWeight(Integer weight) {
+        this.weight = weight;
+    }
+
+    public Integer getMaxInFlight() {
+        return maxInFlight;
+    }
+
+    public void setMaxInFlight(Integer maxInFlight) {
+        this.maxInFlight = maxInFlight;
+    }
+
+    public Integer getInFlight() {
+        return inFlight;
+    }
+
+    public void setInFlight(Integer inFlight) {
+        this.inFlight = inFlight;
+    }
+
+    public Integer getQueued() {
+        return queued;
+    }
+
+    public void setQueued(Integer queued) {
+        this.queued = queued;
+    }
+
+    public Long getRejected() {
+        return rejected;
+    }
+
+    public void setRejected(Long rejected) {
+        this.rejected = rejected;
+    }
+
+}
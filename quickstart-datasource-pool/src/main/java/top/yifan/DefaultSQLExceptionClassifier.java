@@ -0,0 +1,72 @@
+package top.yifan;
+
+import java.sql.SQLException;
+import java.sql.SQLRecoverableException;
+import java.sql.SQLTransactionRollbackException;
+import java.sql.SQLTransientConnectionException;
+
+/**
+ * 默认的SQL异常分类器，依据JDBC异常类型和标准的SQLState判断，子类可以补充各个数据库的厂商错误码。
+ *
+ * <p>以下异常被视为可重试：
+ * <ul>
+ *  <li>SQLTransientConnectionException、SQLTransactionRollbackException、SQLRecoverableException</li>
+ *  <li>SQLState 以 08 开头（连接异常）或等于 40001（序列化失败/死锁）</li>
+ *  <li>{@link #isRetryableErrorCode(int)} 返回true的厂商错误码</li>
+ *  <li>连接池获取连接超时（Connection is not available）以及连接被重置（Connection reset）</li>
+ * </ul>
+ * 语句超时（SQLTimeoutException）不会重试，以免在数据库过载时重复执行慢查询。
+ *
+ * @author Star Zheng
+ */
+public class DefaultSQLExceptionClassifier implements SQLExceptionClassifier {
+
+    public static final DefaultSQLExceptionClassifier INSTANCE = new DefaultSQLExceptionClassifier();
+
+    /**
+     * 遍历异常链的最大深度
+     */
+    private static final int MAX_CAUSE_DEPTH = 8;
+
+    @Override
+    public boolean isRetryable(SQLException e) {
+        Throwable t = e;
+        for (int depth = 0; t != null && depth < MAX_CAUSE_DEPTH; depth++) {
+            if (t instanceof SQLException && isRetryableException((SQLException) t)) {
+                return true;
+            }
+            Throwable next = t instanceof SQLException ? ((SQLException) t).getNextException() : null;
+            t = next != null ? next : t.getCause();
+        }
+        return false;
+    }
+
+    private boolean isRetryableException(SQLException e) {
+        if (e instanceof SQLTransientConnectionException
+                || e instanceof SQLTransactionRollbackException
+                || e instanceof SQLRecoverableException) {
+            return true;
+        }
+        String sqlState = e.getSQLState();
+        if (sqlState != null && (sqlState.startsWith("08") || "40001".equals(sqlState))) {
+            return true;
+        }
+        if (isRetryableErrorCode(e.getErrorCode())) {
+            return true;
+        }
+        String message = e.getMessage();
+        if (message == null) {
+            return false;
+        }
+        return message.contains("Connection is not available") || message.trim().startsWith("Connection reset");
+    }
+
+    /**
+     * @param errorCode 厂商错误码
+     * @return 返回true则表示可重试，默认返回false
+     */
+    protected boolean isRetryableErrorCode(int errorCode) {
+        return false;
+    }
+
+}
@@ -0,0 +1,387 @@
+package top.yifan;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Stream;
+
+/**
+ * JDBC批量写入器。
+ *
+ * <p>将输入的数据按 batchSize 切分为多个分块，每个分块作为一个JDBC批次执行并单独提交事务。
+ * 分块执行失败时会回滚该分块，并依据 {@link RetryableConnection} 的重试规则仅重试这一个分块，
+ * 已提交的分块不会重复写入。
+ *
+ * <p>parallelism 大于1时，分块将被分发到多个线程，每个线程持有独立的连接并行写入，此时分块的提交顺序不做保证。
+ * 配合MySQL的 rewriteBatchedStatements=true 可以获得最佳的写入性能。
+ *
+ * <p>写入连接池中的数据库时，应当通过 {@link top.yifan.datasource.RDBMSDataSourcePoolUtil#getBatchWriterBuilder}
+ * 创建，使其与连接池的其它连接共用异常分类、执行指标与重试预算。
+ *
+ * @author Star Zheng
+ *
+ * @param <T> 行数据类型
+ */
+public class JdbcBatchWriter<T> {
+
+    private static final Logger log = LoggerFactory.getLogger(JdbcBatchWriter.class);
+
+    private static final long OFFER_TIMEOUT_MILLIS = 100L;
+
+    private final GetConnectionSupplier getConnection;
+    private final String sql;
+    private final StatementBinder<T> binder;
+    private final int batchSize;
+    private final int numRetries;
+    private final int intervalTime;
+    private final int parallelism;
+    private final Interruptable interruptable;
+    private final SQLExecutionMetrics metrics;
+    private final SQLExceptionClassifier classifier;
+    private final RetryBudget retryBudget;
+
+    private JdbcBatchWriter(Builder<T> builder) {
+        this.getConnection = builder.getConnection;
+        this.sql = builder.sql;
+        this.binder = builder.binder;
+        this.batchSize = builder.batchSize;
+        this.numRetries = builder.numRetries;
+        this.intervalTime = builder.intervalTime;
+        this.parallelism = builder.parallelism;
+        this.interruptable = builder.interruptable;
+        this.metrics = builder.metrics;
+        this.classifier = builder.classifier;
+        this.retryBudget = builder.retryBudget;
+    }
+
+    public static <T> Builder<T> builder() {
+        return new Builder<>();
+    }
+
+    /**
+     * 写入全部数据，写入完成后关闭数据流
+     *
+     * @param rows - 待写入的数据
+     * @return 返回写入成功的行数
+     * @throws BatchWriteException 如果某个分块在重试后仍然失败，或者写入期间被中断、抛出运行时异常，则抛出此异常，
+     *                             其中记录了已经提交的行数；被中断时保留线程的中断状态
+     */
+    public long write(Stream<T> rows) throws SQLException, InterruptedException {
+        try (Stream<T> s = rows) {
+            return write(s.iterator());
+        }
+    }
+
+    /**
+     * 写入全部数据
+     *
+     * @param rows - 待写入的数据
+     * @return 返回写入成功的行数
+     * @throws BatchWriteException 如果某个分块在重试后仍然失败，或者写入期间被中断、抛出运行时异常，则抛出此异常，
+     *                             其中记录了已经提交的行数；被中断时保留线程的中断状态
+     */
+    public long write(Iterator<T> rows) throws SQLException, InterruptedException {
+        if (parallelism <= 1) {
+            return writeSerially(rows);
+        }
+        return writeInParallel(rows);
+    }
+
+    private long writeSerially(Iterator<T> rows) throws SQLException, InterruptedException {
+        long committedRows = 0;
+        try (RetryableConnection conn = newConnection()) {
+            List<T> chunk;
+            while (!(chunk = nextChunk(rows)).isEmpty()) {
+                committedRows += executeChunk(conn, chunk);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw newBatchWriteException(committedRows, e);
+        } catch (SQLException | RuntimeException e) {
+            throw newBatchWriteException(committedRows, e);
+        }
+        return committedRows;
+    }
+
+    private long writeInParallel(Iterator<T> rows) throws SQLException, InterruptedException {
+        BlockingQueue<List<T>> chunks = new ArrayBlockingQueue<>(parallelism);
+        AtomicLong committedRows = new AtomicLong();
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        List<T> endOfInput = Collections.emptyList();
+
+        AtomicInteger threadIndex = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(parallelism, r -> {
+            Thread t = new Thread(r, "jdbc-batch-writer-" + threadIndex.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        try {
+            for (int i = 0; i < parallelism; i++) {
+                executor.execute(() -> {
+                    try (RetryableConnection conn = newConnection()) {
+                        for (; ; ) {
+                            List<T> chunk = chunks.take();
+                            if (chunk == endOfInput || failure.get() != null) {
+                                return;
+                            }
+                            committedRows.addAndGet(executeChunk(conn, chunk));
+                        }
+                    } catch (Throwable e) {
+                        failure.compareAndSet(null, e);
+                    }
+                });
+            }
+
+            // 队列有界，写入线程跟不上时阻塞读取，从而限制内存中的分块数量
+            List<T> chunk;
+            while (failure.get() == null && !(chunk = nextChunk(rows)).isEmpty()) {
+                while (failure.get() == null && !chunks.offer(chunk, OFFER_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)) {
+                    // 等待写入线程消费
+                }
+            }
+            for (int i = 0; i < parallelism; i++) {
+                while (failure.get() == null && !chunks.offer(endOfInput, OFFER_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)) {
+                    // 等待写入线程消费
+                }
+            }
+            executor.shutdown();
+            while (!executor.awaitTermination(OFFER_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)) {
+                if (failure.get() != null) {
+                    // 唤醒阻塞在队列上的写入线程
+                    chunks.clear();
+                    executor.shutdownNow();
+                }
+            }
+        } catch (InterruptedException e) {
+            failure.compareAndSet(null, e);
+            Thread.currentThread().interrupt();
+        } catch (RuntimeException e) {
+            failure.compareAndSet(null, e);
+        } finally {
+            if (!executor.isTerminated()) {
+                chunks.clear();
+                executor.shutdownNow();
+                awaitTerminationUninterruptibly(executor);
+            }
+        }
+
+        Throwable e = failure.get();
+        if (e != null) {
+            if (e instanceof Error) {
+                throw (Error) e;
+            }
+            throw newBatchWriteException(committedRows.get(), e);
+        }
+        return committedRows.get();
+    }
+
+    /**
+     * 等待写入线程全部结束，保证返回时已提交的行数不会再变化
+     */
+    private static void awaitTerminationUninterruptibly(ExecutorService executor) {
+        boolean interrupted = false;
+        try {
+            for (; ; ) {
+                try {
+                    if (executor.awaitTermination(OFFER_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)) {
+                        return;
+                    }
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private static BatchWriteException newBatchWriteException(long committedRows, Throwable cause) {
+        return new BatchWriteException("Batch write failed after " + committedRows + " rows, message: "
+                + cause.getMessage(), committedRows, cause);
+    }
+
+    private RetryableConnection newConnection() {
+        return RetryableConnection.builder(getConnection)
+                .interruptable(interruptable)
+                .metrics(metrics)
+                .classifier(classifier)
+                .retryBudget(retryBudget)
+                .build();
+    }
+
+    private List<T> nextChunk(Iterator<T> rows) {
+        if (!rows.hasNext()) {
+            return Collections.emptyList();
+        }
+        List<T> chunk = new ArrayList<>(batchSize);
+        while (chunk.size() < batchSize && rows.hasNext()) {
+            chunk.add(rows.next());
+        }
+        return chunk;
+    }
+
+    private int executeChunk(RetryableConnection conn, List<T> chunk) throws SQLException, InterruptedException {
+        return conn.execute(c -> writeChunk(c, chunk), numRetries, intervalTime);
+    }
+
+    private int writeChunk(Connection conn, List<T> chunk) throws SQLException {
+        boolean autoCommit = conn.getAutoCommit();
+        PreparedStatement ps = null;
+        try {
+            conn.setAutoCommit(false);
+            ps = conn.prepareStatement(sql);
+            for (T row : chunk) {
+                binder.bind(ps, row);
+                ps.addBatch();
+            }
+            ps.executeBatch();
+            conn.commit();
+            return chunk.size();
+        } catch (SQLException | RuntimeException e) {
+            // 运行时异常也要回滚，否则恢复自动提交时会提交已经执行的部分
+            rollbackQuietly(conn);
+            throw e;
+        } finally {
+            DBUtil.closeDBResources(ps);
+            restoreAutoCommitQuietly(conn, autoCommit);
+        }
+    }
+
+    private void rollbackQuietly(Connection conn) {
+        try {
+            if (!conn.isClosed()) {
+                conn.rollback();
+            }
+        } catch (SQLException e) {
+            log.warn("Rollback batch failed, message: {}", e.getMessage());
+        }
+    }
+
+    private void restoreAutoCommitQuietly(Connection conn, boolean autoCommit) {
+        try {
+            if (!conn.isClosed()) {
+                conn.setAutoCommit(autoCommit);
+            }
+        } catch (SQLException e) {
+            log.warn("Restore auto commit failed, message: {}", e.getMessage());
+        }
+    }
+
+    public static class Builder<T> {
+
+        private GetConnectionSupplier getConnection;
+        private String sql;
+        private StatementBinder<T> binder;
+        private int batchSize = 1000;
+        private int numRetries = 3;
+        private int intervalTime = -1;
+        private int parallelism = 1;
+        private Interruptable interruptable;
+        private SQLExecutionMetrics metrics;
+        private SQLExceptionClassifier classifier = DefaultSQLExceptionClassifier.INSTANCE;
+        private RetryBudget retryBudget;
+
+        public JdbcBatchWriter<T> build() {
+            Objects.requireNonNull(getConnection, "Connection supplier is required");
+            Objects.requireNonNull(sql, "SQL is required");
+            Objects.requireNonNull(binder, "Binder is required");
+            if (batchSize <= 0) {
+                throw new IllegalArgumentException("Batch size must be positive");
+            }
+            if (parallelism <= 0) {
+                throw new IllegalArgumentException("Parallelism must be positive");
+            }
+            return new JdbcBatchWriter<>(this);
+        }
+
+        /**
+         * 获取连接的方法，并行写入时每个写入线程都会调用它获取一个独立的连接，所以应当使用连接池
+         */
+        public Builder<T> connection(GetConnectionSupplier getConnection) {
+            this.getConnection = getConnection;
+            return this;
+        }
+
+        public Builder<T> sql(String sql) {
+            this.sql = sql;
+            return this;
+        }
+
+        public Builder<T> binder(StatementBinder<T> binder) {
+            this.binder = binder;
+            return this;
+        }
+
+        public Builder<T> batchSize(int batchSize) {
+            this.batchSize = batchSize;
+            return this;
+        }
+
+        /**
+         * 单个分块的最大重试次数，含义同 {@link RetryableConnection#execute(ExecuteSQLFunction, int, int)}
+         */
+        public Builder<T> numRetries(int numRetries) {
+            this.numRetries = numRetries;
+            return this;
+        }
+
+        /**
+         * 重试的间隔时间，含义同 {@link RetryableConnection#execute(ExecuteSQLFunction, int, int)}
+         */
+        public Builder<T> intervalTime(int intervalTime) {
+            this.intervalTime = intervalTime;
+            return this;
+        }
+
+        public Builder<T> parallelism(int parallelism) {
+            this.parallelism = parallelism;
+            return this;
+        }
+
+        public Builder<T> interruptable(Interruptable interruptable) {
+            this.interruptable = interruptable;
+            return this;
+        }
+
+        /**
+         * 含义同 {@link RetryableConnection.Builder#metrics(SQLExecutionMetrics)}
+         */
+        public Builder<T> metrics(SQLExecutionMetrics metrics) {
+            this.metrics = metrics;
+            return this;
+        }
+
+        public Builder<T> classifier(SQLExceptionClassifier classifier) {
+            this.classifier = Objects.requireNonNull(classifier, "Classifier is required");
+            return this;
+        }
+
+        /**
+         * 含义同 {@link RetryableConnection.Builder#retryBudget(RetryBudget)}，所有写入线程共享同一个预算
+         */
+        public Builder<T> retryBudget(RetryBudget retryBudget) {
+            this.retryBudget = retryBudget;
+            return this;
+        }
+
+    }
+
+}
@@ -0,0 +1,177 @@
+package top.yifan;
+
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 无锁的延迟直方图，单位微秒。
+ *
+ * <p>采用与 HdrHistogram 类似的对数-线性分桶：每个2的幂次区间再均分为 {@value #SUB_BUCKETS} 个子桶，
+ * 相对误差不超过 1/{@value #SUB_BUCKETS}。每个桶使用 LongAdder 计数，高并发写入时不会在同一个缓存行上竞争。
+ *
+ * <p>计数从创建起一直累加，运行时间长了以后整体的百分位数对近期的变化不再敏感。需要观察一段时间内的分布时，
+ * 保存两个时刻的 {@link #snapshot()}，用 {@link Snapshot#minus(Snapshot)} 得到这段时间内的直方图。
+ *
+ * @author Star Zheng
+ */
+public class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 3;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    /**
+     * 最大可记录约 2^40 微秒（约12.7天），超出的值记录在最后一个桶中
+     */
+    private static final int MAX_EXPONENT = 40;
+    private static final int BUCKET_COUNT = (MAX_EXPONENT + 1) * SUB_BUCKETS;
+
+    private final LongAdder[] buckets = new LongAdder[BUCKET_COUNT];
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+    private final LongAccumulator max = new LongAccumulator(Math::max, 0L);
+
+    public LatencyHistogram() {
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            buckets[i] = new LongAdder();
+        }
+    }
+
+    /**
+     * @param nanos 耗时，单位纳秒
+     */
+    public void recordNanos(long nanos) {
+        record(Math.max(0L, nanos) / 1000L);
+    }
+
+    /**
+     * @param micros 耗时，单位微秒
+     */
+    public void record(long micros) {
+        long value = Math.max(0L, micros);
+        buckets[bucketIndex(value)].increment();
+        count.increment();
+        sum.add(value);
+        max.accumulate(value);
+    }
+
+    public long getCount() {
+        return count.sum();
+    }
+
+    public long getSum() {
+        return sum.sum();
+    }
+
+    public long getMax() {
+        return max.get();
+    }
+
+    /**
+     * @param percentile 百分位，取值 (0, 100]
+     * @return 返回对应百分位所在桶的上界，没有记录时返回0
+     */
+    public long getPercentile(double percentile) {
+        return snapshot().getPercentile(percentile);
+    }
+
+    /**
+     * @return 返回当前各个桶计数的副本，并发写入时各个计数之间不保证是同一时刻的值
+     */
+    public Snapshot snapshot() {
+        long[] counts = new long[BUCKET_COUNT];
+        long total = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            counts[i] = buckets[i].sum();
+            total += counts[i];
+        }
+        return new Snapshot(counts, total, sum.sum(), max.get());
+    }
+
+    /**
+     * 直方图在某一时刻的副本，或者两个副本之差
+     */
+    public static final class Snapshot {
+
+        private final long[] counts;
+        private final long count;
+        private final long sum;
+        private final long max;
+
+        private Snapshot(long[] counts, long count, long sum, long max) {
+            this.counts = counts;
+            this.count = count;
+            this.sum = sum;
+            this.max = max;
+        }
+
+        /**
+         * @param earlier 同一个直方图较早的副本
+         * @return 返回两个副本之间记录的值，最大值为其中最大的桶的上界
+         */
+        public Snapshot minus(Snapshot earlier) {
+            long[] diff = new long[BUCKET_COUNT];
+            long total = 0;
+            long highest = 0;
+            for (int i = 0; i < BUCKET_COUNT; i++) {
+                diff[i] = Math.max(0L, counts[i] - earlier.counts[i]);
+                total += diff[i];
+                if (diff[i] > 0) {
+                    highest = Math.min(bucketUpperBound(i), max);
+                }
+            }
+            return new Snapshot(diff, total, Math.max(0L, sum - earlier.sum), highest);
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public long getSum() {
+            return sum;
+        }
+
+        public long getMax() {
+            return max;
+        }
+
+        /**
+         * 同 {@link LatencyHistogram#getPercentile(double)}
+         */
+        public long getPercentile(double percentile) {
+            if (count == 0) {
+                return 0L;
+            }
+            long rank = (long) Math.ceil(count * Math.min(100.0, Math.max(0.0, percentile)) / 100.0);
+            long seen = 0;
+            for (int i = 0; i < BUCKET_COUNT; i++) {
+                seen += counts[i];
+                if (seen >= Math.max(1L, rank)) {
+                    return Math.min(bucketUpperBound(i), max);
+                }
+            }
+            return max;
+        }
+
+    }
+
+    static int bucketIndex(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS + 1;
+        if (exponent > MAX_EXPONENT) {
+            return BUCKET_COUNT - 1;
+        }
+        int subBucket = (int) (value >>> (exponent - 1)) - SUB_BUCKETS;
+        return exponent * SUB_BUCKETS + subBucket;
+    }
+
+    static long bucketUpperBound(int index) {
+        int exponent = index / SUB_BUCKETS;
+        int subBucket = index % SUB_BUCKETS;
+        if (exponent == 0) {
+            return subBucket;
+        }
+        return ((long) (SUB_BUCKETS + subBucket + 1) << (exponent - 1)) - 1;
+    }
+
+}
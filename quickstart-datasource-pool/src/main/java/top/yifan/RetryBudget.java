@@ -0,0 +1,128 @@
+package top.yifan;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 重试预算，限制重试请求占全部请求的比例，避免数据库过载时重试进一步放大压力。
+ *
+ * <p>每次请求存入 ratio 个令牌，每次重试消耗1个令牌，余额不足时不再重试；另外每秒固定补充
+ * minRetriesPerSecond 个令牌，保证请求量很小时仍然可以重试。余额的上限为 maxTokens。
+ *
+ * @author Star Zheng
+ */
+public class RetryBudget {
+
+    private static final ConcurrentHashMap<String, RetryBudget> BUDGETS = new ConcurrentHashMap<>();
+
+    private static final long SCALE = 1000L;
+
+    private final long depositPerRequest;
+    private final long refillPerSecond;
+    private final long maxBalance;
+    /**
+     * 从零补充到上限所需的时间，更长的间隔按此计算，避免长时间空闲后乘法溢出
+     */
+    private final long maxRefillNanos;
+
+    /**
+     * 余额，单位为千分之一个令牌
+     */
+    private final AtomicLong balance;
+    private final AtomicLong lastRefillNanos = new AtomicLong(System.nanoTime());
+
+    /**
+     * @param ratio               - 每次请求存入的令牌数，即允许的重试比例，例如0.2表示重试最多为请求数的20%
+     * @param minRetriesPerSecond - 每秒固定补充的令牌数
+     * @param maxTokens           - 余额的上限，也是初始余额
+     */
+    public RetryBudget(double ratio, int minRetriesPerSecond, int maxTokens) {
+        if (ratio < 0 || minRetriesPerSecond < 0 || maxTokens <= 0) {
+            throw new IllegalArgumentException("Invalid retry budget");
+        }
+        this.depositPerRequest = (long) (ratio * SCALE);
+        this.refillPerSecond = minRetriesPerSecond * SCALE;
+        this.maxBalance = maxTokens * SCALE;
+        this.maxRefillNanos = refillPerSecond == 0 ? 0 : TimeUnit.SECONDS.toNanos(maxBalance / refillPerSecond + 1);
+        this.balance = new AtomicLong(maxBalance);
+    }
+
+    /**
+     * 获取指定标识的重试预算，不存在时使用默认值创建：重试比例 20%，每秒至少1次，最多积累10次
+     *
+     * @param key 预算标识，通常为连接池的标识
+     */
+    public static RetryBudget of(String key) {
+        return BUDGETS.computeIfAbsent(key, k -> new RetryBudget(0.2, 1, 10));
+    }
+
+    /**
+     * 移除指定标识的重试预算，连接池被淘汰时调用，已经持有该预算的连接不受影响
+     */
+    public static void remove(String key) {
+        BUDGETS.remove(key);
+    }
+
+    /**
+     * 每次发起请求时调用
+     */
+    public void onRequest() {
+        deposit(depositPerRequest);
+    }
+
+    /**
+     * 尝试消耗一次重试的令牌
+     *
+     * @return 余额不足时返回false，此时不应再重试
+     */
+    public boolean tryAcquireRetry() {
+        refill();
+        for (; ; ) {
+            long current = balance.get();
+            if (current < SCALE) {
+                return false;
+            }
+            if (balance.compareAndSet(current, current - SCALE)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * @return 当前可用的重试次数
+     */
+    public long getAvailableRetries() {
+        refill();
+        return balance.get() / SCALE;
+    }
+
+    private void refill() {
+        if (refillPerSecond == 0) {
+            return;
+        }
+        long now = System.nanoTime();
+        long last = lastRefillNanos.get();
+        long elapsed = Math.min(now - last, maxRefillNanos);
+        long amount = elapsed * refillPerSecond / TimeUnit.SECONDS.toNanos(1);
+        if (amount > 0 && lastRefillNanos.compareAndSet(last, now)) {
+            deposit(amount);
+        }
+    }
+
+    private void deposit(long amount) {
+        if (amount <= 0) {
+            return;
+        }
+        for (; ; ) {
+            long current = balance.get();
+            if (current >= maxBalance) {
+                return;
+            }
+            if (balance.compareAndSet(current, Math.min(maxBalance, current + amount))) {
+                return;
+            }
+        }
+    }
+
+}
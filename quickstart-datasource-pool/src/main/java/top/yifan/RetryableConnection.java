@@ -5,18 +5,35 @@ import org.slf4j.LoggerFactory;
 
 import java.sql.Connection;
 import java.sql.SQLException;
+import java.util.Objects;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * 可重试的数据库连接装饰器类。值得注意的是，在执行SQL方法内必须抛出SQLException才会进行重试，
  * 所以请不要将其转译为其它异常。
  *
+ * <p>是否重试由 {@link SQLExceptionClassifier} 依据SQLState和厂商错误码判断，重试间隔带有随机抖动，
+ * 避免大量调用方按相同的节奏同时重试；如果设置了 {@link RetryBudget}，预算耗尽后将不再重试。
+ *
+ * <p>设置了 {@link Interruptable} 或截止时间时，执行期间由 {@link StatementWatchdog} 监视执行方法创建的语句，
+ * 中断或超过截止时间后将立即取消正在执行的语句，而不是等到语句执行完成后才检查中断。
+ *
  * @author kt94
  */
 public class RetryableConnection implements AutoCloseable {
 
     private static final Logger log = LoggerFactory.getLogger(RetryableConnection.class);
 
-    private static final int MIN_RETRIES = 3;
     private static final int INIT_INTERVAL_TIME = 2 * 1000;
     private static final int MAX_INTERVAL_TIME = 60 * 1000;
     private static final int INCREMENT_INTERVAL_TIME = 3 * 1000;
@@ -24,6 +41,13 @@ public class RetryableConnection implements AutoCloseable {
     private Connection conn;
     private GetConnectionSupplier getConnection;
     private Interruptable interruptable;
+    private SQLExecutionMetrics metrics;
+    private SQLExceptionClassifier classifier = DefaultSQLExceptionClassifier.INSTANCE;
+    private RetryBudget retryBudget;
+    private Executor executor;
+    private ScheduledExecutorService retryScheduler;
+    private long deadlineNanos;
+    private boolean hasDeadline;
 
     /**
      * @param getConnection - 获取连接的方法
@@ -37,6 +61,22 @@ public class RetryableConnection implements AutoCloseable {
         this.interruptable = interruptable;
     }
 
+    private RetryableConnection(Builder builder) {
+        this.getConnection = builder.getConnection;
+        this.interruptable = builder.interruptable;
+        this.metrics = builder.metrics;
+        this.classifier = builder.classifier;
+        this.retryBudget = builder.retryBudget;
+        this.executor = builder.executor;
+        this.retryScheduler = builder.retryScheduler;
+        this.deadlineNanos = builder.deadlineNanos;
+        this.hasDeadline = builder.hasDeadline;
+    }
+
+    public static Builder builder(GetConnectionSupplier getConnection) {
+        return new Builder(getConnection);
+    }
+
     public <R> R execute(ExecuteSQLFunction<R> fun, int numRetries)
             throws SQLException, InterruptedException {
         return this.execute(fun, numRetries, -1);
@@ -47,51 +87,210 @@ public class RetryableConnection implements AutoCloseable {
      *
      * @param fun          - 具体的执行方法
      * @param numRetries   - 最大的重试次数
-     * @param intervalTime - 重试的间隔时间，单位毫秒，如果小于0，则使用2的幂次方递增：2 -> 4 -> 8 -> 16 ...
+     * @param intervalTime - 重试的间隔时间，单位毫秒，如果小于0，则使用2的幂次方递增：4 -> 8 -> 16 ...，
+     *                     否则每次递增3秒，最大不超过60秒；实际的等待时间在 [间隔/2, 间隔] 之间随机
      * @return 返回执行方法中的返回值
      * @throws SQLException - 如果执行的过程成发生任何SQL异常，则将抛出此异常
      */
     public <R> R execute(ExecuteSQLFunction<R> fun, int numRetries, int intervalTime)
             throws SQLException, InterruptedException {
-        int times = 0;
-        long sleepTime = intervalTime <= 0 ? INIT_INTERVAL_TIME : intervalTime;
+        Backoff backoff = new Backoff(intervalTime);
+        if (retryBudget != null) {
+            retryBudget.onRequest();
+        }
         for (; ; ) {
             try {
                 if (conn == null || conn.isClosed()) {
-                    conn = getConnection.get();
+                    conn = acquireConnection();
                 }
-                return fun.apply(conn);
+                return apply(fun);
             } catch (SQLException e) {
                 if (isInterrupted(fun)) {
                     throw e;
                 }
-                int minTimes = Math.min(MIN_RETRIES, numRetries);
-                if (intervalTime <= 0) {
-                    sleepTime = Math.min(sleepTime * 2, MAX_INTERVAL_TIME);
-                } else {
-                    sleepTime = Math.min(intervalTime + INCREMENT_INTERVAL_TIME * times, MAX_INTERVAL_TIME);
+                long sleepTime = nextRetryDelay(fun, e, backoff, numRetries);
+                if (sleepTime < 0) {
+                    throw e;
                 }
-                if (times < numRetries && (canRetry(fun, e, times) || times < minTimes)) {
-                    times++;
-                    if (conn == null || conn.isClosed()) {
-                        log.warn("Execute SQL statement error[{}], and attempt={}/({} | {}), sleepTime={}ms" +
-                                        "and detail: {}",
-                                e.getErrorCode(), times, numRetries, MIN_RETRIES, sleepTime, e.getMessage());
-                    } else {
-                        log.warn("Execute SQL statement error[{}], and attempt={}/({} | {}), sleepTime={}ms, url={}" +
-                                        "and detail: {}",
-                                e.getErrorCode(), times, numRetries, MIN_RETRIES, sleepTime, conn.getMetaData().getURL(), e.getMessage());
+                long sleepStart = System.nanoTime();
+                try {
+                    Thread.sleep(sleepTime);
+                } finally {
+                    if (metrics != null) {
+                        metrics.recordBackoff(System.nanoTime() - sleepStart);
                     }
+                }
+                // 睡眠完成后需要再次检测是否已经中断，因为在睡眠期间可能发生中断操作
+                if (isInterrupted(fun)) {
+                    throw e;
+                }
+            }
+        }
+    }
 
-                    Thread.sleep(sleepTime);
-                    // 睡眠完成后需要再次检测是否已经中断，因为在睡眠期间可能发生中断操作
+    public <R> CompletableFuture<R> executeAsync(ExecuteSQLFunction<R> fun, int numRetries) {
+        return this.executeAsync(fun, numRetries, -1);
+    }
+
+    /**
+     * 异步执行SQL语句，重试规则同 {@link #execute(ExecuteSQLFunction, int, int)}。
+     *
+     * <p>SQL在有界的执行线程池中执行，重试的等待通过定时器调度，不会占用任何线程；线程池已满时返回的Future将以
+     * RejectedExecutionException 异常结束。每次重试前都会检测 Interruptable 和 {@link ExecuteSQLFunction#isInterrupted()}，
+     * 已中断时以最近一次的SQLException结束；取消返回的Future也会停止后续的重试。
+     * 与同步执行一样，同一个对象同一时间只能有一个执行中的调用。
+     *
+     * @param fun          - 具体的执行方法
+     * @param numRetries   - 最大的重试次数
+     * @param intervalTime - 重试的间隔时间，同 {@link #execute(ExecuteSQLFunction, int, int)}
+     * @return 返回执行结果的Future，SQL执行失败时以SQLException异常结束
+     */
+    public <R> CompletableFuture<R> executeAsync(ExecuteSQLFunction<R> fun, int numRetries, int intervalTime) {
+        CompletableFuture<R> future = new CompletableFuture<>();
+        if (retryBudget != null) {
+            retryBudget.onRequest();
+        }
+        submitAttempt(fun, future, new Backoff(intervalTime), numRetries);
+        return future;
+    }
+
+    private <R> void submitAttempt(ExecuteSQLFunction<R> fun, CompletableFuture<R> future, Backoff backoff, int numRetries) {
+        try {
+            Executor e = executor != null ? executor : AsyncExecutorHolder.EXECUTOR;
+            e.execute(() -> attempt(fun, future, backoff, numRetries));
+        } catch (RejectedExecutionException e) {
+            future.completeExceptionally(e);
+        }
+    }
+
+    private <R> void attempt(ExecuteSQLFunction<R> fun, CompletableFuture<R> future, Backoff backoff, int numRetries) {
+        if (future.isDone()) {
+            return;
+        }
+        try {
+            try {
+                if (conn == null || conn.isClosed()) {
+                    conn = acquireConnection();
+                }
+                future.complete(apply(fun));
+            } catch (SQLException e) {
+                scheduleRetry(fun, future, backoff, numRetries, e);
+            }
+        } catch (Throwable e) {
+            // 包括 Error，否则异常只会在执行线程中抛出，返回的Future永远不会完成
+            future.completeExceptionally(e);
+        }
+    }
+
+    private <R> void scheduleRetry(ExecuteSQLFunction<R> fun, CompletableFuture<R> future, Backoff backoff,
+                                   int numRetries, SQLException e) {
+        if (future.isDone() || isInterrupted(fun)) {
+            future.completeExceptionally(e);
+            return;
+        }
+        long delay = nextRetryDelay(fun, e, backoff, numRetries);
+        if (delay < 0) {
+            future.completeExceptionally(e);
+            return;
+        }
+        long scheduledAt = System.nanoTime();
+        ScheduledExecutorService scheduler = retryScheduler != null ? retryScheduler : AsyncExecutorHolder.RETRY_SCHEDULER;
+        try {
+            scheduler.schedule(() -> {
+                if (metrics != null) {
+                    metrics.recordBackoff(System.nanoTime() - scheduledAt);
+                }
+                try {
+                    // 等待期间可能发生中断操作
                     if (isInterrupted(fun)) {
-                        throw e;
+                        future.completeExceptionally(e);
+                        return;
                     }
-                    continue;
+                } catch (Throwable ex) {
+                    future.completeExceptionally(ex);
+                    return;
                 }
-                log.warn("SQLException error: {}", e.getErrorCode());
-                throw e;
+                submitAttempt(fun, future, backoff, numRetries);
+            }, delay, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException ex) {
+            future.completeExceptionally(e);
+        }
+    }
+
+    /**
+     * 计算下一次重试前的等待时间
+     *
+     * @return 返回等待时间，单位毫秒，不再重试时返回-1
+     */
+    private long nextRetryDelay(ExecuteSQLFunction<?> fun, SQLException e, Backoff backoff, int numRetries) {
+        long sleepTime = backoff.next();
+        if (backoff.times < numRetries && canRetry(fun, e, backoff.times)) {
+            backoff.times++;
+            long jitteredSleepTime = jitter(sleepTime);
+            if (hasDeadline) {
+                long remainingMillis = TimeUnit.NANOSECONDS.toMillis(deadlineNanos - System.nanoTime());
+                if (remainingMillis <= 0) {
+                    return -1;
+                }
+                // 不必等到截止时间之后再重试
+                jitteredSleepTime = Math.min(jitteredSleepTime, remainingMillis);
+            }
+            String url = currentUrl();
+            if (url == null) {
+                log.warn("Execute SQL statement error[{}], state={}, and attempt={}/{}, sleepTime={}ms " +
+                                "and detail: {}",
+                        e.getErrorCode(), e.getSQLState(), backoff.times, numRetries, jitteredSleepTime, e.getMessage());
+            } else {
+                log.warn("Execute SQL statement error[{}], state={}, and attempt={}/{}, sleepTime={}ms, url={} " +
+                                "and detail: {}",
+                        e.getErrorCode(), e.getSQLState(), backoff.times, numRetries, jitteredSleepTime,
+                        url, e.getMessage());
+            }
+            return jitteredSleepTime;
+        }
+        log.warn("SQLException error: {}, state: {}", e.getErrorCode(), e.getSQLState());
+        return -1;
+    }
+
+    /**
+     * @return 返回当前连接的URL，连接不可用时返回null
+     */
+    private String currentUrl() {
+        try {
+            return conn == null || conn.isClosed() ? null : conn.getMetaData().getURL();
+        } catch (SQLException e) {
+            return null;
+        }
+    }
+
+    private Connection acquireConnection() throws SQLException {
+        if (metrics == null) {
+            return getConnection.get();
+        }
+        long start = System.nanoTime();
+        try {
+            return getConnection.get();
+        } finally {
+            metrics.recordAcquire(System.nanoTime() - start);
+        }
+    }
+
+    private <R> R apply(ExecuteSQLFunction<R> fun) throws SQLException {
+        StatementWatchdog.Watch watch = interruptable != null || hasDeadline
+                ? StatementWatchdog.watch(() -> isInterrupted(fun)) : null;
+        Connection target = watch == null ? conn : watch.wrap(conn);
+        long start = metrics == null ? 0L : System.nanoTime();
+        boolean success = false;
+        try {
+            R result = fun.apply(target);
+            success = true;
+            return result;
+        } finally {
+            if (watch != null) {
+                watch.close();
+            }
+            if (metrics != null) {
+                metrics.recordExecute(System.nanoTime() - start, success);
             }
         }
     }
@@ -101,23 +300,55 @@ public class RetryableConnection implements AutoCloseable {
         if (interruptable != null && interruptable.isInterrupted()) {
             return true;
         }
+        if (hasDeadline && deadlineNanos - System.nanoTime() <= 0) {
+            return true;
+        }
         // 功能同 Block_1, 推荐使用上面这种方式
         return fun.isInterrupted();
     }
 
     private boolean canRetry(ExecuteSQLFunction<?> fun, SQLException e, int times) {
-        if (fun.isKeepRetryWithOutDefaultRetry(e, times)) {
-            return true;
+        if (!fun.isKeepRetryWithOutDefaultRetry(e, times) && !classifier.isRetryable(e)) {
+            return false;
         }
-        // TODO 检测状态码是否属于可重试的范围
-        String message = e.getMessage();
-        if (message == null) {
+        if (retryBudget != null && !retryBudget.tryAcquireRetry()) {
+            log.warn("Retry budget exhausted, give up retrying, error: {}, state: {}", e.getErrorCode(), e.getSQLState());
             return false;
         }
-        if (message.contains("Connection is not available")) {
-            return true;
+        return true;
+    }
+
+    /**
+     * 在 [sleepTime/2, sleepTime] 之间随机取值
+     */
+    private static long jitter(long sleepTime) {
+        long half = sleepTime / 2;
+        return half + ThreadLocalRandom.current().nextLong(sleepTime - half + 1);
+    }
+
+    /**
+     * 重试间隔的计算状态
+     */
+    private static class Backoff {
+
+        private final int intervalTime;
+        private long sleepTime;
+        private int times;
+
+        Backoff(int intervalTime) {
+            this.intervalTime = intervalTime;
+            this.sleepTime = intervalTime <= 0 ? INIT_INTERVAL_TIME : intervalTime;
         }
-        return message.trim().startsWith("Connection reset");
+
+        long next() {
+            if (intervalTime <= 0) {
+                sleepTime = Math.min(sleepTime * 2, MAX_INTERVAL_TIME);
+            } else {
+                sleepTime = Math.min(intervalTime + (long) INCREMENT_INTERVAL_TIME * times, MAX_INTERVAL_TIME);
+            }
+            return sleepTime;
+        }
+
     }
 
     @Override
@@ -125,4 +356,103 @@ public class RetryableConnection implements AutoCloseable {
         DBUtil.closeDBResources(conn);
     }
 
+    public static class Builder {
+
+        private final GetConnectionSupplier getConnection;
+        private Interruptable interruptable;
+        private SQLExecutionMetrics metrics;
+        private SQLExceptionClassifier classifier = DefaultSQLExceptionClassifier.INSTANCE;
+        private RetryBudget retryBudget;
+        private Executor executor;
+        private ScheduledExecutorService retryScheduler;
+        private long deadlineNanos;
+        private boolean hasDeadline;
+
+        private Builder(GetConnectionSupplier getConnection) {
+            this.getConnection = Objects.requireNonNull(getConnection, "Connection supplier is required");
+        }
+
+        public RetryableConnection build() {
+            return new RetryableConnection(this);
+        }
+
+        public Builder interruptable(Interruptable interruptable) {
+            this.interruptable = interruptable;
+            return this;
+        }
+
+        /**
+         * 设置从现在开始的截止时间，对通过此连接的所有执行生效，用于限制整个请求在数据库上花费的时间：
+         * 到达截止时间后正在执行的语句将被取消，也不会再重试
+         */
+        public Builder deadline(long timeout, TimeUnit unit) {
+            this.deadlineNanos = System.nanoTime() + unit.toNanos(timeout);
+            this.hasDeadline = true;
+            return this;
+        }
+
+        /**
+         * 记录获取连接耗时、执行耗时以及重试情况的指标
+         */
+        public Builder metrics(SQLExecutionMetrics metrics) {
+            this.metrics = metrics;
+            return this;
+        }
+
+        public Builder classifier(SQLExceptionClassifier classifier) {
+            this.classifier = Objects.requireNonNull(classifier, "Classifier is required");
+            return this;
+        }
+
+        /**
+         * 重试预算，通常同一个连接池的所有连接共享同一个预算
+         */
+        public Builder retryBudget(RetryBudget retryBudget) {
+            this.retryBudget = retryBudget;
+            return this;
+        }
+
+        /**
+         * 异步执行SQL的线程池，应当是有界的，默认为所有连接共享的线程池
+         */
+        public Builder executor(Executor executor) {
+            this.executor = Objects.requireNonNull(executor, "Executor is required");
+            return this;
+        }
+
+        /**
+         * 异步执行时调度重试的定时器，仅用于调度，不会执行SQL，默认为所有连接共享的定时器
+         */
+        public Builder retryScheduler(ScheduledExecutorService retryScheduler) {
+            this.retryScheduler = Objects.requireNonNull(retryScheduler, "Retry scheduler is required");
+            return this;
+        }
+
+    }
+
+    /**
+     * 默认的异步执行线程池和重试定时器，首次使用时才会创建
+     */
+    private static class AsyncExecutorHolder {
+
+        private static final int THREADS = Math.max(4, Runtime.getRuntime().availableProcessors() * 2);
+        private static final int QUEUE_CAPACITY = 1024;
+
+        private static final Executor EXECUTOR = new ThreadPoolExecutor(THREADS, THREADS,
+                60L, TimeUnit.SECONDS, new ArrayBlockingQueue<>(QUEUE_CAPACITY), daemonThreadFactory("retryable-sql-"));
+
+        private static final ScheduledExecutorService RETRY_SCHEDULER =
+                Executors.newSingleThreadScheduledExecutor(daemonThreadFactory("retryable-sql-timer-"));
+
+        private static ThreadFactory daemonThreadFactory(String prefix) {
+            AtomicInteger index = new AtomicInteger();
+            return r -> {
+                Thread t = new Thread(r, prefix + index.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            };
+        }
+
+    }
+
 }
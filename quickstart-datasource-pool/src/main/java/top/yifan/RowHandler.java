@@ -0,0 +1,20 @@
+package top.yifan;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * 逐行处理查询结果，在读取线程中同步调用，只有处理完当前行后才会读取下一行
+ *
+ * @author Star Zheng
+ */
+@FunctionalInterface
+public interface RowHandler {
+
+    /**
+     * @param rs 已定位到当前行的结果集，请不要在方法内移动游标或关闭结果集
+     * @return 返回false则停止读取并取消查询
+     */
+    boolean onRow(ResultSet rs) throws SQLException;
+
+}
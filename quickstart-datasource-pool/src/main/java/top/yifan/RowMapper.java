@@ -0,0 +1,22 @@
+package top.yifan;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * 将结果集的当前行映射为一个对象
+ *
+ * @author Star Zheng
+ *
+ * @param <T> 目标类型
+ */
+@FunctionalInterface
+public interface RowMapper<T> {
+
+    /**
+     * @param rs 已定位到当前行的结果集，请不要在方法内移动游标或关闭结果集
+     * @return 返回映射后的对象
+     */
+    T mapRow(ResultSet rs) throws SQLException;
+
+}
@@ -0,0 +1,15 @@
+package top.yifan;
+
+import java.sql.SQLException;
+
+/**
+ * SQL异常分类器，用于判断一个异常是否可以通过重试恢复
+ *
+ * @author Star Zheng
+ */
+@FunctionalInterface
+public interface SQLExceptionClassifier {
+
+    boolean isRetryable(SQLException e);
+
+}
@@ -0,0 +1,185 @@
+package top.yifan;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * SQL执行指标，按连接池维度统计获取连接耗时、SQL执行耗时、重试次数以及重试的等待时间
+ *
+ * <p>除了从创建起累计的指标，还可以通过 {@link #getRecentWindow()} 获取最近一段时间内的指标，用于按 p99 告警：
+ * 窗口每 {@value #WINDOW_SECONDS} 秒滚动一次，返回上一个窗口开始至今的数据，即最近 {@value #WINDOW_SECONDS} ~
+ * 2 × {@value #WINDOW_SECONDS} 秒；超过一个窗口没有读取时，覆盖的时间为上一次滚动至今。
+ *
+ * @author Star Zheng
+ */
+public class SQLExecutionMetrics {
+
+    private static final ConcurrentHashMap<String, SQLExecutionMetrics> METRICS = new ConcurrentHashMap<>();
+
+    private static final long WINDOW_SECONDS = 60L;
+
+    private final String key;
+
+    private final LatencyHistogram acquireLatency = new LatencyHistogram();
+    private final LatencyHistogram executeLatency = new LatencyHistogram();
+    private final LatencyHistogram backoffLatency = new LatencyHistogram();
+    private final LongAdder failures = new LongAdder();
+
+    /**
+     * 上一个窗口与当前窗口开始时的快照，由 {@link #getRecentWindow()} 在读取时滚动
+     */
+    private Window previousWindow;
+    private Window currentWindow;
+
+    private SQLExecutionMetrics(String key) {
+        this.key = key;
+        this.currentWindow = new Window(System.nanoTime());
+        this.previousWindow = currentWindow;
+    }
+
+    /**
+     * 获取指定标识的指标，不存在时创建
+     *
+     * @param key 指标标识，通常为连接池的标识
+     */
+    public static SQLExecutionMetrics of(String key) {
+        return METRICS.computeIfAbsent(key, SQLExecutionMetrics::new);
+    }
+
+    /**
+     * @return 返回指定标识的指标，不存在时返回null
+     */
+    public static SQLExecutionMetrics find(String key) {
+        return METRICS.get(key);
+    }
+
+    /**
+     * 移除指定标识的指标，连接池被淘汰时调用，避免指标随着连接池的创建与淘汰无限增长。
+     * 已经持有该指标的连接仍可继续记录，只是不再出现在 {@link #listAll()} 中
+     */
+    public static void remove(String key) {
+        METRICS.remove(key);
+    }
+
+    public static Collection<SQLExecutionMetrics> listAll() {
+        return Collections.unmodifiableCollection(METRICS.values());
+    }
+
+    public String getKey() {
+        return key;
+    }
+
+    /**
+     * @return 获取连接的耗时
+     */
+    public LatencyHistogram getAcquireLatency() {
+        return acquireLatency;
+    }
+
+    /**
+     * @return 每次执行SQL方法的耗时，包括失败的执行
+     */
+    public LatencyHistogram getExecuteLatency() {
+        return executeLatency;
+    }
+
+    /**
+     * @return 每次重试前的等待时间，记录数即为重试次数
+     */
+    public LatencyHistogram getBackoffLatency() {
+        return backoffLatency;
+    }
+
+    public long getFailures() {
+        return failures.sum();
+    }
+
+    /**
+     * @return 返回最近一段时间内的指标，覆盖的时间范围见类注释
+     */
+    public synchronized Window getRecentWindow() {
+        Window now = new Window(System.nanoTime());
+        if (now.startNanos - currentWindow.startNanos >= TimeUnit.SECONDS.toNanos(WINDOW_SECONDS)) {
+            previousWindow = currentWindow;
+            currentWindow = now;
+        }
+        return now.minus(previousWindow);
+    }
+
+    void recordAcquire(long nanos) {
+        acquireLatency.recordNanos(nanos);
+    }
+
+    void recordExecute(long nanos, boolean success) {
+        executeLatency.recordNanos(nanos);
+        if (!success) {
+            failures.increment();
+        }
+    }
+
+    void recordBackoff(long nanos) {
+        backoffLatency.recordNanos(nanos);
+    }
+
+    /**
+     * 某一时刻的指标快照，或者两个快照之间的差值
+     */
+    public final class Window {
+
+        private final long startNanos;
+        private final long elapsedNanos;
+        private final LatencyHistogram.Snapshot acquire;
+        private final LatencyHistogram.Snapshot execute;
+        private final LatencyHistogram.Snapshot backoff;
+        private final long failureCount;
+
+        private Window(long nanos) {
+            this(nanos, 0L, acquireLatency.snapshot(), executeLatency.snapshot(), backoffLatency.snapshot(),
+                    failures.sum());
+        }
+
+        private Window(long startNanos, long elapsedNanos, LatencyHistogram.Snapshot acquire,
+                       LatencyHistogram.Snapshot execute, LatencyHistogram.Snapshot backoff, long failureCount) {
+            this.startNanos = startNanos;
+            this.elapsedNanos = elapsedNanos;
+            this.acquire = acquire;
+            this.execute = execute;
+            this.backoff = backoff;
+            this.failureCount = failureCount;
+        }
+
+        private Window minus(Window earlier) {
+            return new Window(earlier.startNanos, startNanos - earlier.startNanos, acquire.minus(earlier.acquire),
+                    execute.minus(earlier.execute), backoff.minus(earlier.backoff),
+                    Math.max(0L, failureCount - earlier.failureCount));
+        }
+
+        /**
+         * @return 窗口覆盖的时长，单位毫秒
+         */
+        public long getElapsedMillis() {
+            return TimeUnit.NANOSECONDS.toMillis(elapsedNanos);
+        }
+
+        public LatencyHistogram.Snapshot getAcquireLatency() {
+            return acquire;
+        }
+
+        public LatencyHistogram.Snapshot getExecuteLatency() {
+            return execute;
+        }
+
+        public LatencyHistogram.Snapshot getBackoffLatency() {
+            return backoff;
+        }
+
+        public long getFailures() {
+            return failureCount;
+        }
+
+    }
+
+}
@@ -0,0 +1,18 @@
+package top.yifan;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+
+/**
+ * 将一行数据绑定到预编译语句的参数上
+ *
+ * @author Star Zheng
+ *
+ * @param <T> 行数据类型
+ */
+@FunctionalInterface
+public interface StatementBinder<T> {
+
+    void bind(PreparedStatement ps, T row) throws SQLException;
+
+}
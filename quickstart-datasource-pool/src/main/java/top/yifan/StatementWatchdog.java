@@ -0,0 +1,176 @@
+package top.yifan;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+/**
+ * SQL语句看门狗。
+ *
+ * <p>执行期间通过连接代理记录执行方法创建的所有语句，后台线程每隔 {@value #CHECK_INTERVAL_MILLIS} 毫秒检查一次中断条件，
+ * 条件成立时通过 {@link DBUtil#cancelStatement} 取消正在执行的语句，使长时间运行的SQL可以在中断或超过截止时间后
+ * 尽快释放连接和数据库端的资源，而不是等到语句自然结束。没有正在监视的执行时取消检查任务，检查线程不会被唤醒。
+ *
+ * @author Star Zheng
+ */
+public final class StatementWatchdog {
+
+    private static final Logger log = LoggerFactory.getLogger(StatementWatchdog.class);
+
+    private static final long CHECK_INTERVAL_MILLIS = 5L;
+
+    private static final Set<Watch> WATCHES = ConcurrentHashMap.newKeySet();
+    /**
+     * 未关闭的监视数量，只有在 0 与 1 之间变化时才需要启动或取消检查任务
+     */
+    private static final AtomicInteger ACTIVE_WATCHES = new AtomicInteger();
+
+    private StatementWatchdog() {
+    }
+
+    /**
+     * 开始监视一次执行，执行结束后必须调用 {@link Watch#close()}
+     *
+     * @param shouldCancel - 中断条件
+     */
+    public static Watch watch(BooleanSupplier shouldCancel) {
+        Watch watch = new Watch(shouldCancel);
+        WATCHES.add(watch);
+        if (ACTIVE_WATCHES.getAndIncrement() == 0) {
+            CheckerHolder.start();
+        }
+        return watch;
+    }
+
+    private static void check() {
+        for (Watch watch : WATCHES) {
+            try {
+                if (!watch.cancelled && watch.shouldCancel.getAsBoolean()) {
+                    watch.cancel();
+                }
+            } catch (RuntimeException e) {
+                log.warn("Check statement watch failed, message: {}", e.getMessage());
+            }
+        }
+    }
+
+    public static final class Watch implements AutoCloseable {
+
+        private final BooleanSupplier shouldCancel;
+        private final Queue<Statement> statements = new ConcurrentLinkedQueue<>();
+        private volatile boolean cancelled;
+
+        private Watch(BooleanSupplier shouldCancel) {
+            this.shouldCancel = shouldCancel;
+        }
+
+        /**
+         * @return 返回记录所创建语句的连接代理，代理上的其它方法直接委托给原连接
+         */
+        public Connection wrap(Connection conn) {
+            return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+                    new Class[]{Connection.class}, (proxy, method, args) -> {
+                        Object result;
+                        try {
+                            result = method.invoke(conn, args);
+                        } catch (InvocationTargetException e) {
+                            throw e.getCause();
+                        }
+                        if (result instanceof Statement) {
+                            track((Statement) result);
+                        }
+                        return result;
+                    });
+        }
+
+        public boolean isCancelled() {
+            return cancelled;
+        }
+
+        private void track(Statement statement) throws SQLException {
+            statements.add(statement);
+            if (cancelled) {
+                DBUtil.cancelStatement(statement);
+                throw new SQLException("Execution has been cancelled by statement watchdog");
+            }
+        }
+
+        private void cancel() {
+            cancelled = true;
+            int count = 0;
+            for (Statement statement : statements) {
+                DBUtil.cancelStatement(statement);
+                count++;
+            }
+            if (count > 0) {
+                log.info("Cancel {} in-flight statement(s) on interrupt or deadline", count);
+            }
+        }
+
+        @Override
+        public void close() {
+            if (!WATCHES.remove(this)) {
+                return;
+            }
+            statements.clear();
+            if (ACTIVE_WATCHES.decrementAndGet() == 0) {
+                CheckerHolder.stopIfIdle();
+            }
+        }
+
+    }
+
+    /**
+     * 首次使用时才创建检查线程，检查任务只在有监视时运行，任务取消后立即从队列中移除，检查线程阻塞等待下一个任务
+     */
+    private static class CheckerHolder {
+
+        private static final ScheduledExecutorService CHECKER;
+
+        private static ScheduledFuture<?> checkTask;
+
+        static {
+            ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(1, r -> {
+                Thread t = new Thread(r, "statement-watchdog");
+                t.setDaemon(true);
+                return t;
+            });
+            executor.setRemoveOnCancelPolicy(true);
+            CHECKER = executor;
+        }
+
+        static synchronized void start() {
+            if (checkTask == null) {
+                checkTask = CHECKER.scheduleWithFixedDelay(StatementWatchdog::check, CHECK_INTERVAL_MILLIS,
+                        CHECK_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+            }
+        }
+
+        /**
+         * 调用前可能已有新的监视加入并调用了 {@link #start()}，所以持有锁后需要重新确认没有监视
+         */
+        static synchronized void stopIfIdle() {
+            if (checkTask != null && ACTIVE_WATCHES.get() == 0) {
+                checkTask.cancel(false);
+                checkTask = null;
+            }
+        }
+
+    }
+
+}
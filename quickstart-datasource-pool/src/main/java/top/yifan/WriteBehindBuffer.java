@@ -0,0 +1,453 @@
+package top.yifan;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BinaryOperator;
+
+/**
+ * 延迟合并写入缓冲区，适用于高频更新同一批行的场景，例如计数器。
+ *
+ * <p>写入先按 key 合并在内存中：同一个 key 在刷新前的多次写入通过 merger 合并为一次（默认保留最后一次写入的值），
+ * 当缓冲的 key 数量达到 flushSize 或距离上次刷新超过 flushInterval 时，由后台线程通过 {@link JdbcBatchWriter}
+ * 以JDBC批次写入数据库。
+ *
+ * <p>缓冲区中的 key 与正在刷新的 key 总数不超过 maxBufferedKeys，达到上限时写入线程将被阻塞，直到刷新完成腾出空间。
+ * 刷新失败时未提交的数据会重新合并回缓冲区（新写入的值优先），在下一次刷新时重试，已提交的分块不会重新合并，
+ * 所以使用增量合并（例如 Long::sum）时不会重复累加；无法确定提交了多少行时（例如刷新时抛出 Error），
+ * 本次刷新的数据将被丢弃并记录日志，而不是冒险重复写入。
+ * {@link #close()} 会停止后台线程并同步刷新剩余的数据。
+ *
+ * <p>写入连接池中的数据库时，应当通过 {@link top.yifan.datasource.RDBMSDataSourcePoolUtil#getWriteBehindBufferBuilder}
+ * 创建，使刷新与 {@link JdbcBatchWriter} 一样使用连接池的异常分类、执行指标与重试预算。
+ *
+ * @author Star Zheng
+ *
+ * @param <K> 行的标识类型，需要正确实现 equals 和 hashCode
+ * @param <V> 写入的值类型
+ */
+public class WriteBehindBuffer<K, V> implements AutoCloseable {
+
+    private static final Logger log = LoggerFactory.getLogger(WriteBehindBuffer.class);
+
+    private final JdbcBatchWriter<Map.Entry<K, V>> writer;
+    private final BinaryOperator<V> merger;
+    private final int flushSize;
+    private final long flushIntervalNanos;
+    private final int maxBufferedKeys;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notFull = lock.newCondition();
+    private final Condition flushRequested = lock.newCondition();
+    private final Condition flushed = lock.newCondition();
+    private final Thread flusher;
+
+    private LinkedHashMap<K, V> buffer = new LinkedHashMap<>();
+    private int flushingKeys;
+    private boolean flushing;
+    private boolean closed;
+
+    private final LongAdder writes = new LongAdder();
+    private final LongAdder coalescedWrites = new LongAdder();
+    private final LongAdder flushedRows = new LongAdder();
+    private final LongAdder flushFailures = new LongAdder();
+    private final LatencyHistogram flushLatency = new LatencyHistogram();
+
+    private WriteBehindBuffer(Builder<K, V> builder) {
+        this.writer = JdbcBatchWriter.<Map.Entry<K, V>>builder()
+                .connection(builder.getConnection)
+                .sql(builder.sql)
+                .binder(builder.binder)
+                .batchSize(builder.flushSize)
+                .numRetries(builder.numRetries)
+                .intervalTime(builder.intervalTime)
+                .metrics(builder.metrics)
+                .classifier(builder.classifier)
+                .retryBudget(builder.retryBudget)
+                .build();
+        this.merger = builder.merger;
+        this.flushSize = builder.flushSize;
+        this.flushIntervalNanos = TimeUnit.MILLISECONDS.toNanos(builder.flushIntervalMillis);
+        this.maxBufferedKeys = builder.maxBufferedKeys;
+        this.flusher = new Thread(this::runFlusher, "write-behind-flusher-" + builder.name);
+        this.flusher.setDaemon(true);
+        this.flusher.start();
+    }
+
+    public static <K, V> Builder<K, V> builder() {
+        return new Builder<>();
+    }
+
+    /**
+     * 写入一个值，与缓冲区中同一个 key 的值合并；缓冲区已满时阻塞等待
+     *
+     * @param key   - 行的标识
+     * @param value - 写入的值
+     */
+    public void put(K key, V value) throws InterruptedException {
+        offer(key, value, Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * 写入一个值，与缓冲区中同一个 key 的值合并；缓冲区已满时最多等待指定的时间
+     *
+     * @param key   - 行的标识
+     * @param value - 写入的值
+     * @return 返回false表示等待超时，值没有写入缓冲区
+     * @throws IllegalStateException 如果缓冲区已经关闭
+     */
+    public boolean offer(K key, V value, long timeout, TimeUnit unit) throws InterruptedException {
+        Objects.requireNonNull(key, "Key is required");
+        long nanos = unit.toNanos(timeout);
+        lock.lockInterruptibly();
+        try {
+            for (; ; ) {
+                if (closed) {
+                    throw new IllegalStateException("Write-behind buffer is closed");
+                }
+                V current = buffer.get(key);
+                if (current != null || buffer.containsKey(key)) {
+                    buffer.put(key, merger.apply(current, value));
+                    coalescedWrites.increment();
+                    break;
+                }
+                if (buffer.size() + flushingKeys < maxBufferedKeys) {
+                    buffer.put(key, value);
+                    if (buffer.size() >= flushSize) {
+                        flushRequested.signal();
+                    }
+                    break;
+                }
+                if (nanos <= 0L) {
+                    return false;
+                }
+                // 缓冲区已满，主动触发刷新后等待
+                flushRequested.signal();
+                nanos = notFull.awaitNanos(nanos);
+            }
+            writes.increment();
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 立即刷新缓冲区，并等待本次刷新完成
+     *
+     * @throws SQLException 如果刷新失败，失败的数据仍保留在缓冲区中
+     */
+    public void flush() throws SQLException, InterruptedException {
+        lock.lockInterruptibly();
+        try {
+            flushOnce();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 停止后台刷新线程并同步刷新剩余的数据。
+     *
+     * <p>等待期间被中断时，不再等待后台线程与最后一次刷新，恢复线程的中断状态后返回，缓冲区中剩余的数据将被丢弃
+     *
+     * @throws SQLException 如果最后一次刷新失败
+     */
+    @Override
+    public void close() throws SQLException {
+        lock.lock();
+        try {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            flushRequested.signal();
+            notFull.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        try {
+            flusher.join();
+            flush();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.warn("Close write-behind buffer interrupted, {} buffered keys are discarded", getBufferedKeys());
+        }
+    }
+
+    private void runFlusher() {
+        lock.lock();
+        try {
+            long nextFlush = System.nanoTime() + flushIntervalNanos;
+            while (!closed) {
+                long waitNanos = nextFlush - System.nanoTime();
+                if (buffer.size() < flushSize && waitNanos > 0) {
+                    flushRequested.awaitNanos(waitNanos);
+                    continue;
+                }
+                try {
+                    flushOnce();
+                } catch (SQLException | RuntimeException e) {
+                    log.error("Flush write-behind buffer failed, the rows will be retried on next flush, message: {}",
+                            e.getMessage(), e);
+                    // 失败后至少等待一个刷新间隔，避免缓冲区满时连续失败
+                    flushRequested.awaitNanos(flushIntervalNanos);
+                }
+                nextFlush = System.nanoTime() + flushIntervalNanos;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 刷新一次缓冲区，调用时必须持有锁，写入数据库期间会释放锁，使写入线程可以继续写入新的缓冲区
+     */
+    private void flushOnce() throws SQLException, InterruptedException {
+        // 等待其它线程正在进行的刷新完成，避免同一个 key 的新旧两个值被并发写入
+        while (flushing) {
+            flushed.await();
+        }
+        if (buffer.isEmpty()) {
+            return;
+        }
+        List<Map.Entry<K, V>> rows = new ArrayList<>(buffer.entrySet());
+        buffer = new LinkedHashMap<>();
+        flushingKeys = rows.size();
+        flushing = true;
+        long committedRows = 0;
+        // 写入器对所有失败都会通过 BatchWriteException 报告已提交的行数，其它异常（Error）时提交的行数未知，不再重新合并
+        int retryFrom = rows.size();
+        long start = System.nanoTime();
+        lock.unlock();
+        try {
+            committedRows = writer.write(rows.iterator());
+        } catch (BatchWriteException e) {
+            committedRows = e.getCommittedRows();
+            retryFrom = (int) committedRows;
+            flushFailures.increment();
+            throw e;
+        } catch (Throwable e) {
+            flushFailures.increment();
+            log.error("Flush write-behind buffer failed with unknown committed rows, {} rows are discarded",
+                    rows.size(), e);
+            throw e;
+        } finally {
+            flushLatency.recordNanos(System.nanoTime() - start);
+            flushedRows.add(committedRows);
+            lock.lock();
+            // 未提交的行在刷新期间一直计入 flushingKeys，写入线程只能占用剩余的空间，所以合并后仍不超过 maxBufferedKeys
+            requeue(rows.subList(retryFrom, rows.size()));
+            flushingKeys = 0;
+            flushing = false;
+            notFull.signalAll();
+            flushed.signalAll();
+        }
+    }
+
+    /**
+     * 将未提交的数据合并回缓冲区，刷新期间新写入的值排在后面
+     */
+    private void requeue(List<Map.Entry<K, V>> failedRows) {
+        if (failedRows.isEmpty()) {
+            return;
+        }
+        LinkedHashMap<K, V> merged = new LinkedHashMap<>();
+        for (Map.Entry<K, V> row : failedRows) {
+            merged.put(row.getKey(), row.getValue());
+        }
+        for (Map.Entry<K, V> entry : buffer.entrySet()) {
+            merged.merge(entry.getKey(), entry.getValue(), merger);
+        }
+        buffer = merged;
+    }
+
+    /**
+     * @return 返回接收的写入次数
+     */
+    public long getWrites() {
+        return writes.sum();
+    }
+
+    /**
+     * @return 返回被合并掉的写入次数
+     */
+    public long getCoalescedWrites() {
+        return coalescedWrites.sum();
+    }
+
+    /**
+     * @return 返回合并率，即被合并掉的写入次数占接收的写入次数的比例
+     */
+    public double getCoalesceRatio() {
+        long total = writes.sum();
+        return total == 0 ? 0.0 : (double) coalescedWrites.sum() / total;
+    }
+
+    /**
+     * @return 返回写入数据库的行数
+     */
+    public long getFlushedRows() {
+        return flushedRows.sum();
+    }
+
+    public long getFlushFailures() {
+        return flushFailures.sum();
+    }
+
+    /**
+     * @return 返回每次刷新的耗时，单位微秒
+     */
+    public LatencyHistogram getFlushLatency() {
+        return flushLatency;
+    }
+
+    /**
+     * @return 返回当前缓冲区与正在刷新的 key 的数量
+     */
+    public int getBufferedKeys() {
+        lock.lock();
+        try {
+            return buffer.size() + flushingKeys;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public static class Builder<K, V> {
+
+        private String name = "default";
+        private GetConnectionSupplier getConnection;
+        private String sql;
+        private StatementBinder<Map.Entry<K, V>> binder;
+        private BinaryOperator<V> merger = (oldValue, newValue) -> newValue;
+        private int flushSize = 500;
+        private long flushIntervalMillis = 1000;
+        private int maxBufferedKeys = 10000;
+        private int numRetries = 3;
+        private int intervalTime = -1;
+        private SQLExecutionMetrics metrics;
+        private SQLExceptionClassifier classifier = DefaultSQLExceptionClassifier.INSTANCE;
+        private RetryBudget retryBudget;
+
+        public WriteBehindBuffer<K, V> build() {
+            Objects.requireNonNull(getConnection, "Connection supplier is required");
+            Objects.requireNonNull(sql, "SQL is required");
+            Objects.requireNonNull(binder, "Binder is required");
+            Objects.requireNonNull(merger, "Merger is required");
+            if (flushSize <= 0) {
+                throw new IllegalArgumentException("Flush size must be positive");
+            }
+            if (flushIntervalMillis <= 0) {
+                throw new IllegalArgumentException("Flush interval must be positive");
+            }
+            if (maxBufferedKeys < flushSize) {
+                throw new IllegalArgumentException("Max buffered keys must not be less than flush size");
+            }
+            return new WriteBehindBuffer<>(this);
+        }
+
+        /**
+         * 缓冲区名称，用于刷新线程的命名
+         */
+        public Builder<K, V> name(String name) {
+            this.name = name;
+            return this;
+        }
+
+        public Builder<K, V> connection(GetConnectionSupplier getConnection) {
+            this.getConnection = getConnection;
+            return this;
+        }
+
+        public Builder<K, V> sql(String sql) {
+            this.sql = sql;
+            return this;
+        }
+
+        public Builder<K, V> binder(StatementBinder<Map.Entry<K, V>> binder) {
+            this.binder = binder;
+            return this;
+        }
+
+        /**
+         * 合并同一个 key 的旧值与新值，默认保留新值；对于增量计数可以使用 Long::sum
+         */
+        public Builder<K, V> merger(BinaryOperator<V> merger) {
+            this.merger = merger;
+            return this;
+        }
+
+        /**
+         * 缓冲的 key 数量达到该值时触发刷新，同时也是每个JDBC批次的大小
+         */
+        public Builder<K, V> flushSize(int flushSize) {
+            this.flushSize = flushSize;
+            return this;
+        }
+
+        public Builder<K, V> flushInterval(long flushInterval, TimeUnit unit) {
+            this.flushIntervalMillis = unit.toMillis(flushInterval);
+            return this;
+        }
+
+        /**
+         * 缓冲区与正在刷新的 key 的最大总数，达到后写入将被阻塞
+         */
+        public Builder<K, V> maxBufferedKeys(int maxBufferedKeys) {
+            this.maxBufferedKeys = maxBufferedKeys;
+            return this;
+        }
+
+        /**
+         * 单个批次的最大重试次数，含义同 {@link RetryableConnection#execute(ExecuteSQLFunction, int, int)}
+         */
+        public Builder<K, V> numRetries(int numRetries) {
+            this.numRetries = numRetries;
+            return this;
+        }
+
+        /**
+         * 重试的间隔时间，含义同 {@link RetryableConnection#execute(ExecuteSQLFunction, int, int)}
+         */
+        public Builder<K, V> intervalTime(int intervalTime) {
+            this.intervalTime = intervalTime;
+            return this;
+        }
+
+        /**
+         * 含义同 {@link JdbcBatchWriter.Builder#metrics(SQLExecutionMetrics)}
+         */
+        public Builder<K, V> metrics(SQLExecutionMetrics metrics) {
+            this.metrics = metrics;
+            return this;
+        }
+
+        public Builder<K, V> classifier(SQLExceptionClassifier classifier) {
+            this.classifier = Objects.requireNonNull(classifier, "Classifier is required");
+            return this;
+        }
+
+        /**
+         * 含义同 {@link JdbcBatchWriter.Builder#retryBudget(RetryBudget)}
+         */
+        public Builder<K, V> retryBudget(RetryBudget retryBudget) {
+            this.retryBudget = retryBudget;
+            return this;
+        }
+
+    }
+
+}
@@ -7,8 +7,9 @@ import com.zaxxer.hikari.pool.HikariPool;
 import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import top.yifan.MD5Util;
+import top.yifan.DefaultSQLExceptionClassifier;
 import top.yifan.RDBMSDriverLoader;
+import top.yifan.SQLExceptionClassifier;
 import top.yifan.UnsupportedTypeException;
 
 import javax.management.JMX;
@@ -18,10 +19,17 @@ import javax.management.ObjectName;
 import java.lang.management.ManagementFactory;
 import java.sql.Connection;
 import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.Collection;
+import java.util.List;
 import java.util.Objects;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
 
 /**
  * 抽象关系型数据库数据源池
@@ -30,7 +38,7 @@ import java.util.concurrent.ConcurrentHashMap;
  */
 public abstract class AbstractRDBMSDataSourcePool {
 
-    private final Logger log = LoggerFactory.getLogger(AbstractRDBMSDataSourcePool.class);
+    private static final Logger log = LoggerFactory.getLogger(AbstractRDBMSDataSourcePool.class);
 
     private static final ConcurrentHashMap<RDBMSType, AbstractRDBMSDataSourcePool> ACTUAL_DATA_SOURCE_POOL = new ConcurrentHashMap<>();
     private static final Set<HikariPoolMXBeanExtension> MX_BEANS = ConcurrentHashMap.newKeySet();
@@ -38,16 +46,32 @@ public abstract class AbstractRDBMSDataSourcePool {
     /**
      * 缓存不同环境的连接池容器，Map<环境标识, 连接池>
      */
-    private static final ConcurrentHashMap<String, HikariDataSource> DATA_SOURCES = new ConcurrentHashMap<>();
+    private static final ConcurrentHashMap<PoolKey, PooledDataSource> DATA_SOURCES = new ConcurrentHashMap<>();
     /**
      * 创建数据源时的锁，防止多线程同时创建导致死锁
      */
-    private static final ConcurrentHashMap<String, Object> CREATE_DATA_SOURCE_LOCKS = new ConcurrentHashMap<>();
+    private static final ConcurrentHashMap<PoolKey, Object> CREATE_DATA_SOURCE_LOCKS = new ConcurrentHashMap<>();
+    /**
+     * 已被淘汰的连接池数量
+     */
+    private static final AtomicLong EVICTED_COUNT = new AtomicLong();
+    /**
+     * 连接池被淘汰后的回调，用于释放按连接池维度缓存的其它资源
+     */
+    private static final List<Consumer<PoolKey>> EVICTION_LISTENERS = new CopyOnWriteArrayList<>();
+
+    /**
+     * 租户隔离配置，为null时不限制租户的并发
+     */
+    private static volatile TenantBulkheadConfig tenantBulkheadConfig;
+    /**
+     * 自适应连接池大小控制器的配置，为null时控制器未启动
+     */
+    private static volatile PoolSizeControllerConfig poolSizeControllerConfig;
 
     private volatile boolean isLoadDBDriver = false;
 
     AbstractRDBMSDataSourcePool() {
-        this.loadDriver();
     }
 
     /**
@@ -59,19 +83,73 @@ public abstract class AbstractRDBMSDataSourcePool {
      *                      则将其转译为此异常抛出，如果发生其它SQLException，则原样抛出
      */
     Connection getConnection(RDBMSConnectionConfiguration config) throws SQLException {
-        this.checkConnectionParams(config);
+        return this.getConnection(PoolKey.of(config));
+    }
+
+    /**
+     * 根据预先计算好的缓存键获取一个连接，连接池已存在时仅需一次Map查询
+     *
+     * @param poolKey - 连接池缓存键
+     * @return 返回创建的连接
+     * @throws SQLException 同 {@link #getConnection(RDBMSConnectionConfiguration)}
+     */
+    Connection getConnection(PoolKey poolKey) throws SQLException {
+        return this.getConnection(poolKey, null);
+    }
+
+    /**
+     * 以指定租户的身份获取一个连接，启用了租户隔离时，先在该连接池的 {@link TenantBulkhead} 中获取许可，
+     * 连接关闭时归还许可
+     *
+     * @param poolKey - 连接池缓存键
+     * @param tenant  - 租户标识，为null时不受租户隔离的限制
+     * @return 返回创建的连接
+     * @throws SQLException 同 {@link #getConnection(RDBMSConnectionConfiguration)}，
+     *                      超出租户配额时抛出 {@link top.yifan.BulkheadRejectedException}
+     */
+    Connection getConnection(PoolKey poolKey, String tenant) throws SQLException {
+        return this.getConnection(poolKey, tenant, -1L);
+    }
 
-        String mapKey = generateCacheKey(config);
-        HikariDataSource dataSource = DATA_SOURCES.get(mapKey);
-        if (dataSource == null) {
+    /**
+     * 获取一个连接，最多等待 timeoutMillis 毫秒，用于可以快速失败并改用其它连接池的场景，例如只读副本
+     *
+     * @param poolKey       - 连接池缓存键
+     * @param timeoutMillis - 从连接池获取连接的最长等待时间
+     * @return 返回创建的连接
+     * @throws SQLException 同 {@link #getConnection(RDBMSConnectionConfiguration)}，超时时抛出
+     *                      {@link java.sql.SQLTransientConnectionException}
+     */
+    Connection getConnection(PoolKey poolKey, long timeoutMillis) throws SQLException {
+        return this.getConnection(poolKey, null, timeoutMillis);
+    }
+
+    private Connection getConnection(PoolKey poolKey, String tenant, long timeoutMillis) throws SQLException {
+        for (; ; ) {
+            PooledDataSource dataSource = DATA_SOURCES.get(poolKey);
+            if (dataSource == null) {
+                try {
+                    this.addDataSourceIfAbsent(poolKey);
+                } catch (HikariPool.PoolInitializationException e) {
+                    throw new SQLException(e);
+                }
+                continue;
+            }
+            if (!dataSource.tryAcquire()) {
+                // 连接池正在被淘汰，等待其从缓存中移除后重新创建
+                Thread.yield();
+                continue;
+            }
             try {
-                this.addDataSourceIfAbsent(mapKey, config);
-            } catch (HikariPool.PoolInitializationException e) {
-                throw new SQLException(e);
+                TenantBulkheadConfig bulkheadConfig = tenantBulkheadConfig;
+                if (tenant == null || bulkheadConfig == null) {
+                    return dataSource.getConnection(timeoutMillis);
+                }
+                return dataSource.getBulkhead().getConnection(tenant, bulkheadConfig, dataSource);
+            } finally {
+                dataSource.release();
             }
-            dataSource = DATA_SOURCES.get(mapKey);
         }
-        return dataSource.getConnection();
     }
 
     /**
@@ -82,7 +160,8 @@ public abstract class AbstractRDBMSDataSourcePool {
      * @throws SQLException 如果发生SQLException，则原样抛出
      */
     Connection getConnectionWithNoPool(RDBMSConnectionConfiguration config) throws SQLException {
-        this.checkConnectionParams(config);
+        checkConnectionParams(config);
+        this.loadDriver();
 
         String jdbc = this.generateJdbcUrlWithConfig(config);
         String username = config.getUsername();
@@ -90,7 +169,7 @@ public abstract class AbstractRDBMSDataSourcePool {
         return DriverManager.getConnection(jdbc, username, password);
     }
 
-    private void checkConnectionParams(RDBMSConnectionConfiguration config) {
+    static void checkConnectionParams(RDBMSConnectionConfiguration config) {
         Objects.requireNonNull(config.getServer(), "Server is required");
         Objects.requireNonNull(config.getDatabase(), "Database is required");
         Objects.requireNonNull(config.getUsername(), "Username is required");
@@ -101,6 +180,77 @@ public abstract class AbstractRDBMSDataSourcePool {
         return MX_BEANS;
     }
 
+    static Collection<PooledDataSource> listAllDataSources() {
+        return DATA_SOURCES.values();
+    }
+
+    /**
+     * @return 返回指定连接池的状态，连接池尚未创建时返回null
+     */
+    static HikariPoolMXBean findPoolMXBean(PoolKey poolKey) {
+        PooledDataSource dataSource = DATA_SOURCES.get(poolKey);
+        return dataSource == null ? null : dataSource.getDataSource().getHikariPoolMXBean();
+    }
+
+    /**
+     * @return 返回指定连接池当前的 maximumPoolSize，连接池尚未创建时返回0
+     */
+    static int findMaximumPoolSize(PoolKey poolKey) {
+        PooledDataSource dataSource = DATA_SOURCES.get(poolKey);
+        return dataSource == null ? 0 : dataSource.getDataSource().getMaximumPoolSize();
+    }
+
+    static void setTenantBulkheadConfig(TenantBulkheadConfig config) {
+        tenantBulkheadConfig = config;
+    }
+
+    static void setPoolSizeControllerConfig(PoolSizeControllerConfig config) {
+        poolSizeControllerConfig = config;
+    }
+
+    static int countLivePools() {
+        return DATA_SOURCES.size();
+    }
+
+    static long countEvictedPools() {
+        return EVICTED_COUNT.get();
+    }
+
+    static void addEvictionListener(Consumer<PoolKey> listener) {
+        EVICTION_LISTENERS.add(Objects.requireNonNull(listener, "Listener is required"));
+    }
+
+    /**
+     * 关闭并移除指定的连接池，如果连接池中仍有被借出的连接或正在等待获取连接的线程，则不做任何处理
+     *
+     * @param dataSource - 连接池条目
+     * @return 淘汰成功则返回true
+     */
+    static boolean evict(PooledDataSource dataSource) {
+        PoolKey poolKey = dataSource.getPoolKey();
+        if (!dataSource.tryRetire()) {
+            return false;
+        }
+        DATA_SOURCES.remove(poolKey, dataSource);
+        CREATE_DATA_SOURCE_LOCKS.remove(poolKey);
+        HikariPoolMXBeanExtension mxBeanExtension = dataSource.getMxBeanExtension();
+        if (mxBeanExtension != null) {
+            MX_BEANS.remove(mxBeanExtension);
+        }
+        // 关闭连接池时Hikari会停止其内部线程并注销MBean
+        dataSource.getDataSource().close();
+        EVICTED_COUNT.incrementAndGet();
+        log.info("Evict DataSource -> {}", poolKey);
+        for (Consumer<PoolKey> listener : EVICTION_LISTENERS) {
+            try {
+                listener.accept(poolKey);
+            } catch (RuntimeException e) {
+                log.warn("Eviction listener failed -> {}, message: {}", poolKey, e.getMessage());
+            }
+        }
+        return true;
+    }
+
     private void loadDriver() {
         if (isLoadDBDriver) {
             return;
@@ -114,24 +264,13 @@ public abstract class AbstractRDBMSDataSourcePool {
         }
     }
 
-    private String generateCacheKey(RDBMSConnectionConfiguration config) {
-        String server = config.getServer();
-        String database = config.getDatabase();
-        String username = config.getUsername();
-        String password = config.getPassword();
-
-        server = server.trim();
-        database = database.trim();
-        username = username.trim();
-
-        String sourceKey = server + database + username + password;
-        return MD5Util.toMD5(sourceKey);
-    }
-
-    private void addDataSourceIfAbsent(String mapKey, RDBMSConnectionConfiguration config) {
+    private void addDataSourceIfAbsent(PoolKey mapKey) {
         if (DATA_SOURCES.containsKey(mapKey)) {
             return;
         }
+        // 在第一次创建连接池时才加载驱动，这样只使用其中一种数据库时不需要引入其它数据库的驱动
+        this.loadDriver();
+        RDBMSConnectionConfiguration config = mapKey.getConfig();
         String jdbc = this.generateJdbcUrlWithConfig(config);
         String password = config.getPassword();
 
@@ -153,22 +292,26 @@ public abstract class AbstractRDBMSDataSourcePool {
         hikariConfig.setConnectionTimeout(90 * 1000L); // 从连接池获取连接的超时时间：90s
         hikariConfig.setMaxLifetime(15 * 60 * 1000L);  // 最大的生命周期：15min
         hikariConfig.setMinimumIdle(0);                // 最小的空闲连接数
-        hikariConfig.setMaximumPoolSize(20);           // 允许的最大连接数
+        hikariConfig.setMaximumPoolSize(initialMaximumPoolSize(config.getType())); // 允许的最大连接数
         hikariConfig.setIdleTimeout(10 * 60 * 1000L);  // 空闲连接的超时时间：10min
         hikariConfig.setRegisterMbeans(true);
-        CREATE_DATA_SOURCE_LOCKS.putIfAbsent(mapKey, new Object());
-        synchronized (CREATE_DATA_SOURCE_LOCKS.get(mapKey)) {
+        Object lock = CREATE_DATA_SOURCE_LOCKS.computeIfAbsent(mapKey, k -> new Object());
+        synchronized (lock) {
             if (DATA_SOURCES.containsKey(mapKey)) {
                 return;
             }
             // 创建新的连接池
             HikariDataSource newDataSource = new HikariDataSource(hikariConfig);
-            HikariDataSource oldDataSource = DATA_SOURCES.putIfAbsent(mapKey, newDataSource);
+            PooledDataSource pooledDataSource = new PooledDataSource(mapKey, newDataSource);
+            pooledDataSource.setMxBeanExtension(createMXBean(config.getType(), newDataSource));
+            PooledDataSource oldDataSource = DATA_SOURCES.putIfAbsent(mapKey, pooledDataSource);
             if (oldDataSource != null) {
                 newDataSource.close();
                 return;
             }
-            createMXBean(newDataSource);
+            if (pooledDataSource.getMxBeanExtension() != null) {
+                MX_BEANS.add(pooledDataSource.getMxBeanExtension());
+            }
         }
         log.info("New DataSource -> Server: {}, DB: {}, User: {}",
                 config.getServer(), config.getDatabase(),
@@ -176,18 +319,29 @@ public abstract class AbstractRDBMSDataSourcePool {
     }
 
 
-    private void createMXBean(HikariDataSource newDataSource) {
+    /**
+     * 控制器运行时以该类型的下限创建连接池，由控制器在全局预算内按需扩容，否则使用固定的20
+     */
+    private static int initialMaximumPoolSize(RDBMSType type) {
+        PoolSizeControllerConfig sizeConfig = poolSizeControllerConfig;
+        return sizeConfig == null ? 20 : sizeConfig.getBounds(type).getMinPoolSize();
+    }
+
+    private HikariPoolMXBeanExtension createMXBean(RDBMSType type, HikariDataSource newDataSource) {
         MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
         try {
             ObjectName poolName = new ObjectName("com.zaxxer.hikari:type=Pool (" + newDataSource.getPoolName() + ")");
             HikariPoolMXBean poolProxy = JMX.newMBeanProxy(mBeanServer, poolName, HikariPoolMXBean.class);
             HikariPoolMXBeanExtension mxBeanExtension = new HikariPoolMXBeanExtension();
+            mxBeanExtension.setType(type);
             mxBeanExtension.setMxBean(poolProxy);
+            mxBeanExtension.setConfigMxBean(newDataSource.getHikariConfigMXBean());
             mxBeanExtension.setJdbc(newDataSource.getJdbcUrl());
             mxBeanExtension.setUsername(newDataSource.getUsername());
-            MX_BEANS.add(mxBeanExtension);
+            return mxBeanExtension;
         } catch (MalformedObjectNameException e) {
             e.printStackTrace();
+            return null;
         }
     }
 
@@ -207,8 +361,37 @@ public abstract class AbstractRDBMSDataSourcePool {
 
     protected abstract String generateJdbcUrl(RDBMSConnectionConfiguration connectionConfig);
 
+    /**
+     * 创建用于流式读取的语句，结果集只能向前移动且只读，驱动每次仅从服务端拉取 fetchSize 行数据，
+     * 不同的数据库可以覆盖此方法以使用各自的流式读取方式
+     *
+     * @param conn      - 数据库连接
+     * @param sql       - 查询语句
+     * @param fetchSize - 每次从服务端拉取的行数
+     * @return 返回创建的语句
+     */
+    protected PreparedStatement prepareStreamingStatement(Connection conn, String sql, int fetchSize) throws SQLException {
+        PreparedStatement ps = conn.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+        ps.setFetchSize(fetchSize);
+        return ps;
+    }
+
     protected abstract String getDriverName();
 
+    /**
+     * @return 返回用于判断SQL异常是否可以重试的分类器，不同的数据库可以覆盖此方法以识别各自的错误码
+     */
+    protected SQLExceptionClassifier getExceptionClassifier() {
+        return DefaultSQLExceptionClassifier.INSTANCE;
+    }
+
+    /**
+     * @return 返回数据库原生的批量导入方式，不支持批量导入的数据库不需要覆盖此方法
+     */
+    protected BulkLoader getBulkLoader() {
+        throw new UnsupportedTypeException("Bulk load is not supported by " + getClass().getSimpleName());
+    }
+
     static void registerInstance(RDBMSType type, AbstractRDBMSDataSourcePool pool) {
         ACTUAL_DATA_SOURCE_POOL.putIfAbsent(type, pool);
     }
@@ -0,0 +1,190 @@
+package top.yifan.datasource;
+
+import top.yifan.DBUtil;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.Function;
+
+/**
+ * 批量导入，使用数据库原生的导入方式写入大量数据，比批量 INSERT 快数倍。
+ *
+ * <p>具体的导入方式由各数据库的 {@link BulkLoader} 实现（参见 {@link AbstractRDBMSDataSourcePool#getBulkLoader()}）：
+ * MySQL 使用 LOAD DATA LOCAL INFILE，SQL Server 使用 SQLServerBulkCopy。数据从迭代器中按需读取，
+ * 内存中只保留当前正在编码的行，所以可以导入任意大小的数据。
+ *
+ * @author Star Zheng
+ *
+ * @param <T> 行数据类型
+ */
+public class BulkLoad<T> {
+
+    private final String table;
+    private final List<Column> columns;
+    private final Function<T, Object[]> extractor;
+    private final int batchSize;
+
+    private BulkLoad(Builder<T> builder) {
+        this.table = builder.table;
+        this.columns = Collections.unmodifiableList(new ArrayList<>(builder.columns));
+        this.extractor = builder.extractor;
+        this.batchSize = builder.batchSize;
+    }
+
+    public static <T> Builder<T> builder() {
+        return new Builder<>();
+    }
+
+    /**
+     * 使用连接池中的连接导入数据，导入结束后连接将归还到连接池中
+     *
+     * @param config - 数据库连接配置
+     * @param rows   - 待导入的数据
+     * @return 返回导入的行数
+     */
+    public long execute(RDBMSConnectionConfiguration config, Iterator<T> rows) throws SQLException {
+        PoolKey poolKey = PoolKey.of(config);
+        AbstractRDBMSDataSourcePool pool = AbstractRDBMSDataSourcePool.findInstance(poolKey.getType());
+        Connection conn = null;
+        try {
+            conn = pool.getConnection(poolKey);
+            return execute(conn, pool.getBulkLoader(), rows);
+        } finally {
+            DBUtil.closeDBResources(conn);
+        }
+    }
+
+    long execute(Connection conn, BulkLoader loader, Iterator<T> rows) throws SQLException {
+        Iterator<Object[]> values = new Iterator<Object[]>() {
+            @Override
+            public boolean hasNext() {
+                return rows.hasNext();
+            }
+
+            @Override
+            public Object[] next() {
+                Object[] row = extractor.apply(rows.next());
+                if (row.length != columns.size()) {
+                    throw new IllegalArgumentException("Expected " + columns.size() + " values but got " + row.length);
+                }
+                return row;
+            }
+        };
+        return loader.load(conn, this, values);
+    }
+
+    public String getTable() {
+        return table;
+    }
+
+    public List<Column> getColumns() {
+        return columns;
+    }
+
+    /**
+     * @return 返回每批提交的行数，MySQL 每批为一条 LOAD DATA 语句，SQL Server 为 BulkCopy 的 batchSize
+     */
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    /**
+     * 目标表的列
+     */
+    public static final class Column {
+
+        private final String name;
+        private final int sqlType;
+        private final int precision;
+        private final int scale;
+
+        Column(String name, int sqlType, int precision, int scale) {
+            this.name = name;
+            this.sqlType = sqlType;
+            this.precision = precision;
+            this.scale = scale;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * @return 返回 {@link Types} 中定义的类型
+         */
+        public int getSqlType() {
+            return sqlType;
+        }
+
+        public int getPrecision() {
+            return precision;
+        }
+
+        public int getScale() {
+            return scale;
+        }
+
+    }
+
+    public static class Builder<T> {
+
+        private String table;
+        private final List<Column> columns = new ArrayList<>();
+        private Function<T, Object[]> extractor;
+        private int batchSize = 50000;
+
+        public BulkLoad<T> build() {
+            Objects.requireNonNull(table, "Table is required");
+            Objects.requireNonNull(extractor, "Extractor is required");
+            if (columns.isEmpty()) {
+                throw new IllegalArgumentException("At least one column is required");
+            }
+            if (batchSize <= 0) {
+                throw new IllegalArgumentException("Batch size must be positive");
+            }
+            return new BulkLoad<>(this);
+        }
+
+        public Builder<T> table(String table) {
+            this.table = table;
+            return this;
+        }
+
+        /**
+         * 添加一列，字符串与二进制类型的精度默认为最大值，DECIMAL 默认为 (38, 10)
+         *
+         * @param name    - 列名
+         * @param sqlType - {@link Types} 中定义的类型，SQL Server 依据它转换数据
+         */
+        public Builder<T> column(String name, int sqlType) {
+            boolean decimal = sqlType == Types.DECIMAL || sqlType == Types.NUMERIC;
+            return column(name, sqlType, decimal ? 38 : Integer.MAX_VALUE, decimal ? 10 : 0);
+        }
+
+        public Builder<T> column(String name, int sqlType, int precision, int scale) {
+            this.columns.add(new Column(Objects.requireNonNull(name, "Column name is required"), sqlType, precision, scale));
+            return this;
+        }
+
+        /**
+         * 将一行数据转换为与列顺序一致的值数组
+         */
+        public Builder<T> extractor(Function<T, Object[]> extractor) {
+            this.extractor = extractor;
+            return this;
+        }
+
+        public Builder<T> batchSize(int batchSize) {
+            this.batchSize = batchSize;
+            return this;
+        }
+
+    }
+
+}
@@ -0,0 +1,22 @@
+package top.yifan.datasource;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Iterator;
+
+/**
+ * 数据库原生的批量导入方式
+ *
+ * @author Star Zheng
+ */
+public interface BulkLoader {
+
+    /**
+     * @param conn - 数据库连接，可能是连接池的代理连接
+     * @param spec - 目标表与列的定义
+     * @param rows - 与列顺序一致的值数组，应当按需读取，不要一次性读入内存
+     * @return 返回导入的行数
+     */
+    long load(Connection conn, BulkLoad<?> spec, Iterator<Object[]> rows) throws SQLException;
+
+}
@@ -1,5 +1,6 @@
 package top.yifan.datasource;
 
+import com.zaxxer.hikari.HikariConfigMXBean;
 import com.zaxxer.hikari.HikariPoolMXBean;
 
 /**
@@ -13,8 +14,12 @@ public class HikariPoolMXBeanExtension {
 
     private String username;
 
+    private RDBMSType type;
+
     private HikariPoolMXBean mxBean;
 
+    private HikariConfigMXBean configMxBean;
+
     public String getJdbc() {
         return jdbc;
     }
@@ -31,6 +36,14 @@ public class HikariPoolMXBeanExtension {
         this.username = username;
     }
 
+    public RDBMSType getType() {
+        return type;
+    }
+
+    public void setType(RDBMSType type) {
+        this.type = type;
+    }
+
     public HikariPoolMXBean getMxBean() {
         return mxBean;
     }
@@ -38,4 +51,12 @@ public class HikariPoolMXBeanExtension {
     public void setMxBean(HikariPoolMXBean mxBean) {
         this.mxBean = mxBean;
     }
+
+    public HikariConfigMXBean getConfigMxBean() {
+        return configMxBean;
+    }
+
+    public void setConfigMxBean(HikariConfigMXBean configMxBean) {
+        this.configMxBean = configMxBean;
+    }
 }
@@ -0,0 +1,285 @@
+package top.yifan.datasource;
+
+import com.mysql.cj.jdbc.JdbcStatement;
+import top.yifan.DBUtil;
+
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLWarning;
+import java.sql.Statement;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.OffsetDateTime;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * MySQL 批量导入，通过 LOAD DATA LOCAL INFILE 将数据编码为 TSV 格式的输入流交给驱动发送，不会生成临时文件。
+ *
+ * <p>输入流在驱动读取时才从迭代器中取下一行并编码，内存中只保留当前行。使用前需要服务端开启 local_infile，
+ * 且连接属性 allowLoadLocalInfile 为true（当前版本驱动的默认值）。
+ *
+ * <p>LOCAL 模式下类型转换失败与主键重复都只会产生警告而不是错误，所以每条语句执行后都会检查警告以及导入的行数，
+ * 有警告或行数与发送的行数不一致时抛出 SQLException，此前的批次已经提交。
+ * 日期时间类型按 JVM 默认时区格式化为 yyyy-MM-dd HH:mm:ss.SSSSSS。
+ *
+ * @author Star Zheng
+ */
+class MySQLBulkLoader implements BulkLoader {
+
+    static final MySQLBulkLoader INSTANCE = new MySQLBulkLoader();
+
+    @Override
+    public long load(Connection conn, BulkLoad<?> spec, Iterator<Object[]> rows) throws SQLException {
+        String sql = loadDataSql(spec);
+        long loadedRows = 0;
+        while (rows.hasNext()) {
+            Statement stmt = null;
+            try {
+                stmt = conn.createStatement();
+                TsvInputStream input = new TsvInputStream(rows, spec.getBatchSize());
+                stmt.unwrap(JdbcStatement.class).setLocalInfileInputStream(input);
+                long affectedRows = stmt.executeUpdate(sql);
+                checkLoaded(stmt, input.getEncodedRows(), affectedRows, loadedRows);
+                loadedRows += affectedRows;
+            } finally {
+                DBUtil.closeDBResources(stmt);
+            }
+        }
+        return loadedRows;
+    }
+
+    private static void checkLoaded(Statement stmt, long sentRows, long affectedRows, long loadedRows)
+            throws SQLException {
+        SQLWarning warning = stmt.getWarnings();
+        if (warning == null && affectedRows == sentRows) {
+            return;
+        }
+        String message = "LOAD DATA loaded " + affectedRows + " of " + sentRows + " rows, "
+                + loadedRows + " rows of previous batches have been loaded";
+        if (warning != null) {
+            throw new SQLException(message + ", first warning: " + warning.getMessage(),
+                    warning.getSQLState(), warning.getErrorCode(), warning);
+        }
+        throw new SQLException(message);
+    }
+
+    private static String loadDataSql(BulkLoad<?> spec) {
+        StringBuilder sql = new StringBuilder("LOAD DATA LOCAL INFILE 'bulk-load.tsv' INTO TABLE ")
+                .append(quoteTable(spec.getTable()))
+                .append(" CHARACTER SET utf8mb4 FIELDS TERMINATED BY '\\t' ESCAPED BY '\\\\'")
+                .append(" LINES TERMINATED BY '\\n' (");
+        List<BulkLoad.Column> columns = spec.getColumns();
+        for (int i = 0; i < columns.size(); i++) {
+            if (i > 0) {
+                sql.append(',');
+            }
+            sql.append(quote(columns.get(i).getName()));
+        }
+        return sql.append(')').toString();
+    }
+
+    private static String quoteTable(String table) {
+        String[] parts = table.split("\\.");
+        StringBuilder quoted = new StringBuilder();
+        for (int i = 0; i < parts.length; i++) {
+            if (i > 0) {
+                quoted.append('.');
+            }
+            quoted.append(quote(parts[i]));
+        }
+        return quoted.toString();
+    }
+
+    private static String quote(String identifier) {
+        String name = identifier.trim();
+        if (name.startsWith("`") && name.endsWith("`")) {
+            return name;
+        }
+        return '`' + name.replace("`", "``") + '`';
+    }
+
+    /**
+     * 按需编码的 TSV 输入流，每个流最多包含 limit 行
+     */
+    static class TsvInputStream extends InputStream {
+
+        private static final byte[] NULL = {'\\', 'N'};
+        private static final DateTimeFormatter DATE_TIME = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss.SSSSSS");
+        private static final DateTimeFormatter TIME = DateTimeFormatter.ofPattern("HH:mm:ss.SSSSSS");
+
+        private final Iterator<Object[]> rows;
+        private final int limit;
+        private int encodedRows;
+
+        private byte[] buffer = new byte[256];
+        private int position;
+        private int length;
+
+        TsvInputStream(Iterator<Object[]> rows, int limit) {
+            this.rows = rows;
+            this.limit = limit;
+        }
+
+        int getEncodedRows() {
+            return encodedRows;
+        }
+
+        @Override
+        public int read() {
+            if (!fill()) {
+                return -1;
+            }
+            return buffer[position++] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            if (len == 0) {
+                return 0;
+            }
+            int read = 0;
+            while (read < len && fill()) {
+                int n = Math.min(len - read, length - position);
+                System.arraycopy(buffer, position, b, off + read, n);
+                position += n;
+                read += n;
+            }
+            return read == 0 ? -1 : read;
+        }
+
+        /**
+         * @return 当前行已经读完且没有下一行时返回false
+         */
+        private boolean fill() {
+            if (position < length) {
+                return true;
+            }
+            if (encodedRows >= limit || !rows.hasNext()) {
+                return false;
+            }
+            position = 0;
+            length = 0;
+            Object[] row = rows.next();
+            for (int i = 0; i < row.length; i++) {
+                if (i > 0) {
+                    write('\t');
+                }
+                writeValue(row[i]);
+            }
+            write('\n');
+            encodedRows++;
+            return true;
+        }
+
+        private void writeValue(Object value) {
+            if (value == null) {
+                write(NULL);
+                return;
+            }
+            if (value instanceof byte[]) {
+                writeEscaped((byte[]) value);
+                return;
+            }
+            String text;
+            if (value instanceof Boolean) {
+                text = (Boolean) value ? "1" : "0";
+            } else if (value instanceof BigDecimal) {
+                // 避免科学计数法
+                text = ((BigDecimal) value).toPlainString();
+            } else {
+                text = formatTemporal(value);
+                if (text == null) {
+                    text = String.valueOf(value);
+                }
+            }
+            writeEscaped(text.getBytes(StandardCharsets.UTF_8));
+        }
+
+        /**
+         * @return 返回MySQL可以识别的日期时间文本，不是日期时间类型时返回null
+         */
+        private static String formatTemporal(Object value) {
+            if (value instanceof java.sql.Date || value instanceof java.sql.Time) {
+                // 分别为 yyyy-MM-dd 与 HH:mm:ss
+                return value.toString();
+            }
+            if (value instanceof java.sql.Timestamp) {
+                return DATE_TIME.format(((java.sql.Timestamp) value).toLocalDateTime());
+            }
+            if (value instanceof Date) {
+                return DATE_TIME.format(((Date) value).toInstant().atZone(ZoneId.systemDefault()));
+            }
+            if (value instanceof LocalDateTime) {
+                return DATE_TIME.format((LocalDateTime) value);
+            }
+            if (value instanceof LocalTime) {
+                return TIME.format((LocalTime) value);
+            }
+            if (value instanceof Instant) {
+                return DATE_TIME.format(((Instant) value).atZone(ZoneId.systemDefault()));
+            }
+            if (value instanceof OffsetDateTime) {
+                return DATE_TIME.format(((OffsetDateTime) value).atZoneSameInstant(ZoneId.systemDefault()));
+            }
+            if (value instanceof ZonedDateTime) {
+                return DATE_TIME.format(((ZonedDateTime) value).withZoneSameInstant(ZoneId.systemDefault()));
+            }
+            // LocalDate 的 toString 即为 yyyy-MM-dd
+            return null;
+        }
+
+        private void writeEscaped(byte[] bytes) {
+            for (byte b : bytes) {
+                switch (b) {
+                    case '\\':
+                        write('\\');
+                        write('\\');
+                        break;
+                    case '\t':
+                        write('\\');
+                        write('t');
+                        break;
+                    case '\n':
+                        write('\\');
+                        write('n');
+                        break;
+                    case '\r':
+                        write('\\');
+                        write('r');
+                        break;
+                    case 0:
+                        write('\\');
+                        write('0');
+                        break;
+                    default:
+                        write(b);
+                }
+            }
+        }
+
+        private void write(byte[] bytes) {
+            for (byte b : bytes) {
+                write(b);
+            }
+        }
+
+        private void write(int b) {
+            if (length == buffer.length) {
+                buffer = Arrays.copyOf(buffer, buffer.length * 2);
+            }
+            buffer[length++] = (byte) b;
+        }
+
+    }
+
+}
@@ -1,5 +1,12 @@
 package top.yifan.datasource;
 
+import top.yifan.SQLExceptionClassifier;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
 /**
  * MySQLDataSourcePool
  *
@@ -14,11 +21,32 @@ public class MySQLDataSourcePool extends AbstractRDBMSDataSourcePool {
                 connectionConfig.getServer(), connectionConfig.getPort(), connectionConfig.getDatabase());
     }
 
+    /**
+     * MySQL驱动默认会将整个结果集读入内存，这里使用 fetchSize=Integer.MIN_VALUE 开启逐行流式读取。
+     * 没有使用 useCursorFetch，因为它会让整个连接池都切换为服务端预编译语句。
+     */
+    @Override
+    protected PreparedStatement prepareStreamingStatement(Connection conn, String sql, int fetchSize) throws SQLException {
+        PreparedStatement ps = conn.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+        ps.setFetchSize(Integer.MIN_VALUE);
+        return ps;
+    }
+
     @Override
     protected String getDriverName() {
         return "com.mysql.cj.jdbc.Driver";
     }
 
+    @Override
+    protected SQLExceptionClassifier getExceptionClassifier() {
+        return MySQLExceptionClassifier.INSTANCE;
+    }
+
+    @Override
+    protected BulkLoader getBulkLoader() {
+        return MySQLBulkLoader.INSTANCE;
+    }
+
     static AbstractRDBMSDataSourcePool getInstance() {
         return MySQLDataSourcePoolHolder.INSTANCE;
     }
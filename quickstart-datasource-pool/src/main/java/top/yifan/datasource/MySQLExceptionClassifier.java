@@ -0,0 +1,32 @@
+package top.yifan.datasource;
+
+import top.yifan.DefaultSQLExceptionClassifier;
+
+/**
+ * MySQL的SQL异常分类器
+ *
+ * @author Star Zheng
+ */
+class MySQLExceptionClassifier extends DefaultSQLExceptionClassifier {
+
+    static final MySQLExceptionClassifier INSTANCE = new MySQLExceptionClassifier();
+
+    @Override
+    protected boolean isRetryableErrorCode(int errorCode) {
+        switch (errorCode) {
+            case 1040: // ER_CON_COUNT_ERROR：连接数过多
+            case 1053: // ER_SERVER_SHUTDOWN：服务正在关闭
+            case 1205: // ER_LOCK_WAIT_TIMEOUT：锁等待超时
+            case 1213: // ER_LOCK_DEADLOCK：死锁
+            case 1927: // ER_CONNECTION_KILLED：连接被终止
+            case 2002: // CR_CONNECTION_ERROR：无法通过socket连接
+            case 2003: // CR_CONN_HOST_ERROR：无法连接到服务器
+            case 2006: // CR_SERVER_GONE_ERROR：服务器已断开
+            case 2013: // CR_SERVER_LOST：查询过程中与服务器的连接断开
+                return true;
+            default:
+                return false;
+        }
+    }
+
+}
@@ -0,0 +1,73 @@
+package top.yifan.datasource;
+
+/**
+ * 连接池淘汰配置
+ *
+ * @author Star Zheng
+ */
+public class PoolEvictionConfig {
+
+    private long intervalMillis;      // 检查间隔
+    private long idleTimeoutMillis;   // 连接池超过此时间未被使用则淘汰
+    private int maxPools;             // 最多缓存的连接池数量，超出时按最近最少使用淘汰
+
+    private PoolEvictionConfig() {
+    }
+
+    public long getIntervalMillis() {
+        return intervalMillis;
+    }
+
+    public long getIdleTimeoutMillis() {
+        return idleTimeoutMillis;
+    }
+
+    public int getMaxPools() {
+        return maxPools;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public static class Builder {
+
+        private long intervalMillis = 60 * 1000L;
+        private long idleTimeoutMillis = 30 * 60 * 1000L;
+        private int maxPools = Integer.MAX_VALUE;
+
+        public PoolEvictionConfig build() {
+            if (intervalMillis <= 0) {
+                throw new IllegalArgumentException("Interval must be positive");
+            }
+            if (idleTimeoutMillis <= 0) {
+                throw new IllegalArgumentException("Idle timeout must be positive");
+            }
+            if (maxPools <= 0) {
+                throw new IllegalArgumentException("Max pools must be positive");
+            }
+            PoolEvictionConfig config = new PoolEvictionConfig();
+            config.intervalMillis = intervalMillis;
+            config.idleTimeoutMillis = idleTimeoutMillis;
+            config.maxPools = maxPools;
+            return config;
+        }
+
+        public Builder intervalMillis(long intervalMillis) {
+            this.intervalMillis = intervalMillis;
+            return this;
+        }
+
+        public Builder idleTimeoutMillis(long idleTimeoutMillis) {
+            this.idleTimeoutMillis = idleTimeoutMillis;
+            return this;
+        }
+
+        public Builder maxPools(int maxPools) {
+            this.maxPools = maxPools;
+            return this;
+        }
+
+    }
+
+}
@@ -0,0 +1,82 @@
+package top.yifan.datasource;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 连接池淘汰器。
+ *
+ * <p>按固定间隔关闭长时间未被使用的连接池，并在连接池数量超过上限时按最近最少使用的顺序淘汰，
+ * 仍有被借出的连接或等待获取连接的线程的连接池不会被淘汰，将在下一次检查时重试。
+ *
+ * @author Star Zheng
+ */
+class PoolEvictor {
+
+    private static final Logger log = LoggerFactory.getLogger(PoolEvictor.class);
+
+    private final PoolEvictionConfig config;
+    private final ScheduledExecutorService scheduler;
+
+    PoolEvictor(PoolEvictionConfig config) {
+        this.config = config;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "rdbms-pool-evictor");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    void start() {
+        scheduler.scheduleWithFixedDelay(this::evictQuietly,
+                config.getIntervalMillis(), config.getIntervalMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    void stop() {
+        scheduler.shutdownNow();
+    }
+
+    private void evictQuietly() {
+        try {
+            evict();
+        } catch (Exception e) {
+            // 不能让异常抛出，否则后续的调度将被取消
+            log.warn("Evict data source failed, message: {}", e.getMessage());
+        }
+    }
+
+    void evict() {
+        long now = System.nanoTime();
+        long idleTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(config.getIdleTimeoutMillis());
+        List<PooledDataSource> candidates = new ArrayList<>();
+        for (PooledDataSource dataSource : AbstractRDBMSDataSourcePool.listAllDataSources()) {
+            if (now - dataSource.getLastAccessNanos() > idleTimeoutNanos
+                    && AbstractRDBMSDataSourcePool.evict(dataSource)) {
+                continue;
+            }
+            candidates.add(dataSource);
+        }
+
+        int overflow = AbstractRDBMSDataSourcePool.countLivePools() - config.getMaxPools();
+        if (overflow <= 0) {
+            return;
+        }
+        candidates.sort(Comparator.comparingLong(PooledDataSource::getLastAccessNanos));
+        for (PooledDataSource dataSource : candidates) {
+            if (overflow <= 0) {
+                break;
+            }
+            if (AbstractRDBMSDataSourcePool.evict(dataSource)) {
+                overflow--;
+            }
+        }
+    }
+
+}
@@ -0,0 +1,108 @@
+package top.yifan.datasource;
+
+import java.util.Objects;
+
+/**
+ * 连接池的缓存键。
+ *
+ * <p>创建时一次性完成字段的规整（trim）以及哈希值的计算，之后作为不可变对象使用，
+ * 因此调用方可以持有该对象并反复通过 {@link RDBMSDataSourcePoolUtil#getConnection(PoolKey)} 获取连接，
+ * 查找连接池时仅需一次 ConcurrentHashMap 查询，不再需要拼接字符串和计算 MD5。
+ *
+ * @author Star Zheng
+ */
+public final class PoolKey {
+
+    private final RDBMSConnectionConfiguration config;
+
+    private final RDBMSType type;
+    private final String server;
+    private final String port;
+    private final String database;
+    private final String username;
+    private final String password;
+
+    private final int hash;
+
+    private PoolKey(RDBMSConnectionConfiguration config) {
+        this.config = config;
+        this.type = config.getType();
+        this.server = config.getServer().trim();
+        this.port = config.getPort() == null ? null : config.getPort().trim();
+        this.database = config.getDatabase().trim();
+        this.username = config.getUsername().trim();
+        this.password = config.getPassword();
+        this.hash = Objects.hash(type, server, port, database, username, password);
+    }
+
+    /**
+     * 根据连接配置创建缓存键
+     *
+     * @param config - 数据库连接配置
+     * @return 返回创建的缓存键
+     */
+    public static PoolKey of(RDBMSConnectionConfiguration config) {
+        Objects.requireNonNull(config, "Config is required");
+        AbstractRDBMSDataSourcePool.checkConnectionParams(config);
+        return new PoolKey(config);
+    }
+
+    /**
+     * @return 返回创建此缓存键时使用的连接配置，用于首次创建连接池
+     */
+    public RDBMSConnectionConfiguration getConfig() {
+        return config;
+    }
+
+    public RDBMSType getType() {
+        return type;
+    }
+
+    public String getServer() {
+        return server;
+    }
+
+    public String getPort() {
+        return port;
+    }
+
+    public String getDatabase() {
+        return database;
+    }
+
+    public String getUsername() {
+        return username;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof PoolKey)) {
+            return false;
+        }
+        PoolKey that = (PoolKey) o;
+        return hash == that.hash
+                && type == that.type
+                && server.equals(that.server)
+                && Objects.equals(port, that.port)
+                && database.equals(that.database)
+                && username.equals(that.username)
+                && password.equals(that.password);
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
+    /**
+     * 不输出密码，避免泄露到日志中
+     */
+    @Override
+    public String toString() {
+        return type + "://" + username + "@" + server + ":" + port + "/" + database;
+    }
+
+}
@@ -0,0 +1,33 @@
+package top.yifan.datasource;
+
+/**
+ * 连接池大小的上下限，用于 {@link PoolSizeController} 调整 maximumPoolSize
+ *
+ * @author Star Zheng
+ */
+public final class PoolSizeBounds {
+
+    private final int minPoolSize;
+    private final int maxPoolSize;
+
+    public PoolSizeBounds(int minPoolSize, int maxPoolSize) {
+        if (minPoolSize < 1 || maxPoolSize < minPoolSize) {
+            throw new IllegalArgumentException("Invalid pool size bounds: [" + minPoolSize + ", " + maxPoolSize + "]");
+        }
+        this.minPoolSize = minPoolSize;
+        this.maxPoolSize = maxPoolSize;
+    }
+
+    public int getMinPoolSize() {
+        return minPoolSize;
+    }
+
+    public int getMaxPoolSize() {
+        return maxPoolSize;
+    }
+
+    int clamp(int poolSize) {
+        return Math.max(minPoolSize, Math.min(maxPoolSize, poolSize));
+    }
+
+}
@@ -0,0 +1,208 @@
+package top.yifan.datasource;
+
+import com.zaxxer.hikari.HikariConfigMXBean;
+import com.zaxxer.hikari.HikariPoolMXBean;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 自适应连接池大小控制器。
+ *
+ * <p>按固定间隔采样每个连接池的 HikariPoolMXBean（等待线程数、活跃连接数、空闲连接数），
+ * 并在 {@link PoolSizeBounds} 限定的范围内调整 maximumPoolSize 与 minimumIdle：
+ * <ul>
+ *  <li>存在等待获取连接的线程时，按等待线程数扩容；</li>
+ *  <li>没有等待线程且平滑后的活跃连接数远低于上限时，每次最多缩容 1/4；</li>
+ *  <li>minimumIdle 跟随平滑后的活跃连接数，空闲的连接池最终降为 0；</li>
+ *  <li>所有连接池 maximumPoolSize 之和不超过全局预算，预算不足时优先满足等待线程多的连接池；
+ *  不扩容时的总和已经超过预算时，所有连接池按比例缩容，但不低于各自的下限。</li>
+ * </ul>
+ *
+ * <p>控制器运行期间新建的连接池以所属类型的下限作为初始的 maximumPoolSize，由控制器按需扩容。
+ *
+ * @author Star Zheng
+ */
+class PoolSizeController {
+
+    private static final Logger log = LoggerFactory.getLogger(PoolSizeController.class);
+
+    /**
+     * 缩容时目标大小相对平滑活跃连接数保留的余量
+     */
+    private static final double HEADROOM = 1.5;
+
+    private final PoolSizeControllerConfig config;
+    private final ScheduledExecutorService scheduler;
+
+    /**
+     * 每个连接池平滑后的活跃连接数，仅在调度线程中访问
+     */
+    private Map<HikariPoolMXBeanExtension, Double> smoothedActive = new HashMap<>();
+
+    PoolSizeController(PoolSizeControllerConfig config) {
+        this.config = config;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "rdbms-pool-size-controller");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    void start() {
+        scheduler.scheduleWithFixedDelay(this::adjustQuietly,
+                config.getIntervalMillis(), config.getIntervalMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    void stop() {
+        scheduler.shutdownNow();
+    }
+
+    private void adjustQuietly() {
+        try {
+            adjust();
+        } catch (Exception e) {
+            // 不能让异常抛出，否则后续的调度将被取消
+            log.warn("Adjust pool size failed, message: {}", e.getMessage());
+        }
+    }
+
+    void adjust() {
+        Map<HikariPoolMXBeanExtension, Double> nextSmoothedActive = new HashMap<>();
+        List<Sample> samples = new ArrayList<>();
+        for (HikariPoolMXBeanExtension e : AbstractRDBMSDataSourcePool.listAllPoolMXBeans()) {
+            Sample sample = sample(e);
+            if (sample == null) {
+                continue;
+            }
+            nextSmoothedActive.put(e, sample.smoothedActive);
+            samples.add(sample);
+        }
+        smoothedActive = nextSmoothedActive;
+
+        // 先计算不扩容时占用的预算，剩余的预算再分配给需要扩容的连接池
+        int budget = config.getGlobalBudget();
+        int reserved = 0;
+        List<Sample> growing = new ArrayList<>();
+        for (Sample s : samples) {
+            if (s.target > s.currentMax) {
+                s.target = s.currentMax;
+                growing.add(s);
+                reserved += s.currentMax;
+            } else {
+                reserved += s.target;
+            }
+        }
+        if (reserved > budget) {
+            // 不扩容也已超出预算，按比例缩容所有连接池，下限之和超过预算时以下限为准
+            for (Sample s : samples) {
+                s.target = s.bounds.clamp((int) ((long) s.target * budget / reserved));
+            }
+        } else {
+            int remaining = budget - reserved;
+            growing.sort((a, b) -> Integer.compare(b.awaiting, a.awaiting));
+            for (Sample s : growing) {
+                int grant = Math.min(s.demand - s.currentMax, remaining);
+                remaining -= grant;
+                s.target = s.currentMax + grant;
+            }
+        }
+
+        for (Sample s : samples) {
+            apply(s);
+        }
+    }
+
+    private Sample sample(HikariPoolMXBeanExtension e) {
+        HikariPoolMXBean mxBean = e.getMxBean();
+        HikariConfigMXBean configMxBean = e.getConfigMxBean();
+        if (mxBean == null || configMxBean == null) {
+            return null;
+        }
+        Sample s = new Sample();
+        try {
+            s.awaiting = mxBean.getThreadsAwaitingConnection();
+            s.active = mxBean.getActiveConnections();
+            s.idle = mxBean.getIdleConnections();
+        } catch (RuntimeException ex) {
+            // 连接池已关闭，MBean已被注销
+            log.debug("Sample pool failed, jdbc: {}, message: {}", e.getJdbc(), ex.getMessage());
+            return null;
+        }
+        s.extension = e;
+        s.currentMax = configMxBean.getMaximumPoolSize();
+        s.currentMinIdle = configMxBean.getMinimumIdle();
+
+        Double previous = smoothedActive.get(e);
+        double alpha = config.getSmoothingFactor();
+        s.smoothedActive = previous == null ? s.active : alpha * s.active + (1 - alpha) * previous;
+
+        PoolSizeBounds bounds = config.getBounds(e.getType());
+        int target = s.currentMax;
+        if (s.awaiting > 0) {
+            target = s.currentMax + s.awaiting;
+        } else {
+            int demand = (int) Math.ceil(s.smoothedActive * HEADROOM);
+            if (demand < s.currentMax) {
+                target = Math.max(demand, s.currentMax - Math.max(1, s.currentMax / 4));
+            }
+        }
+        s.bounds = bounds;
+        s.target = bounds.clamp(target);
+        s.demand = s.target;
+        return s;
+    }
+
+    private void apply(Sample s) {
+        HikariConfigMXBean configMxBean = s.extension.getConfigMxBean();
+        int minIdle = Math.min((int) Math.round(s.smoothedActive), s.target);
+        // 扩容时先调大 maximumPoolSize，缩容时先调小 minimumIdle，保证任意时刻 minimumIdle <= maximumPoolSize
+        if (s.target >= s.currentMax) {
+            setMaximumPoolSize(s, configMxBean);
+            setMinimumIdle(s, configMxBean, minIdle);
+        } else {
+            setMinimumIdle(s, configMxBean, minIdle);
+            setMaximumPoolSize(s, configMxBean);
+        }
+    }
+
+    private void setMaximumPoolSize(Sample s, HikariConfigMXBean configMxBean) {
+        if (s.target == s.currentMax) {
+            return;
+        }
+        configMxBean.setMaximumPoolSize(s.target);
+        log.debug("Resize pool -> jdbc: {}, maximumPoolSize: {} -> {}, active: {}, idle: {}, awaiting: {}",
+                s.extension.getJdbc(), s.currentMax, s.target, s.active, s.idle, s.awaiting);
+    }
+
+    private void setMinimumIdle(Sample s, HikariConfigMXBean configMxBean, int minIdle) {
+        if (minIdle == s.currentMinIdle) {
+            return;
+        }
+        configMxBean.setMinimumIdle(minIdle);
+    }
+
+    private static class Sample {
+        private HikariPoolMXBeanExtension extension;
+        private int awaiting;
+        private int active;
+        private int idle;
+        private int currentMax;
+        private int currentMinIdle;
+        private double smoothedActive;
+        private PoolSizeBounds bounds;
+        /**
+         * 不考虑全局预算时的目标大小
+         */
+        private int demand;
+        private int target;
+    }
+
+}
@@ -0,0 +1,94 @@
+package top.yifan.datasource;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * 自适应连接池大小控制器的配置
+ *
+ * @author Star Zheng
+ */
+public class PoolSizeControllerConfig {
+
+    private static final PoolSizeBounds DEFAULT_BOUNDS = new PoolSizeBounds(2, 50);
+
+    private long intervalMillis;       // 采样间隔
+    private int globalBudget;          // 所有连接池 maximumPoolSize 之和的上限
+    private double smoothingFactor;    // 活跃连接数指数平滑系数，(0, 1]，越大越敏感
+    private Map<RDBMSType, PoolSizeBounds> bounds;
+
+    private PoolSizeControllerConfig() {
+    }
+
+    public long getIntervalMillis() {
+        return intervalMillis;
+    }
+
+    public int getGlobalBudget() {
+        return globalBudget;
+    }
+
+    public double getSmoothingFactor() {
+        return smoothingFactor;
+    }
+
+    /**
+     * @return 返回指定类型的上下限，未配置时返回默认值 [2, 50]
+     */
+    public PoolSizeBounds getBounds(RDBMSType type) {
+        PoolSizeBounds b = type == null ? null : bounds.get(type);
+        return b == null ? DEFAULT_BOUNDS : b;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public static class Builder {
+
+        private long intervalMillis = 5 * 1000L;
+        private int globalBudget = 1000;
+        private double smoothingFactor = 0.3;
+        private final Map<RDBMSType, PoolSizeBounds> bounds = new EnumMap<>(RDBMSType.class);
+
+        public PoolSizeControllerConfig build() {
+            if (intervalMillis <= 0) {
+                throw new IllegalArgumentException("Interval must be positive");
+            }
+            if (globalBudget <= 0) {
+                throw new IllegalArgumentException("Global budget must be positive");
+            }
+            if (smoothingFactor <= 0 || smoothingFactor > 1) {
+                throw new IllegalArgumentException("Smoothing factor must be in (0, 1]");
+            }
+            PoolSizeControllerConfig config = new PoolSizeControllerConfig();
+            config.intervalMillis = intervalMillis;
+            config.globalBudget = globalBudget;
+            config.smoothingFactor = smoothingFactor;
+            config.bounds = new EnumMap<>(bounds);
+            return config;
+        }
+
+        public Builder intervalMillis(long intervalMillis) {
+            this.intervalMillis = intervalMillis;
+            return this;
+        }
+
+        public Builder globalBudget(int globalBudget) {
+            this.globalBudget = globalBudget;
+            return this;
+        }
+
+        public Builder smoothingFactor(double smoothingFactor) {
+            this.smoothingFactor = smoothingFactor;
+            return this;
+        }
+
+        public Builder bounds(RDBMSType type, int minPoolSize, int maxPoolSize) {
+            this.bounds.put(type, new PoolSizeBounds(minPoolSize, maxPoolSize));
+            return this;
+        }
+
+    }
+
+}
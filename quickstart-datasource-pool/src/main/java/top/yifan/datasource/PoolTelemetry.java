@@ -0,0 +1,124 @@
+package top.yifan.datasource;
+
+/**
+ * 单个连接池的采样环形缓冲区，所有采样值保存在预先分配的基本类型数组中，采样时不产生任何对象。
+ *
+ * <p>只有采样线程写入，读写都在对象锁内完成，每秒一次的写入与偶尔的查询之间几乎没有竞争。
+ *
+ * @author Star Zheng
+ */
+class PoolTelemetry {
+
+    private final PoolKey poolKey;
+    private final int capacity;
+
+    private final long[] timestamps;
+    private final int[] active;
+    private final int[] idle;
+    private final int[] total;
+    private final int[] waiting;
+    private final long[] executions;
+    private final long[] failures;
+
+    /**
+     * 累计写入的采样数，下一个写入位置为 count % capacity
+     */
+    private long count;
+
+    PoolTelemetry(PoolKey poolKey, int capacity) {
+        this.poolKey = poolKey;
+        this.capacity = capacity;
+        this.timestamps = new long[capacity];
+        this.active = new int[capacity];
+        this.idle = new int[capacity];
+        this.total = new int[capacity];
+        this.waiting = new int[capacity];
+        this.executions = new long[capacity];
+        this.failures = new long[capacity];
+    }
+
+    PoolKey getPoolKey() {
+        return poolKey;
+    }
+
+    synchronized void record(long timestampMillis, int activeConnections, int idleConnections, int totalConnections,
+                             int threadsAwaitingConnection, long executionCount, long failureCount) {
+        int i = (int) (count % capacity);
+        timestamps[i] = timestampMillis;
+        active[i] = activeConnections;
+        idle[i] = idleConnections;
+        total[i] = totalConnections;
+        waiting[i] = threadsAwaitingConnection;
+        executions[i] = executionCount;
+        failures[i] = failureCount;
+        count++;
+    }
+
+    /**
+     * 汇总最近一段时间内的采样
+     *
+     * @param sinceMillis - 起始时间戳，早于此时间的采样将被忽略
+     * @return 返回汇总结果，没有采样时返回null
+     */
+    synchronized Summary summarize(long sinceMillis) {
+        if (count == 0) {
+            return null;
+        }
+        int latest = (int) ((count - 1) % capacity);
+        Summary summary = new Summary();
+        summary.latestTimestamp = timestamps[latest];
+        summary.latestActive = active[latest];
+        summary.latestIdle = idle[latest];
+        summary.latestTotal = total[latest];
+        summary.latestWaiting = waiting[latest];
+        summary.minActive = Integer.MAX_VALUE;
+        summary.minIdle = Integer.MAX_VALUE;
+
+        int oldest = latest;
+        long available = Math.min(count, capacity);
+        for (long n = 0; n < available; n++) {
+            int i = (int) ((count - 1 - n) % capacity);
+            if (timestamps[i] < sinceMillis) {
+                break;
+            }
+            oldest = i;
+            summary.samples++;
+            summary.minActive = Math.min(summary.minActive, active[i]);
+            summary.maxActive = Math.max(summary.maxActive, active[i]);
+            summary.minIdle = Math.min(summary.minIdle, idle[i]);
+            summary.maxIdle = Math.max(summary.maxIdle, idle[i]);
+            summary.maxTotal = Math.max(summary.maxTotal, total[i]);
+            summary.maxWaiting = Math.max(summary.maxWaiting, waiting[i]);
+        }
+        if (summary.samples == 0) {
+            summary.minActive = summary.latestActive;
+            summary.minIdle = summary.latestIdle;
+        }
+        long elapsedMillis = timestamps[latest] - timestamps[oldest];
+        if (elapsedMillis > 0) {
+            summary.executionsPerSecond = (executions[latest] - executions[oldest]) * 1000.0 / elapsedMillis;
+            summary.failuresPerSecond = (failures[latest] - failures[oldest]) * 1000.0 / elapsedMillis;
+        }
+        return summary;
+    }
+
+    static class Summary {
+
+        long latestTimestamp;
+        int latestActive;
+        int latestIdle;
+        int latestTotal;
+        int latestWaiting;
+        int samples;
+        int minActive;
+        int maxActive;
+        int minIdle;
+        int maxIdle;
+        int maxTotal;
+        int maxWaiting;
+        double executionsPerSecond;
+        double failuresPerSecond;
+
+    }
+
+}
@@ -0,0 +1,58 @@
+package top.yifan.datasource;
+
+/**
+ * 连接池采样配置
+ *
+ * @author Star Zheng
+ */
+public class PoolTelemetryConfig {
+
+    private long intervalMillis;   // 采样间隔
+    private int capacity;          // 每个连接池保留的采样数，保留的时长为 intervalMillis * capacity
+
+    private PoolTelemetryConfig() {
+    }
+
+    public long getIntervalMillis() {
+        return intervalMillis;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public static class Builder {
+
+        private long intervalMillis = 1000L;
+        private int capacity = 900;
+
+        public PoolTelemetryConfig build() {
+            if (intervalMillis <= 0) {
+                throw new IllegalArgumentException("Interval must be positive");
+            }
+            if (capacity < 2) {
+                throw new IllegalArgumentException("Capacity must be at least 2");
+            }
+            PoolTelemetryConfig config = new PoolTelemetryConfig();
+            config.intervalMillis = intervalMillis;
+            config.capacity = capacity;
+            return config;
+        }
+
+        public Builder intervalMillis(long intervalMillis) {
+            this.intervalMillis = intervalMillis;
+            return this;
+        }
+
+        public Builder capacity(int capacity) {
+            this.capacity = capacity;
+            return this;
+        }
+
+    }
+
+}
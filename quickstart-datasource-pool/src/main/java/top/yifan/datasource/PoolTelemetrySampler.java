@@ -0,0 +1,90 @@
+package top.yifan.datasource;
+
+import com.zaxxer.hikari.HikariPoolMXBean;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import top.yifan.LatencyHistogram;
+import top.yifan.SQLExecutionMetrics;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 连接池采样器。
+ *
+ * <p>按固定间隔直接读取每个连接池的 HikariPool（不经过 JMX 代理）以及 {@link SQLExecutionMetrics} 的计数，
+ * 写入各自的 {@link PoolTelemetry} 环形缓冲区，查询时只读取缓冲区，与连接池的数量和查询频率无关。
+ * 已被淘汰的连接池的缓冲区将在下一次采样时移除。
+ *
+ * @author Star Zheng
+ */
+class PoolTelemetrySampler {
+
+    private static final Logger log = LoggerFactory.getLogger(PoolTelemetrySampler.class);
+
+    private final PoolTelemetryConfig config;
+    private final ScheduledExecutorService scheduler;
+    private final ConcurrentHashMap<PoolKey, PoolTelemetry> telemetries = new ConcurrentHashMap<>();
+
+    PoolTelemetrySampler(PoolTelemetryConfig config) {
+        this.config = config;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "rdbms-pool-telemetry");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    void start() {
+        scheduler.scheduleAtFixedRate(this::sampleQuietly, 0L, config.getIntervalMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    void stop() {
+        scheduler.shutdownNow();
+    }
+
+    Collection<PoolTelemetry> listAll() {
+        return telemetries.values();
+    }
+
+    private void sampleQuietly() {
+        try {
+            sample();
+        } catch (Exception e) {
+            // 不能让异常抛出，否则后续的调度将被取消
+            log.warn("Sample data source failed, message: {}", e.getMessage());
+        }
+    }
+
+    void sample() {
+        long now = System.currentTimeMillis();
+        Set<PoolKey> live = new HashSet<>();
+        for (PooledDataSource dataSource : AbstractRDBMSDataSourcePool.listAllDataSources()) {
+            HikariPoolMXBean pool = dataSource.getDataSource().getHikariPoolMXBean();
+            if (pool == null) {
+                continue;
+            }
+            PoolKey poolKey = dataSource.getPoolKey();
+            live.add(poolKey);
+            PoolTelemetry telemetry = telemetries.computeIfAbsent(poolKey,
+                    k -> new PoolTelemetry(k, config.getCapacity()));
+            long executions = 0;
+            long failures = 0;
+            SQLExecutionMetrics metrics = SQLExecutionMetrics.find(poolKey.toString());
+            if (metrics != null) {
+                LatencyHistogram execute = metrics.getExecuteLatency();
+                executions = execute.getCount();
+                failures = metrics.getFailures();
+            }
+            telemetry.record(now, pool.getActiveConnections(), pool.getIdleConnections(), pool.getTotalConnections(),
+                    pool.getThreadsAwaitingConnection(), executions, failures);
+        }
+        telemetries.keySet().retainAll(live);
+    }
+
+}
@@ -0,0 +1,130 @@
+package top.yifan.datasource;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import top.yifan.DBPoolWarmUpDTO;
+import top.yifan.DBUtil;
+
+import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 连接池预热器，在有界的线程池中并行创建连接池并预先建立连接，
+ * 每个连接池建立的连接数不超过 connectionsPerPool 与其 maximumPoolSize 中的较小值
+ *
+ * @author Star Zheng
+ */
+class PoolWarmer {
+
+    private static final Logger log = LoggerFactory.getLogger(PoolWarmer.class);
+
+    private final int parallelism;
+    private final int connectionsPerPool;
+    private final long timeoutMillis;
+
+    PoolWarmer(int parallelism, int connectionsPerPool, long timeoutMillis) {
+        if (parallelism <= 0) {
+            throw new IllegalArgumentException("Parallelism must be positive");
+        }
+        if (connectionsPerPool <= 0) {
+            throw new IllegalArgumentException("Connections per pool must be positive");
+        }
+        this.parallelism = parallelism;
+        this.connectionsPerPool = connectionsPerPool;
+        this.timeoutMillis = timeoutMillis;
+    }
+
+    List<DBPoolWarmUpDTO> warmUp(List<RDBMSConnectionConfiguration> configs) throws InterruptedException {
+        List<Callable<DBPoolWarmUpDTO>> tasks = new ArrayList<>(configs.size());
+        for (RDBMSConnectionConfiguration config : configs) {
+            tasks.add(() -> warmUp(config));
+        }
+
+        AtomicInteger threadIndex = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(parallelism, Math.max(1, configs.size())), r -> {
+            Thread t = new Thread(r, "rdbms-pool-warmer-" + threadIndex.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        long start = System.nanoTime();
+        try {
+            List<Future<DBPoolWarmUpDTO>> futures = executor.invokeAll(tasks, timeoutMillis, TimeUnit.MILLISECONDS);
+            long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            List<DBPoolWarmUpDTO> results = new ArrayList<>(futures.size());
+            for (int i = 0; i < futures.size(); i++) {
+                results.add(getResult(configs.get(i), futures.get(i), elapsedMillis));
+            }
+            return results;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private DBPoolWarmUpDTO warmUp(RDBMSConnectionConfiguration config) {
+        DBPoolWarmUpDTO dto = newResult(config);
+        long start = System.nanoTime();
+        Connection[] connections = new Connection[connectionsPerPool];
+        int opened = 0;
+        try {
+            PoolKey poolKey = PoolKey.of(config);
+            AbstractRDBMSDataSourcePool pool = AbstractRDBMSDataSourcePool.findInstance(poolKey.getType());
+            // 第一个连接创建了连接池后才能知道其大小，持有的连接数超过 maximumPoolSize 时只会等到获取连接超时
+            connections[opened++] = pool.getConnection(poolKey);
+            int target = Math.min(connectionsPerPool, AbstractRDBMSDataSourcePool.findMaximumPoolSize(poolKey));
+            // 同时持有多个连接，迫使连接池建立足够数量的物理连接，归还后它们将作为空闲连接保留在池中
+            for (; opened < target; opened++) {
+                connections[opened] = pool.getConnection(poolKey);
+            }
+            dto.setReady(true);
+        } catch (Exception e) {
+            dto.setReady(false);
+            dto.setErrorMessage(e.getMessage());
+            log.warn("Warm up DataSource failed -> Server: {}, DB: {}, message: {}",
+                    config.getServer(), config.getDatabase(), e.getMessage());
+        } finally {
+            DBUtil.closeDBResources(connections);
+        }
+        dto.setConnections(opened);
+        dto.setElapsedMillis(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        return dto;
+    }
+
+    private DBPoolWarmUpDTO getResult(RDBMSConnectionConfiguration config, Future<DBPoolWarmUpDTO> future,
+                                      long elapsedMillis) throws InterruptedException {
+        try {
+            return future.get();
+        } catch (CancellationException e) {
+            DBPoolWarmUpDTO dto = newResult(config);
+            dto.setReady(false);
+            dto.setConnections(0);
+            dto.setElapsedMillis(elapsedMillis);
+            dto.setErrorMessage("Warm up timeout after " + timeoutMillis + "ms");
+            return dto;
+        } catch (ExecutionException e) {
+            DBPoolWarmUpDTO dto = newResult(config);
+            dto.setReady(false);
+            dto.setConnections(0);
+            dto.setElapsedMillis(elapsedMillis);
+            dto.setErrorMessage(e.getCause().getMessage());
+            return dto;
+        }
+    }
+
+    private static DBPoolWarmUpDTO newResult(RDBMSConnectionConfiguration config) {
+        DBPoolWarmUpDTO dto = new DBPoolWarmUpDTO();
+        dto.setServer(config.getServer());
+        dto.setDatabase(config.getDatabase());
+        dto.setUsername(config.getUsername());
+        return dto;
+    }
+
+}
@@ -0,0 +1,126 @@
+package top.yifan.datasource;
+
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+import com.zaxxer.hikari.pool.HikariPool;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 缓存在 DATA_SOURCES 中的连接池条目，记录最近一次使用时间以及正在获取连接的线程数，用于连接池的淘汰
+ *
+ * @author Star Zheng
+ */
+class PooledDataSource {
+
+    private static final int RETIRED = -1;
+
+    private final PoolKey poolKey;
+    private final HikariDataSource dataSource;
+    private final TenantBulkhead bulkhead;
+    private volatile HikariPoolMXBeanExtension mxBeanExtension;
+
+    /**
+     * 正在调用 getConnection 的线程数，等于 {@link #RETIRED} 时表示已被淘汰，不能再获取连接
+     */
+    private final AtomicInteger borrowing = new AtomicInteger();
+    private volatile long lastAccessNanos = System.nanoTime();
+
+    PooledDataSource(PoolKey poolKey, HikariDataSource dataSource) {
+        this.poolKey = poolKey;
+        this.dataSource = dataSource;
+        this.bulkhead = new TenantBulkhead(poolKey, dataSource::getMaximumPoolSize);
+    }
+
+    PoolKey getPoolKey() {
+        return poolKey;
+    }
+
+    HikariDataSource getDataSource() {
+        return dataSource;
+    }
+
+    TenantBulkhead getBulkhead() {
+        return bulkhead;
+    }
+
+    HikariPoolMXBeanExtension getMxBeanExtension() {
+        return mxBeanExtension;
+    }
+
+    void setMxBeanExtension(HikariPoolMXBeanExtension mxBeanExtension) {
+        this.mxBeanExtension = mxBeanExtension;
+    }
+
+    long getLastAccessNanos() {
+        return lastAccessNanos;
+    }
+
+    /**
+     * 从连接池获取连接，timeoutMillis 大于0时最多等待该时间，而不是连接池配置的 connectionTimeout
+     */
+    Connection getConnection(long timeoutMillis) throws SQLException {
+        if (timeoutMillis > 0) {
+            HikariPoolMXBean pool = dataSource.getHikariPoolMXBean();
+            if (pool instanceof HikariPool) {
+                return ((HikariPool) pool).getConnection(timeoutMillis);
+            }
+        }
+        return dataSource.getConnection();
+    }
+
+    /**
+     * 在获取连接前调用，成功后必须调用 {@link #release()}
+     *
+     * @return 如果连接池已被淘汰则返回false
+     */
+    boolean tryAcquire() {
+        for (; ; ) {
+            int n = borrowing.get();
+            if (n == RETIRED) {
+                return false;
+            }
+            if (borrowing.compareAndSet(n, n + 1)) {
+                lastAccessNanos = System.nanoTime();
+                return true;
+            }
+        }
+    }
+
+    void release() {
+        borrowing.decrementAndGet();
+    }
+
+    /**
+     * 尝试将连接池标记为已淘汰。只有当没有线程正在获取连接、也没有被借出的连接时才会成功，
+     * 成功后 {@link #tryAcquire()} 将总是返回false
+     *
+     * @return 标记成功则返回true
+     */
+    boolean tryRetire() {
+        if (isInUse()) {
+            return false;
+        }
+        if (!borrowing.compareAndSet(0, RETIRED)) {
+            return false;
+        }
+        // 在两次检查之间可能有连接被借出，需要再次检查
+        if (isInUse()) {
+            borrowing.set(0);
+            return false;
+        }
+        return true;
+    }
+
+    boolean isRetired() {
+        return borrowing.get() == RETIRED;
+    }
+
+    private boolean isInUse() {
+        HikariPoolMXBean pool = dataSource.getHikariPoolMXBean();
+        return pool != null && (pool.getActiveConnections() > 0 || pool.getThreadsAwaitingConnection() > 0);
+    }
+
+}
@@ -0,0 +1,268 @@
+package top.yifan.datasource;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.cache.RemovalNotification;
+import com.google.common.util.concurrent.ExecutionError;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import top.yifan.ExecuteSQLFunction;
+import top.yifan.RetryableConnection;
+
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.ToIntFunction;
+
+/**
+ * 只读查询的结果缓存，需要显式创建并使用。
+ *
+ * <p>缓存键由连接池缓存键、SQL、参数以及所依赖表的版本号组成。同一个键并发未命中时只有一个线程查询数据库，
+ * 其它线程等待并共享它的结果。缓存同时受条目数与总权重限制，超出时按最近最少使用淘汰，写入后超过 TTL 的条目将过期。
+ *
+ * <p>调用 {@link #invalidateTable(String)} 会递增该表的版本号，之后的查询使用新的缓存键，
+ * 即使失效之前已经开始的查询在失效之后才写入缓存，也不会再被读到；旧的条目会被立即移除以释放内存。
+ *
+ * @author Star Zheng
+ */
+public class QueryResultCache {
+
+    private static final Object NULL_VALUE = new Object();
+
+    private final Cache<CacheKey, Object> cache;
+    private final int numRetries;
+    private final ConcurrentHashMap<String, AtomicLong> tableVersions = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, Set<CacheKey>> keysByTable = new ConcurrentHashMap<>();
+
+    private QueryResultCache(Builder builder) {
+        ToIntFunction<Object> weigher = builder.weigher;
+        // 每个条目至少占用 maximumWeight / maximumEntries 的权重，从而使条目数也不会超过 maximumEntries
+        int minWeight = (int) Math.max(1L, builder.maximumWeight / builder.maximumEntries);
+        this.cache = CacheBuilder.newBuilder()
+                .maximumWeight(builder.maximumWeight)
+                .<CacheKey, Object>weigher((k, v) -> Math.max(minWeight, v == NULL_VALUE ? 1 : weigher.applyAsInt(v)))
+                .expireAfterWrite(builder.ttlMillis, TimeUnit.MILLISECONDS)
+                .removalListener(this::onRemoval)
+                .recordStats()
+                .build();
+        this.numRetries = builder.numRetries;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * 返回缓存的查询结果，未命中时使用连接池中的连接执行查询并缓存结果
+     *
+     * @param config     - 数据库连接配置
+     * @param sql        - 查询的SQL，与参数一起作为缓存键
+     * @param parameters - 查询的参数，需要正确实现 equals 和 hashCode
+     * @param tables     - 查询所依赖的表，用于按表失效
+     * @param fun        - 具体的执行方法
+     * @return 返回执行方法中的返回值，调用方不应修改返回的对象
+     */
+    @SuppressWarnings("unchecked")
+    public <R> R query(RDBMSConnectionConfiguration config, String sql, List<?> parameters, Collection<String> tables,
+                       ExecuteSQLFunction<R> fun) throws SQLException, InterruptedException {
+        Objects.requireNonNull(sql, "SQL is required");
+        Objects.requireNonNull(fun, "Function is required");
+        String[] tags = normalize(tables);
+        CacheKey key = new CacheKey(PoolKey.of(config), sql,
+                parameters == null ? Collections.emptyList() : parameters, tags, currentVersions(tags));
+        Object value;
+        try {
+            value = cache.get(key, () -> {
+                R result;
+                try (RetryableConnection conn = RDBMSDataSourcePoolUtil.getRetryableConnection(config)) {
+                    result = conn.execute(fun, numRetries);
+                }
+                for (String table : tags) {
+                    keysByTable.computeIfAbsent(table, k -> ConcurrentHashMap.newKeySet()).add(key);
+                }
+                return result == null ? NULL_VALUE : result;
+            });
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof SQLException) {
+                throw (SQLException) e.getCause();
+            }
+            if (e.getCause() instanceof InterruptedException) {
+                throw (InterruptedException) e.getCause();
+            }
+            throw new SQLException(e.getCause());
+        } catch (UncheckedExecutionException e) {
+            throw e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : e;
+        } catch (ExecutionError e) {
+            throw e.getCause() instanceof Error ? (Error) e.getCause() : e;
+        }
+        return value == NULL_VALUE ? null : (R) value;
+    }
+
+    /**
+     * 使依赖指定表的全部缓存失效，应当在该表的数据变更提交后调用
+     *
+     * @param table - 表名，不区分大小写
+     */
+    public void invalidateTable(String table) {
+        String tag = table.trim().toLowerCase(Locale.ROOT);
+        tableVersions.computeIfAbsent(tag, k -> new AtomicLong()).incrementAndGet();
+        Set<CacheKey> keys = keysByTable.remove(tag);
+        if (keys != null) {
+            cache.invalidateAll(keys);
+        }
+    }
+
+    public void invalidateAll() {
+        cache.invalidateAll();
+    }
+
+    public long size() {
+        return cache.size();
+    }
+
+    /**
+     * @return 返回命中率、加载次数与加载耗时等统计信息
+     */
+    public CacheStats stats() {
+        return cache.stats();
+    }
+
+    private void onRemoval(RemovalNotification<CacheKey, Object> notification) {
+        CacheKey key = notification.getKey();
+        if (key == null) {
+            return;
+        }
+        for (String table : key.tables) {
+            Set<CacheKey> keys = keysByTable.get(table);
+            if (keys != null) {
+                keys.remove(key);
+            }
+        }
+    }
+
+    private long[] currentVersions(String[] tables) {
+        long[] versions = new long[tables.length];
+        for (int i = 0; i < tables.length; i++) {
+            AtomicLong version = tableVersions.get(tables[i]);
+            versions[i] = version == null ? 0L : version.get();
+        }
+        return versions;
+    }
+
+    private static String[] normalize(Collection<String> tables) {
+        if (tables == null) {
+            return new String[0];
+        }
+        return tables.stream().map(t -> t.trim().toLowerCase(Locale.ROOT)).distinct().sorted().toArray(String[]::new);
+    }
+
+    private static final class CacheKey {
+
+        private final PoolKey poolKey;
+        private final String sql;
+        private final List<?> parameters;
+        private final String[] tables;
+        private final long[] versions;
+        private final int hash;
+
+        CacheKey(PoolKey poolKey, String sql, List<?> parameters, String[] tables, long[] versions) {
+            this.poolKey = poolKey;
+            this.sql = sql;
+            this.parameters = parameters;
+            this.tables = tables;
+            this.versions = versions;
+            this.hash = Objects.hash(poolKey, sql, parameters, Arrays.hashCode(versions));
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof CacheKey)) {
+                return false;
+            }
+            CacheKey that = (CacheKey) o;
+            return hash == that.hash
+                    && poolKey.equals(that.poolKey)
+                    && sql.equals(that.sql)
+                    && parameters.equals(that.parameters)
+                    && Arrays.equals(tables, that.tables)
+                    && Arrays.equals(versions, that.versions);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+    }
+
+    public static class Builder {
+
+        private long maximumEntries = 10000;
+        private long maximumWeight = 1000000;
+        private ToIntFunction<Object> weigher = v -> v instanceof Collection ? ((Collection<?>) v).size() : 1;
+        private long ttlMillis = TimeUnit.MINUTES.toMillis(1);
+        private int numRetries = 3;
+
+        public QueryResultCache build() {
+            if (maximumEntries <= 0) {
+                throw new IllegalArgumentException("Maximum entries must be positive");
+            }
+            if (maximumWeight <= 0) {
+                throw new IllegalArgumentException("Maximum weight must be positive");
+            }
+            if (ttlMillis <= 0) {
+                throw new IllegalArgumentException("TTL must be positive");
+            }
+            Objects.requireNonNull(weigher, "Weigher is required");
+            return new QueryResultCache(this);
+        }
+
+        public Builder maximumEntries(long maximumEntries) {
+            this.maximumEntries = maximumEntries;
+            return this;
+        }
+
+        /**
+         * 全部条目的最大总权重，每个条目的权重由 {@link #weigher(ToIntFunction)} 计算
+         */
+        public Builder maximumWeight(long maximumWeight) {
+            this.maximumWeight = maximumWeight;
+            return this;
+        }
+
+        /**
+         * 计算查询结果的权重，默认集合类型为元素个数，其它类型为1
+         */
+        public Builder weigher(ToIntFunction<Object> weigher) {
+            this.weigher = weigher;
+            return this;
+        }
+
+        public Builder ttl(long ttl, TimeUnit unit) {
+            this.ttlMillis = unit.toMillis(ttl);
+            return this;
+        }
+
+        /**
+         * 未命中时查询的最大重试次数，含义同 {@link RetryableConnection#execute(ExecuteSQLFunction, int)}
+         */
+        public Builder numRetries(int numRetries) {
+            this.numRetries = numRetries;
+            return this;
+        }
+
+    }
+
+}
@@ -1,5 +1,8 @@
 package top.yifan.datasource;
 
+import java.util.Collections;
+import java.util.List;
+
 /**
  * RDBMSConnectionConfiguration
  *
@@ -19,6 +22,13 @@ public interface RDBMSConnectionConfiguration {
 
     String getPassword();
 
+    /**
+     * @return 返回只读副本的连接配置，读请求将被路由到这些副本上，默认没有副本
+     */
+    default List<RDBMSConnectionConfiguration> getReadReplicas() {
+        return Collections.emptyList();
+    }
+
     static RDBMSConnectionConfigurationImpl.Builder builder() {
         return new RDBMSConnectionConfigurationImpl.Builder();
     }
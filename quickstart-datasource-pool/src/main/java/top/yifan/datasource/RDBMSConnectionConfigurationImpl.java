@@ -1,5 +1,9 @@
 package top.yifan.datasource;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
 /**
  * RDBMSConnectionConfigurationImpl
  *
@@ -13,6 +17,7 @@ public class RDBMSConnectionConfigurationImpl implements RDBMSConnectionConfigur
     private String database;        // 数据库名称
     private String username;        // 用户名
     private String password;        // 密码
+    private List<RDBMSConnectionConfiguration> readReplicas = Collections.emptyList(); // 只读副本
 
     protected RDBMSConnectionConfigurationImpl() {
     }
@@ -71,6 +76,16 @@ public class RDBMSConnectionConfigurationImpl implements RDBMSConnectionConfigur
         this.password = password;
     }
 
+    @Override
+    public List<RDBMSConnectionConfiguration> getReadReplicas() {
+        return readReplicas;
+    }
+
+    public void setReadReplicas(List<RDBMSConnectionConfiguration> readReplicas) {
+        this.readReplicas = readReplicas == null
+                ? Collections.emptyList() : Collections.unmodifiableList(new ArrayList<>(readReplicas));
+    }
+
     public static class Builder {
 
         private RDBMSType type;
@@ -78,6 +93,7 @@ public class RDBMSConnectionConfigurationImpl implements RDBMSConnectionConfigur
         private String database;
         private String username;
         private String password;
+        private final List<RDBMSConnectionConfiguration> readReplicas = new ArrayList<>();
 
         public RDBMSConnectionConfiguration build() {
             RDBMSConnectionConfigurationImpl config = new RDBMSConnectionConfigurationImpl();
@@ -86,6 +102,7 @@ public class RDBMSConnectionConfigurationImpl implements RDBMSConnectionConfigur
             config.setDatabase(database);
             config.setUsername(username);
             config.setPassword(password);
+            config.setReadReplicas(readReplicas);
             return config;
         }
 
@@ -114,6 +131,11 @@ public class RDBMSConnectionConfigurationImpl implements RDBMSConnectionConfigur
             return this;
         }
 
+        public Builder readReplica(RDBMSConnectionConfiguration readReplica) {
+            this.readReplicas.add(readReplica);
+            return this;
+        }
+
     }
 
 }
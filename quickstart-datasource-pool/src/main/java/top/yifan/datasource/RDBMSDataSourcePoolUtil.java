@@ -3,13 +3,28 @@ package top.yifan.datasource;
 
 import com.zaxxer.hikari.HikariPoolMXBean;
 import top.yifan.DBConnectionPoolMXBeanDTO;
+import top.yifan.DBExecutionMetricsDTO;
+import top.yifan.DBPoolRegistryDTO;
+import top.yifan.DBPoolTelemetryDTO;
+import top.yifan.DBPoolWarmUpDTO;
+import top.yifan.DBTenantBulkheadDTO;
+import top.yifan.ExecuteSQLFunction;
 import top.yifan.Interruptable;
+import top.yifan.JdbcBatchWriter;
+import top.yifan.LatencyHistogram;
+import top.yifan.RetryBudget;
 import top.yifan.RetryableConnection;
+import top.yifan.SQLExecutionMetrics;
+import top.yifan.WriteBehindBuffer;
 
 import java.sql.Connection;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.Objects;
 import java.util.Set;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 /**
@@ -24,20 +39,65 @@ public class RDBMSDataSourcePoolUtil {
         AbstractRDBMSDataSourcePool.registerInstance(RDBMSType.SQLServer, SQLServerDataSourcePool.getInstance());
     }
 
+    private static final ReplicaRouter REPLICA_ROUTER = new ReplicaRouter();
+
+    static {
+        AbstractRDBMSDataSourcePool.addEvictionListener(RDBMSDataSourcePoolUtil::releasePoolResources);
+    }
+
+    private static PoolSizeController poolSizeController;
+    private static PoolEvictor poolEvictor;
+    private static volatile PoolTelemetrySampler poolTelemetrySampler;
+
     private RDBMSDataSourcePoolUtil() {}
 
     /**
      * 创建并返回一个支持重试的数据库连接
      */
     public static RetryableConnection getRetryableConnection(RDBMSConnectionConfiguration config) {
-        return new RetryableConnection(() -> AbstractRDBMSDataSourcePool.findInstance(config.getType()).getConnection(config));
+        return getRetryableConnection(config, (Interruptable) null);
     }
 
     /**
      * 创建并返回一个支持重试且可自定义中断的数据库连接
      */
     public static RetryableConnection getRetryableConnection(RDBMSConnectionConfiguration config, Interruptable interruptable) {
-        return new RetryableConnection(() -> AbstractRDBMSDataSourcePool.findInstance(config.getType()).getConnection(config), interruptable);
+        PoolKey poolKey = PoolKey.of(config);
+        AbstractRDBMSDataSourcePool pool = AbstractRDBMSDataSourcePool.findInstance(poolKey.getType());
+        return RetryableConnection.builder(() -> pool.getConnection(poolKey))
+                .interruptable(interruptable)
+                .metrics(SQLExecutionMetrics.of(poolKey.toString()))
+                .classifier(pool.getExceptionClassifier())
+                .retryBudget(RetryBudget.of(poolKey.toString()))
+                .build();
+    }
+
+    /**
+     * 创建一个写入指定数据库的批量写入器的构造器，写入连接与 {@link #getRetryableConnection(RDBMSConnectionConfiguration)}
+     * 一样使用连接池的异常分类、执行指标与重试预算，调用方只需设置SQL与参数绑定
+     */
+    public static <T> JdbcBatchWriter.Builder<T> getBatchWriterBuilder(RDBMSConnectionConfiguration config) {
+        PoolKey poolKey = PoolKey.of(config);
+        AbstractRDBMSDataSourcePool pool = AbstractRDBMSDataSourcePool.findInstance(poolKey.getType());
+        return JdbcBatchWriter.<T>builder()
+                .connection(() -> pool.getConnection(poolKey))
+                .metrics(SQLExecutionMetrics.of(poolKey.toString()))
+                .classifier(pool.getExceptionClassifier())
+                .retryBudget(RetryBudget.of(poolKey.toString()));
+    }
+
+    /**
+     * 创建一个写入指定数据库的延迟合并写入缓冲区的构造器，刷新时与 {@link #getBatchWriterBuilder(RDBMSConnectionConfiguration)}
+     * 一样使用连接池的异常分类、执行指标与重试预算，调用方只需设置SQL、参数绑定与合并方式
+     */
+    public static <K, V> WriteBehindBuffer.Builder<K, V> getWriteBehindBufferBuilder(RDBMSConnectionConfiguration config) {
+        PoolKey poolKey = PoolKey.of(config);
+        AbstractRDBMSDataSourcePool pool = AbstractRDBMSDataSourcePool.findInstance(poolKey.getType());
+        return WriteBehindBuffer.<K, V>builder()
+                .connection(() -> pool.getConnection(poolKey))
+                .metrics(SQLExecutionMetrics.of(poolKey.toString()))
+                .classifier(pool.getExceptionClassifier())
+                .retryBudget(RetryBudget.of(poolKey.toString()));
     }
 
     /**
@@ -48,6 +108,156 @@ public class RDBMSDataSourcePoolUtil {
         return AbstractRDBMSDataSourcePool.findInstance(config.getType()).getConnection(config);
     }
 
+    /**
+     * 创建并返回一个普通的数据库连接，readOnly为true且配置了只读副本时，将连接路由到其中一个健康的副本上，
+     * 没有可用的副本时使用主库
+     */
+    public static Connection getConnection(RDBMSConnectionConfiguration config, boolean readOnly)
+            throws SQLException {
+        if (!readOnly) {
+            return getConnection(config);
+        }
+        return REPLICA_ROUTER.getReadConnection(config);
+    }
+
+    /**
+     * 创建并返回一个支持重试的数据库连接，readOnly为true时路由规则同 {@link #getConnection(RDBMSConnectionConfiguration, boolean)}，
+     * 重试时会重新选择副本
+     */
+    public static RetryableConnection getRetryableConnection(RDBMSConnectionConfiguration config, boolean readOnly) {
+        if (!readOnly) {
+            return getRetryableConnection(config);
+        }
+        PoolKey poolKey = PoolKey.of(config);
+        return RetryableConnection.builder(() -> REPLICA_ROUTER.getReadConnection(poolKey))
+                .metrics(SQLExecutionMetrics.of(readOnlyKey(poolKey)))
+                .classifier(AbstractRDBMSDataSourcePool.findInstance(poolKey.getType()).getExceptionClassifier())
+                .retryBudget(RetryBudget.of(readOnlyKey(poolKey)))
+                .build();
+    }
+
+    /**
+     * @return 返回只读连接的指标与重试预算所用的标识，与主库的区分开
+     */
+    private static String readOnlyKey(PoolKey poolKey) {
+        return poolKey + "?readOnly";
+    }
+
+    /**
+     * 连接池被淘汰后释放按连接池标识缓存的指标与重试预算，包括只读连接的部分
+     */
+    private static void releasePoolResources(PoolKey poolKey) {
+        SQLExecutionMetrics.remove(poolKey.toString());
+        SQLExecutionMetrics.remove(readOnlyKey(poolKey));
+        RetryBudget.remove(poolKey.toString());
+        RetryBudget.remove(readOnlyKey(poolKey));
+        // 只使用副本读取时主库的连接池可能从未创建，随副本组一起释放只读部分
+        for (PoolKey primary : REPLICA_ROUTER.onPoolEvicted(poolKey)) {
+            SQLExecutionMetrics.remove(readOnlyKey(primary));
+            RetryBudget.remove(readOnlyKey(primary));
+        }
+    }
+
+    /**
+     * 以指定租户的身份创建并返回一个普通的数据库连接，启用租户隔离后，每个租户在同一个连接池中同时持有的连接数受其配额限制，
+     * 超出配额的请求将按权重公平排队，排队已满或超时时抛出 {@link top.yifan.BulkheadRejectedException}
+     *
+     * @param config - 数据库连接配置
+     * @param tenant - 租户标识
+     */
+    public static Connection getConnectionForTenant(RDBMSConnectionConfiguration config, String tenant)
+            throws SQLException {
+        Objects.requireNonNull(tenant, "Tenant is required");
+        PoolKey poolKey = PoolKey.of(config);
+        return AbstractRDBMSDataSourcePool.findInstance(poolKey.getType()).getConnection(poolKey, tenant);
+    }
+
+    /**
+     * 以指定租户的身份创建并返回一个支持重试的数据库连接，租户隔离的规则同 {@link #getConnectionForTenant}，
+     * 被拒绝的请求不会重试
+     *
+     * @param config - 数据库连接配置
+     * @param tenant - 租户标识
+     */
+    public static RetryableConnection getRetryableConnectionForTenant(RDBMSConnectionConfiguration config, String tenant) {
+        Objects.requireNonNull(tenant, "Tenant is required");
+        PoolKey poolKey = PoolKey.of(config);
+        AbstractRDBMSDataSourcePool pool = AbstractRDBMSDataSourcePool.findInstance(poolKey.getType());
+        return RetryableConnection.builder(() -> pool.getConnection(poolKey, tenant))
+                .metrics(SQLExecutionMetrics.of(poolKey.toString()))
+                .classifier(pool.getExceptionClassifier())
+                .retryBudget(RetryBudget.of(poolKey.toString()))
+                .build();
+    }
+
+    /**
+     * 启用租户隔离，如果已经启用，则使用新的配置，已经持有的连接不受影响
+     *
+     * @param config - 租户隔离配置
+     */
+    public static void enableTenantBulkheads(TenantBulkheadConfig config) {
+        AbstractRDBMSDataSourcePool.setTenantBulkheadConfig(Objects.requireNonNull(config, "Config is required"));
+    }
+
+    /**
+     * 停用租户隔离，之后获取连接不再受租户配额的限制
+     */
+    public static void disableTenantBulkheads() {
+        AbstractRDBMSDataSourcePool.setTenantBulkheadConfig(null);
+    }
+
+    /**
+     * 列出所有连接池中各个租户的隔离状态，包括当前持有的连接数、排队数以及累计被拒绝的次数
+     */
+    public static List<DBTenantBulkheadDTO> listAllTenantBulkheads() {
+        List<DBTenantBulkheadDTO> dtos = new ArrayList<>();
+        for (PooledDataSource dataSource : AbstractRDBMSDataSourcePool.listAllDataSources()) {
+            TenantBulkhead bulkhead = dataSource.getBulkhead();
+            for (TenantBulkhead.TenantSnapshot snapshot : bulkhead.snapshot()) {
+                DBTenantBulkheadDTO dto = new DBTenantBulkheadDTO();
+                dto.setPool(bulkhead.getPoolKey().toString());
+                dto.setTenant(snapshot.tenant);
+                dto.setWeight(snapshot.weight);
+                dto.setMaxInFlight(snapshot.limit);
+                dto.setInFlight(snapshot.inFlight);
+                dto.setQueued(snapshot.queued);
+                dto.setRejected(snapshot.rejected);
+                dtos.add(dto);
+            }
+        }
+        return dtos;
+    }
+
+    /**
+     * 设置只读副本的路由策略，默认为 {@link ReplicaRoutingStrategy#LEAST_ACTIVE}
+     */
+    public static void setReplicaRoutingStrategy(ReplicaRoutingStrategy strategy) {
+        REPLICA_ROUTER.setStrategy(Objects.requireNonNull(strategy, "Strategy is required"));
+    }
+
+    /**
+     * 设置副本获取连接失败后被移出轮转的时间，默认30秒
+     */
+    public static void setReplicaUnhealthyCooldown(long cooldownMillis) {
+        REPLICA_ROUTER.setUnhealthyCooldownMillis(cooldownMillis);
+    }
+
+    /**
+     * 设置从副本获取连接的最长等待时间，超时后该副本被移出轮转并尝试下一个副本，默认2秒
+     */
+    public static void setReplicaConnectionTimeout(long timeoutMillis) {
+        REPLICA_ROUTER.setReplicaConnectionTimeoutMillis(timeoutMillis);
+    }
+
+    /**
+     * 使用预先计算好的缓存键创建并返回一个普通的数据库连接，适用于高频获取连接的场景，
+     * 缓存键可通过 {@link PoolKey#of(RDBMSConnectionConfiguration)} 创建并由调用方持有
+     */
+    public static Connection getConnection(PoolKey poolKey)
+            throws SQLException {
+        return AbstractRDBMSDataSourcePool.findInstance(poolKey.getType()).getConnection(poolKey);
+    }
+
     /**
      * 创建并返回一个不会被缓存在池中的普通的数据库连接
      */
@@ -56,6 +266,83 @@ public class RDBMSDataSourcePoolUtil {
         return AbstractRDBMSDataSourcePool.findInstance(config.getType()).getConnectionWithNoPool(config);
     }
 
+    /**
+     * 列出所有通过本工具类创建的 RetryableConnection 的执行指标，按连接池维度统计，
+     * 其中耗时的单位均为微秒，百分位数的相对误差不超过 12.5%。window 开头的字段只统计最近一到两分钟，
+     * 适合用于告警，其余字段从连接池创建起累计
+     */
+    public static List<DBExecutionMetricsDTO> listAllExecutionMetrics() {
+        return SQLExecutionMetrics.listAll().stream().map(e -> {
+            DBExecutionMetricsDTO dto = new DBExecutionMetricsDTO();
+            dto.setKey(e.getKey());
+            LatencyHistogram acquire = e.getAcquireLatency();
+            LatencyHistogram execute = e.getExecuteLatency();
+            LatencyHistogram backoff = e.getBackoffLatency();
+            dto.setExecutions(execute.getCount());
+            dto.setFailures(e.getFailures());
+            dto.setRetries(backoff.getCount());
+            dto.setAcquireP50(acquire.getPercentile(50));
+            dto.setAcquireP99(acquire.getPercentile(99));
+            dto.setAcquireMax(acquire.getMax());
+            dto.setExecuteP50(execute.getPercentile(50));
+            dto.setExecuteP99(execute.getPercentile(99));
+            dto.setExecuteMax(execute.getMax());
+            dto.setBackoffTotal(backoff.getSum());
+            dto.setBackoffP99(backoff.getPercentile(99));
+            SQLExecutionMetrics.Window window = e.getRecentWindow();
+            dto.setWindowMillis(window.getElapsedMillis());
+            dto.setWindowExecutions(window.getExecuteLatency().getCount());
+            dto.setWindowFailures(window.getFailures());
+            dto.setWindowRetries(window.getBackoffLatency().getCount());
+            dto.setWindowAcquireP99(window.getAcquireLatency().getPercentile(99));
+            dto.setWindowExecuteP50(window.getExecuteLatency().getPercentile(50));
+            dto.setWindowExecuteP99(window.getExecuteLatency().getPercentile(99));
+            dto.setWindowBackoffP99(window.getBackoffLatency().getPercentile(99));
+            return dto;
+        }).collect(Collectors.toList());
+    }
+
+    /**
+     * 并行预热连接池：创建每个配置对应的连接池，并预先建立 connectionsPerPool 个连接，
+     * 可以用于在服务就绪前消除首次请求时创建连接池、握手和认证的开销
+     *
+     * @param configs            - 需要预热的数据库连接配置
+     * @param parallelism        - 同时预热的连接池数量
+     * @param connectionsPerPool - 每个连接池预先建立的连接数，超过连接池的 maximumPoolSize 时以后者为准
+     * @param timeoutMillis      - 整体超时时间，超时未完成的连接池将被标记为未就绪
+     * @return 返回与 configs 顺序一致的预热结果，包含是否就绪以及耗时
+     */
+    public static List<DBPoolWarmUpDTO> warmUp(List<RDBMSConnectionConfiguration> configs, int parallelism,
+                                               int connectionsPerPool, long timeoutMillis)
+            throws InterruptedException {
+        return new PoolWarmer(parallelism, connectionsPerPool, timeoutMillis).warmUp(configs);
+    }
+
+    /**
+     * 将同一个执行方法分发到多个租户数据库上并发执行，每个租户使用各自连接池中的一个连接，执行完成后归还。
+     *
+     * <p>执行结果按完成的先后顺序在调用线程中逐个传递给 consumer，无需等待全部租户完成；
+     * 单个租户执行失败不影响其它租户，到达超时时间后仍未完成的租户将被取消，并以 {@link ScatterGatherStatus#TIMEOUT} 状态报告。
+     * 每个租户都恰好报告一次，方法在全部租户报告完成后返回。
+     *
+     * @param configs                 - 租户的数据库连接配置
+     * @param fun                     - 具体的执行方法，会在多个线程中同时调用
+     * @param parallelism             - 同时执行的最大任务数
+     * @param maxConcurrencyPerServer - 同一个数据库服务器（地址与端口）上同时执行的最大任务数
+     * @param timeoutMillis           - 整体超时时间
+     * @param consumer                - 单个租户执行结果的处理方法
+     */
+    public static <R> void scatterGather(List<RDBMSConnectionConfiguration> configs, ExecuteSQLFunction<R> fun,
+                                         int parallelism, int maxConcurrencyPerServer, long timeoutMillis,
+                                         Consumer<ScatterGatherResult<R>> consumer) throws InterruptedException {
+        Objects.requireNonNull(fun, "Function is required");
+        Objects.requireNonNull(consumer, "Consumer is required");
+        new ScatterGatherExecutor(parallelism, maxConcurrencyPerServer, timeoutMillis).execute(configs, fun, consumer);
+    }
+
+    /**
+     * 列出所有连接池的状态
+     */
     public static List<DBConnectionPoolMXBeanDTO> listAllPoolMXBeans() {
         Set<HikariPoolMXBeanExtension> mxBeans = AbstractRDBMSDataSourcePool.listAllPoolMXBeans();
         return mxBeans.stream().map(e -> {
@@ -73,4 +360,119 @@ public class RDBMSDataSourcePoolUtil {
         }).collect(Collectors.toList());
     }
 
+    /**
+     * @return 返回当前存活的连接池数量以及累计淘汰的连接池数量，所有连接池都被淘汰后仍可查看
+     */
+    public static DBPoolRegistryDTO getPoolRegistry() {
+        DBPoolRegistryDTO dto = new DBPoolRegistryDTO();
+        dto.setLivePoolCount(AbstractRDBMSDataSourcePool.countLivePools());
+        dto.setEvictedPoolCount(AbstractRDBMSDataSourcePool.countEvictedPools());
+        return dto;
+    }
+
+    /**
+     * 启动自适应连接池大小控制器，如果已经启动，则使用新的配置重新启动
+     *
+     * @param config - 控制器配置
+     */
+    public static synchronized void startPoolSizeController(PoolSizeControllerConfig config) {
+        stopPoolSizeController();
+        poolSizeController = new PoolSizeController(config);
+        AbstractRDBMSDataSourcePool.setPoolSizeControllerConfig(config);
+        poolSizeController.start();
+    }
+
+    /**
+     * 停止自适应连接池大小控制器，已调整的连接池大小保持不变
+     */
+    public static synchronized void stopPoolSizeController() {
+        if (poolSizeController != null) {
+            poolSizeController.stop();
+            poolSizeController = null;
+            AbstractRDBMSDataSourcePool.setPoolSizeControllerConfig(null);
+        }
+    }
+
+    /**
+     * 启动连接池淘汰器，如果已经启动，则使用新的配置重新启动
+     *
+     * @param config - 淘汰配置
+     */
+    public static synchronized void startPoolEvictor(PoolEvictionConfig config) {
+        stopPoolEvictor();
+        poolEvictor = new PoolEvictor(config);
+        poolEvictor.start();
+    }
+
+    /**
+     * 停止连接池淘汰器
+     */
+    public static synchronized void stopPoolEvictor() {
+        if (poolEvictor != null) {
+            poolEvictor.stop();
+            poolEvictor = null;
+        }
+    }
+
+    /**
+     * 启动连接池采样器，如果已经启动，则使用新的配置重新启动，已有的采样将被丢弃
+     *
+     * @param config - 采样配置
+     */
+    public static synchronized void startPoolTelemetry(PoolTelemetryConfig config) {
+        stopPoolTelemetry();
+        PoolTelemetrySampler sampler = new PoolTelemetrySampler(config);
+        sampler.start();
+        poolTelemetrySampler = sampler;
+    }
+
+    /**
+     * 停止连接池采样器
+     */
+    public static synchronized void stopPoolTelemetry() {
+        if (poolTelemetrySampler != null) {
+            poolTelemetrySampler.stop();
+            poolTelemetrySampler = null;
+        }
+    }
+
+    /**
+     * 列出所有连接池最近一段时间的采样汇总，只读取采样器的缓冲区，不会访问 JMX，适合高频轮询。
+     * 采样器未启动时返回空列表
+     *
+     * @param windowMillis - 汇总的时间范围，超出缓冲区保留时长的部分将被忽略
+     */
+    public static List<DBPoolTelemetryDTO> listAllPoolTelemetry(long windowMillis) {
+        PoolTelemetrySampler sampler = poolTelemetrySampler;
+        if (sampler == null) {
+            return Collections.emptyList();
+        }
+        long sinceMillis = System.currentTimeMillis() - windowMillis;
+        List<DBPoolTelemetryDTO> dtos = new ArrayList<>();
+        for (PoolTelemetry telemetry : sampler.listAll()) {
+            PoolTelemetry.Summary summary = telemetry.summarize(sinceMillis);
+            if (summary == null) {
+                continue;
+            }
+            DBPoolTelemetryDTO dto = new DBPoolTelemetryDTO();
+            dto.setPool(telemetry.getPoolKey().toString());
+            dto.setLatestTimestamp(summary.latestTimestamp);
+            dto.setActiveConnections(summary.latestActive);
+            dto.setIdleConnections(summary.latestIdle);
+            dto.setTotalConnections(summary.latestTotal);
+            dto.setThreadsAwaitingConnection(summary.latestWaiting);
+            dto.setSamples(summary.samples);
+            dto.setMinActiveConnections(summary.minActive);
+            dto.setMaxActiveConnections(summary.maxActive);
+            dto.setMinIdleConnections(summary.minIdle);
+            dto.setMaxIdleConnections(summary.maxIdle);
+            dto.setMaxTotalConnections(summary.maxTotal);
+            dto.setMaxThreadsAwaitingConnection(summary.maxWaiting);
+            dto.setExecutionRate(summary.executionsPerSecond);
+            dto.setFailureRate(summary.failuresPerSecond);
+            dtos.add(dto);
+        }
+        return dtos;
+    }
+
 }
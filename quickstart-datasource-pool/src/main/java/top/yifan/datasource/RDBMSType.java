@@ -9,7 +9,13 @@ import org.apache.commons.lang3.StringUtils;
  */
 public enum RDBMSType {
 
-    MySQL, SQLServer;
+    MySQL, SQLServer,
+
+    /**
+     * 仅用于测试与基准测试的内存数据库，默认没有注册对应的连接池，使用前需要通过
+     * {@link AbstractRDBMSDataSourcePool#registerInstance} 注册，与真实数据库的连接池互不影响
+     */
+    InMemory;
 
     RDBMSType of(String type) {
         for (RDBMSType value : RDBMSType.values()) {
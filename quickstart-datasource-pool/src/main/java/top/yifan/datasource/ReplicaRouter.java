@@ -0,0 +1,249 @@
+package top.yifan.datasource;
+
+import com.zaxxer.hikari.HikariPoolMXBean;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 只读副本路由器。
+ *
+ * <p>读请求按照 {@link ReplicaRoutingStrategy} 在健康的副本之间分配，从副本获取连接失败时尝试下一个副本，
+ * 没有可用的副本时回退到主库。
+ *
+ * <p>从副本获取连接最多等待 replicaConnectionTimeout，而不是连接池的 connectionTimeout。
+ * 只有无法与副本建立连接时（创建连接池失败，或者超时的异常带有连接池最近一次建立连接失败的原因），
+ * 该副本才会在冷却时间内被移出轮转；仅仅因为连接池繁忙而超时不会移出，否则负载高时读流量会全部压到主库上。
+ * 返回的连接都被设置为只读，连接归还到连接池时由Hikari恢复。
+ *
+ * @author Star Zheng
+ */
+class ReplicaRouter {
+
+    private static final Logger log = LoggerFactory.getLogger(ReplicaRouter.class);
+
+    private final ConcurrentHashMap<PoolKey, ReplicaGroup> groups = new ConcurrentHashMap<>();
+
+    private volatile ReplicaRoutingStrategy strategy = ReplicaRoutingStrategy.LEAST_ACTIVE;
+    private volatile long unhealthyCooldownNanos = TimeUnit.SECONDS.toNanos(30);
+    private volatile long replicaConnectionTimeoutMillis = 2000L;
+
+    void setStrategy(ReplicaRoutingStrategy strategy) {
+        this.strategy = strategy;
+    }
+
+    void setUnhealthyCooldownMillis(long cooldownMillis) {
+        this.unhealthyCooldownNanos = TimeUnit.MILLISECONDS.toNanos(cooldownMillis);
+    }
+
+    void setReplicaConnectionTimeoutMillis(long timeoutMillis) {
+        if (timeoutMillis <= 0) {
+            throw new IllegalArgumentException("Replica connection timeout must be positive");
+        }
+        this.replicaConnectionTimeoutMillis = timeoutMillis;
+    }
+
+    /**
+     * 获取一个只读连接
+     *
+     * @param config - 主库的连接配置
+     * @return 返回副本的连接，没有可用的副本时返回主库的连接
+     */
+    Connection getReadConnection(RDBMSConnectionConfiguration config) throws SQLException {
+        return getReadConnection(PoolKey.of(config));
+    }
+
+    /**
+     * 同 {@link #getReadConnection(RDBMSConnectionConfiguration)}，使用预先计算好的主库缓存键
+     */
+    Connection getReadConnection(PoolKey primary) throws SQLException {
+        List<RDBMSConnectionConfiguration> replicas = primary.getConfig().getReadReplicas();
+        if (replicas == null || replicas.isEmpty()) {
+            return readOnly(getConnection(primary, -1L));
+        }
+        ReplicaGroup group = groups.get(primary);
+        if (group == null || !group.matches(replicas)) {
+            // 副本列表发生变化时重建，未变化的副本不会保留健康状态，失败后会重新被移出轮转
+            group = new ReplicaGroup(replicas);
+            groups.put(primary, group);
+        }
+        for (Replica replica : group.candidates(strategy, System.nanoTime())) {
+            try {
+                return readOnly(getConnection(replica.poolKey, replicaConnectionTimeoutMillis));
+            } catch (SQLException e) {
+                if (isConnectFailure(e)) {
+                    markUnhealthy(replica, e.getMessage());
+                } else {
+                    log.debug("Read replica busy, try next -> {}, message: {}", replica.poolKey, e.getMessage());
+                }
+            }
+        }
+        return readOnly(getConnection(primary, -1L));
+    }
+
+    /**
+     * Hikari 获取连接超时时抛出 SQLTransientConnectionException，如果连接池最近建立连接失败，
+     * 失败的原因会作为 cause；没有 cause 说明只是所有连接都在使用中
+     */
+    private static boolean isConnectFailure(SQLException e) {
+        return !(e instanceof SQLTransientConnectionException) || e.getCause() != null;
+    }
+
+    /**
+     * 连接池被淘汰后，移除以它为主库或者包含它的副本组，下一次读取时按当时的配置重建
+     *
+     * @return 返回被移除的副本组的主库
+     */
+    List<PoolKey> onPoolEvicted(PoolKey poolKey) {
+        List<PoolKey> removed = new ArrayList<>();
+        Iterator<Map.Entry<PoolKey, ReplicaGroup>> it = groups.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<PoolKey, ReplicaGroup> entry = it.next();
+            if (entry.getKey().equals(poolKey) || entry.getValue().contains(poolKey)) {
+                it.remove();
+                removed.add(entry.getKey());
+            }
+        }
+        return removed;
+    }
+
+    private void markUnhealthy(Replica replica, String reason) {
+        replica.unhealthyUntilNanos = System.nanoTime() + unhealthyCooldownNanos;
+        log.warn("Read replica unavailable, remove from rotation -> {}, message: {}", replica.poolKey, reason);
+    }
+
+    private static Connection getConnection(PoolKey poolKey, long timeoutMillis) throws SQLException {
+        AbstractRDBMSDataSourcePool pool = AbstractRDBMSDataSourcePool.findInstance(poolKey.getType());
+        return timeoutMillis > 0 ? pool.getConnection(poolKey, timeoutMillis) : pool.getConnection(poolKey);
+    }
+
+    private static Connection readOnly(Connection conn) throws SQLException {
+        try {
+            conn.setReadOnly(true);
+            return conn;
+        } catch (SQLException | RuntimeException e) {
+            conn.close();
+            throw e;
+        }
+    }
+
+    private static class ReplicaGroup {
+
+        private final List<Replica> replicas = new ArrayList<>();
+        private final AtomicInteger cursor = new AtomicInteger();
+
+        ReplicaGroup(List<RDBMSConnectionConfiguration> configs) {
+            for (RDBMSConnectionConfiguration config : configs) {
+                replicas.add(new Replica(PoolKey.of(config), config));
+            }
+        }
+
+        /**
+         * 副本的配置对象与上次相同时直接认为一致，只有配置对象被替换时才重新计算缓存键进行比较
+         *
+         * @return 副本组与当前配置的副本列表一致时返回true
+         */
+        boolean matches(List<RDBMSConnectionConfiguration> configs) {
+            if (configs.size() != replicas.size()) {
+                return false;
+            }
+            for (int i = 0; i < configs.size(); i++) {
+                RDBMSConnectionConfiguration config = configs.get(i);
+                Replica replica = replicas.get(i);
+                if (config == replica.config) {
+                    continue;
+                }
+                if (!replica.poolKey.equals(PoolKey.of(config))) {
+                    return false;
+                }
+                replica.config = config;
+            }
+            return true;
+        }
+
+        boolean contains(PoolKey poolKey) {
+            for (Replica replica : replicas) {
+                if (replica.poolKey.equals(poolKey)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        /**
+         * @return 返回按优先级排序的健康副本
+         */
+        List<Replica> candidates(ReplicaRoutingStrategy strategy, long now) {
+            List<Replica> healthy = new ArrayList<>(replicas.size());
+            int start = Math.floorMod(cursor.getAndIncrement(), replicas.size());
+            for (int i = 0; i < replicas.size(); i++) {
+                Replica replica = replicas.get((start + i) % replicas.size());
+                if (replica.unhealthyUntilNanos - now <= 0) {
+                    healthy.add(replica);
+                }
+            }
+            if (strategy == ReplicaRoutingStrategy.LEAST_ACTIVE && healthy.size() > 1) {
+                sortByLoad(healthy);
+            }
+            return healthy;
+        }
+
+        /**
+         * 按负载升序插入排序，排序是稳定的，所以负载相同时仍然保持轮询的顺序
+         */
+        private static void sortByLoad(List<Replica> healthy) {
+            int[] loads = new int[healthy.size()];
+            for (int i = 0; i < loads.length; i++) {
+                loads[i] = healthy.get(i).load();
+            }
+            for (int i = 1; i < loads.length; i++) {
+                int load = loads[i];
+                Replica replica = healthy.get(i);
+                int j = i - 1;
+                while (j >= 0 && loads[j] > load) {
+                    loads[j + 1] = loads[j];
+                    healthy.set(j + 1, healthy.get(j));
+                    j--;
+                }
+                loads[j + 1] = load;
+                healthy.set(j + 1, replica);
+            }
+        }
+
+    }
+
+    private static class Replica {
+
+        private final PoolKey poolKey;
+        /**
+         * 最近一次与 poolKey 比较一致的配置对象
+         */
+        private volatile RDBMSConnectionConfiguration config;
+        private volatile long unhealthyUntilNanos = System.nanoTime();
+
+        Replica(PoolKey poolKey, RDBMSConnectionConfiguration config) {
+            this.poolKey = poolKey;
+            this.config = config;
+        }
+
+        int load() {
+            HikariPoolMXBean mxBean = AbstractRDBMSDataSourcePool.findPoolMXBean(poolKey);
+            if (mxBean == null) {
+                return 0;
+            }
+            return mxBean.getActiveConnections() + mxBean.getThreadsAwaitingConnection();
+        }
+
+    }
+
+}
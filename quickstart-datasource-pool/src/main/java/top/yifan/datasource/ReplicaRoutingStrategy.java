@@ -0,0 +1,20 @@
+package top.yifan.datasource;
+
+/**
+ * 只读副本的路由策略
+ *
+ * @author Star Zheng
+ */
+public enum ReplicaRoutingStrategy {
+
+    /**
+     * 轮询
+     */
+    ROUND_ROBIN,
+
+    /**
+     * 选择活跃连接数与等待线程数之和最小的副本
+     */
+    LEAST_ACTIVE
+
+}
@@ -0,0 +1,159 @@
+package top.yifan.datasource;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * SQL Server 批量导入，使用驱动的 SQLServerBulkCopy 以 TDS 批量协议写入数据。
+ *
+ * <p>本模块没有依赖 mssql-jdbc（驱动由使用方提供），所以通过反射调用 SQLServerBulkCopy，
+ * 并用动态代理实现 ISQLServerBulkData（旧版本驱动为 ISQLServerBulkRecord）从迭代器中按需读取行。
+ *
+ * @author Star Zheng
+ */
+class SQLServerBulkLoader implements BulkLoader {
+
+    static final SQLServerBulkLoader INSTANCE = new SQLServerBulkLoader();
+
+    private static final String PACKAGE = "com.microsoft.sqlserver.jdbc.";
+
+    @Override
+    public long load(Connection conn, BulkLoad<?> spec, Iterator<Object[]> rows) throws SQLException {
+        try {
+            ClassLoader classLoader = SQLServerBulkLoader.class.getClassLoader();
+            Class<?> connectionClass = Class.forName(PACKAGE + "ISQLServerConnection", true, classLoader);
+            Class<?> bulkCopyClass = Class.forName(PACKAGE + "SQLServerBulkCopy", true, classLoader);
+            Class<?> optionsClass = Class.forName(PACKAGE + "SQLServerBulkCopyOptions", true, classLoader);
+
+            Object bulkCopy = bulkCopyClass.getConstructor(Connection.class)
+                    .newInstance(conn.unwrap(connectionClass));
+            try {
+                Object options = optionsClass.getConstructor().newInstance();
+                optionsClass.getMethod("setBatchSize", int.class).invoke(options, spec.getBatchSize());
+                bulkCopyClass.getMethod("setBulkCopyOptions", optionsClass).invoke(bulkCopy, options);
+                bulkCopyClass.getMethod("setDestinationTableName", String.class).invoke(bulkCopy, spec.getTable());
+                Method addColumnMapping = bulkCopyClass.getMethod("addColumnMapping", int.class, String.class);
+                List<BulkLoad.Column> columns = spec.getColumns();
+                for (int i = 0; i < columns.size(); i++) {
+                    addColumnMapping.invoke(bulkCopy, i + 1, columns.get(i).getName());
+                }
+
+                Method writeToServer = findWriteToServer(bulkCopyClass);
+                Class<?> recordClass = writeToServer.getParameterTypes()[0];
+                BulkRecordHandler handler = new BulkRecordHandler(spec.getColumns(), rows);
+                Object record = Proxy.newProxyInstance(classLoader, new Class[]{recordClass}, handler);
+                writeToServer.invoke(bulkCopy, record);
+                return handler.readRows;
+            } finally {
+                bulkCopyClass.getMethod("close").invoke(bulkCopy);
+            }
+        } catch (ClassNotFoundException | NoSuchMethodException e) {
+            throw new SQLException("SQLServerBulkCopy is not available, mssql-jdbc 6.0 or later is required", e);
+        } catch (InvocationTargetException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof SQLException) {
+                throw (SQLException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new SQLException(cause);
+        } catch (ReflectiveOperationException e) {
+            throw new SQLException(e);
+        }
+    }
+
+    /**
+     * 新版本驱动为 writeToServer(ISQLServerBulkData)，旧版本为 writeToServer(ISQLServerBulkRecord)
+     */
+    private static Method findWriteToServer(Class<?> bulkCopyClass) throws NoSuchMethodException {
+        Method fallback = null;
+        for (Method method : bulkCopyClass.getMethods()) {
+            if (!"writeToServer".equals(method.getName()) || method.getParameterCount() != 1) {
+                continue;
+            }
+            String parameterType = method.getParameterTypes()[0].getName();
+            if (parameterType.equals(PACKAGE + "ISQLServerBulkData")) {
+                return method;
+            }
+            if (parameterType.equals(PACKAGE + "ISQLServerBulkRecord")) {
+                fallback = method;
+            }
+        }
+        if (fallback == null) {
+            throw new NoSuchMethodException("SQLServerBulkCopy.writeToServer(ISQLServerBulkData)");
+        }
+        return fallback;
+    }
+
+    /**
+     * 列序号从1开始，与 addColumnMapping 的源列序号一致
+     */
+    private static class BulkRecordHandler implements InvocationHandler {
+
+        private final List<BulkLoad.Column> columns;
+        private final Iterator<Object[]> rows;
+        private Object[] current;
+        private long readRows;
+
+        BulkRecordHandler(List<BulkLoad.Column> columns, Iterator<Object[]> rows) {
+            this.columns = columns;
+            this.rows = rows;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) {
+            switch (method.getName()) {
+                case "getColumnOrdinals":
+                    Set<Integer> ordinals = new LinkedHashSet<>();
+                    for (int i = 1; i <= columns.size(); i++) {
+                        ordinals.add(i);
+                    }
+                    return ordinals;
+                case "getColumnName":
+                    return column(args).getName();
+                case "getColumnType":
+                    return column(args).getSqlType();
+                case "getPrecision":
+                    return column(args).getPrecision();
+                case "getScale":
+                    return column(args).getScale();
+                case "isAutoIncrement":
+                    return false;
+                case "next":
+                    if (!rows.hasNext()) {
+                        current = null;
+                        return false;
+                    }
+                    current = rows.next();
+                    readRows++;
+                    return true;
+                case "getRowData":
+                    return current;
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "BulkRecord" + columns.size() + "Columns";
+                default:
+                    // 其他方法（如 ISQLServerBulkRecord 的列元数据设置方法）不会被 SQLServerBulkCopy 调用
+                    return null;
+            }
+        }
+
+        private BulkLoad.Column column(Object[] args) {
+            return columns.get((Integer) args[0] - 1);
+        }
+
+    }
+
+}
@@ -1,5 +1,7 @@
 package top.yifan.datasource;
 
+import top.yifan.SQLExceptionClassifier;
+
 /**
  * @author Star Zheng
  */
@@ -7,7 +9,8 @@ public class SQLServerDataSourcePool extends AbstractRDBMSDataSourcePool {
 
     @Override
     protected String generateJdbcUrl(RDBMSConnectionConfiguration connectionConfig) {
-        return String.format("jdbc:sqlserver://%s:%s;database=%s;",
+        // responseBuffering=adaptive：按需从服务端读取结果，避免将整个结果集缓存在内存中
+        return String.format("jdbc:sqlserver://%s:%s;database=%s;responseBuffering=adaptive;",
                 connectionConfig.getServer(), connectionConfig.getPort(), connectionConfig.getDatabase());
     }
 
@@ -16,6 +19,16 @@ public class SQLServerDataSourcePool extends AbstractRDBMSDataSourcePool {
         return "com.microsoft.sqlserver.jdbc.SQLServerDriver";
     }
 
+    @Override
+    protected SQLExceptionClassifier getExceptionClassifier() {
+        return SQLServerExceptionClassifier.INSTANCE;
+    }
+
+    @Override
+    protected BulkLoader getBulkLoader() {
+        return SQLServerBulkLoader.INSTANCE;
+    }
+
     static AbstractRDBMSDataSourcePool getInstance() {
         return SQLServerDataSourcePool.SQLServerDataSourcePoolHolder.INSTANCE;
     }
@@ -0,0 +1,37 @@
+package top.yifan.datasource;
+
+import top.yifan.DefaultSQLExceptionClassifier;
+
+/**
+ * SQL Server的SQL异常分类器
+ *
+ * @author Star Zheng
+ */
+class SQLServerExceptionClassifier extends DefaultSQLExceptionClassifier {
+
+    static final SQLServerExceptionClassifier INSTANCE = new SQLServerExceptionClassifier();
+
+    @Override
+    protected boolean isRetryableErrorCode(int errorCode) {
+        switch (errorCode) {
+            case 233:   // 连接已建立，但在登录过程中发生错误
+            case 1205:  // 死锁，事务被选为牺牲品
+            case 4060:  // 无法打开登录请求的数据库
+            case 10053: // 传输级错误：连接被软件中止
+            case 10054: // 传输级错误：连接被远程主机重置
+            case 10060: // 网络或实例特定错误：连接超时
+            case 10928: // 资源限制：已达到请求或会话上限
+            case 10929: // 资源限制：服务器当前过于繁忙
+            case 40197: // 服务处理请求时出错
+            case 40501: // 服务当前繁忙
+            case 40613: // 数据库当前不可用
+            case 49918: // 资源不足，无法处理请求
+            case 49919: // 创建或更新请求过多
+            case 49920: // 操作过多，服务繁忙
+                return true;
+            default:
+                return false;
+        }
+    }
+
+}
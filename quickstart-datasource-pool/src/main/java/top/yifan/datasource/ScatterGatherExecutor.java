@@ -0,0 +1,217 @@
+package top.yifan.datasource;
+
+import top.yifan.DBUtil;
+import top.yifan.ExecuteSQLFunction;
+import top.yifan.StatementWatchdog;
+
+import java.sql.Connection;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * 分发查询执行器，将同一个执行方法分发到多个租户数据库上并发执行。
+ *
+ * <p>租户按数据库服务器（地址与端口）分组排队，每台服务器上同时执行的任务数不超过 maxConcurrencyPerServer，
+ * 任务只有在所属服务器有空闲名额时才会提交到线程池，所以不会因为某台服务器繁忙而占满全部工作线程。
+ *
+ * <p>执行方法使用的连接由 {@link StatementWatchdog} 监视，超时的任务除了被中断外，正在执行的语句也会通过
+ * {@link DBUtil#cancelStatement} 取消，使数据库端尽快停止执行并释放连接。
+ *
+ * @author Star Zheng
+ */
+class ScatterGatherExecutor {
+
+    private final int parallelism;
+    private final int maxConcurrencyPerServer;
+    private final long timeoutMillis;
+
+    ScatterGatherExecutor(int parallelism, int maxConcurrencyPerServer, long timeoutMillis) {
+        if (parallelism <= 0) {
+            throw new IllegalArgumentException("Parallelism must be positive");
+        }
+        if (maxConcurrencyPerServer <= 0) {
+            throw new IllegalArgumentException("Max concurrency per server must be positive");
+        }
+        this.parallelism = parallelism;
+        this.maxConcurrencyPerServer = maxConcurrencyPerServer;
+        this.timeoutMillis = timeoutMillis;
+    }
+
+    <R> void execute(List<RDBMSConnectionConfiguration> configs, ExecuteSQLFunction<R> fun,
+                     Consumer<ScatterGatherResult<R>> consumer) throws InterruptedException {
+        if (configs.isEmpty()) {
+            return;
+        }
+        AtomicInteger threadIndex = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(parallelism, configs.size()), r -> {
+            Thread t = new Thread(r, "rdbms-scatter-gather-" + threadIndex.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        try {
+            new Dispatch<>(executor, fun).run(configs, consumer);
+        } finally {
+            // 中断超时仍在执行的任务
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * 一次分发查询的执行状态
+     */
+    private class Dispatch<R> {
+
+        private final ExecutorService executor;
+        private final ExecuteSQLFunction<R> fun;
+        private final Map<String, Deque<Task>> pendingByServer = new LinkedHashMap<>();
+        private final Map<String, Integer> runningByServer = new LinkedHashMap<>();
+        private final BlockingQueue<ScatterGatherResult<R>> completed = new LinkedBlockingQueue<>();
+        private final long start = System.nanoTime();
+        private boolean closed;
+
+        Dispatch(ExecutorService executor, ExecuteSQLFunction<R> fun) {
+            this.executor = executor;
+            this.fun = fun;
+        }
+
+        void run(List<RDBMSConnectionConfiguration> configs, Consumer<ScatterGatherResult<R>> consumer)
+                throws InterruptedException {
+            List<Task> tasks = new ArrayList<>(configs.size());
+            for (RDBMSConnectionConfiguration config : configs) {
+                Task task = new Task(config);
+                tasks.add(task);
+                try {
+                    task.poolKey = PoolKey.of(config);
+                } catch (RuntimeException e) {
+                    report(task, ScatterGatherStatus.FAILED, null, e);
+                    continue;
+                }
+                pendingByServer.computeIfAbsent(task.server(), k -> new ArrayDeque<>()).add(task);
+            }
+            dispatch();
+
+            long deadline = start + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+            int remaining = tasks.size();
+            while (remaining > 0) {
+                ScatterGatherResult<R> result = completed.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+                if (result == null) {
+                    break;
+                }
+                remaining--;
+                consumer.accept(result);
+            }
+            if (remaining == 0) {
+                return;
+            }
+
+            synchronized (this) {
+                closed = true;
+            }
+            long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            for (Task task : tasks) {
+                if (task.reported.compareAndSet(false, true)) {
+                    remaining--;
+                    task.timedOut = true;
+                    if (task.future != null) {
+                        task.future.cancel(true);
+                    }
+                    consumer.accept(new ScatterGatherResult<>(task.config, ScatterGatherStatus.TIMEOUT,
+                            null, null, elapsedMillis));
+                }
+            }
+            // 剩余的任务在超时检测的同时已经完成，它们的结果即将或已经放入队列
+            for (; remaining > 0; remaining--) {
+                consumer.accept(completed.take());
+            }
+        }
+
+        private synchronized void dispatch() {
+            if (closed) {
+                return;
+            }
+            for (Map.Entry<String, Deque<Task>> entry : pendingByServer.entrySet()) {
+                Deque<Task> pending = entry.getValue();
+                int running = runningByServer.getOrDefault(entry.getKey(), 0);
+                while (running < maxConcurrencyPerServer && !pending.isEmpty()) {
+                    Task task = pending.poll();
+                    running++;
+                    try {
+                        task.future = executor.submit(() -> execute(task));
+                    } catch (RejectedExecutionException e) {
+                        running--;
+                        report(task, ScatterGatherStatus.FAILED, null, e);
+                    }
+                }
+                runningByServer.put(entry.getKey(), running);
+            }
+        }
+
+        private synchronized void onFinished(Task task) {
+            runningByServer.merge(task.server(), -1, Integer::sum);
+            dispatch();
+        }
+
+        private void execute(Task task) {
+            long taskStart = System.nanoTime();
+            Connection conn = null;
+            StatementWatchdog.Watch watch = StatementWatchdog.watch(() -> task.timedOut);
+            try {
+                conn = AbstractRDBMSDataSourcePool.findInstance(task.poolKey.getType()).getConnection(task.poolKey);
+                R result = fun.apply(watch.wrap(conn));
+                report(task, ScatterGatherStatus.SUCCESS, result, null, taskStart);
+            } catch (Throwable e) {
+                // Error 也按失败报告，否则该租户只能等到超时才被报告
+                report(task, ScatterGatherStatus.FAILED, null, e, taskStart);
+            } finally {
+                watch.close();
+                DBUtil.closeDBResources(conn);
+                onFinished(task);
+            }
+        }
+
+        private void report(Task task, ScatterGatherStatus status, R result, Throwable e) {
+            report(task, status, result, e, System.nanoTime());
+        }
+
+        private void report(Task task, ScatterGatherStatus status, R result, Throwable e, long taskStart) {
+            if (task.reported.compareAndSet(false, true)) {
+                long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - taskStart);
+                completed.add(new ScatterGatherResult<>(task.config, status, result, e, elapsedMillis));
+            }
+        }
+
+    }
+
+    private static class Task {
+
+        private final RDBMSConnectionConfiguration config;
+        private final AtomicBoolean reported = new AtomicBoolean();
+        private PoolKey poolKey;
+        private volatile Future<?> future;
+        private volatile boolean timedOut;
+
+        Task(RDBMSConnectionConfiguration config) {
+            this.config = config;
+        }
+
+        String server() {
+            return poolKey.getServer() + ":" + poolKey.getPort();
+        }
+
+    }
+
+}
@@ -0,0 +1,63 @@
+package top.yifan.datasource;
+
+/**
+ * 分发查询中单个租户的执行结果
+ *
+ * @author Star Zheng
+ *
+ * @param <R> 返回值类型
+ */
+public class ScatterGatherResult<R> {
+
+    private final RDBMSConnectionConfiguration config;
+    private final ScatterGatherStatus status;
+    private final R result;
+    private final Throwable exception;
+    private final long elapsedMillis;
+
+    ScatterGatherResult(RDBMSConnectionConfiguration config, ScatterGatherStatus status, R result,
+                        Throwable exception, long elapsedMillis) {
+        this.config = config;
+        this.status = status;
+        this.result = result;
+        this.exception = exception;
+        this.elapsedMillis = elapsedMillis;
+    }
+
+    /**
+     * @return 返回该租户的数据库连接配置
+     */
+    public RDBMSConnectionConfiguration getConfig() {
+        return config;
+    }
+
+    public ScatterGatherStatus getStatus() {
+        return status;
+    }
+
+    public boolean isSuccess() {
+        return status == ScatterGatherStatus.SUCCESS;
+    }
+
+    /**
+     * @return 返回执行方法的返回值，执行失败或超时时返回null
+     */
+    public R getResult() {
+        return result;
+    }
+
+    /**
+     * @return 返回执行失败的原因，包括执行方法抛出的 Error，执行成功或超时时返回null
+     */
+    public Throwable getException() {
+        return exception;
+    }
+
+    /**
+     * @return 返回从开始执行到完成所用的时间，超时的租户为从分发开始到超时的时间
+     */
+    public long getElapsedMillis() {
+        return elapsedMillis;
+    }
+
+}
@@ -0,0 +1,25 @@
+package top.yifan.datasource;
+
+/**
+ * 分发查询中单个租户的执行状态
+ *
+ * @author Star Zheng
+ */
+public enum ScatterGatherStatus {
+
+    /**
+     * 执行成功
+     */
+    SUCCESS,
+
+    /**
+     * 获取连接或执行时发生异常
+     */
+    FAILED,
+
+    /**
+     * 在整体超时时间内未完成
+     */
+    TIMEOUT
+
+}
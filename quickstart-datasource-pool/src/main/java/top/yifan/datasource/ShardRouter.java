@@ -0,0 +1,288 @@
+package top.yifan.datasource;
+
+import top.yifan.ExecuteSQLFunction;
+import top.yifan.RetryableConnection;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.PriorityQueue;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * 分片路由器，通过一致性哈希环将业务键映射到其中一个分片数据库上。
+ *
+ * <p>每个分片在环上放置 virtualNodes 个虚拟节点，以使数据在分片之间均匀分布。新增分片时只有落在新虚拟节点上的键
+ * （约 1/(N+1)）会被重新映射，其余的键仍然路由到原来的分片。
+ *
+ * <p>虚拟节点的位置只由分片的类型、地址、端口与数据库决定，与账号密码无关，更换分片的账号密码不会改变键的映射。
+ *
+ * <p>哈希环采用写时复制：路由时无锁读取当前的环，新增或移除分片时构造新的环后整体替换。
+ *
+ * @author Star Zheng
+ */
+public class ShardRouter {
+
+    /**
+     * 未指定时同一台数据库服务器上同时查询的分片数，多个分片部署在同一台服务器上时避免将其压垮
+     */
+    static final int DEFAULT_MAX_CONCURRENCY_PER_SERVER = 4;
+
+    private static final ThreadLocal<MessageDigest> MD5 = ThreadLocal.withInitial(() -> {
+        try {
+            return MessageDigest.getInstance("MD5");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    });
+
+    private final int virtualNodes;
+    /**
+     * 以 {@link #shardId(PoolKey)} 为键
+     */
+    private final Map<String, RDBMSConnectionConfiguration> shards = new LinkedHashMap<>();
+
+    private volatile TreeMap<Long, RDBMSConnectionConfiguration> ring = new TreeMap<>();
+
+    /**
+     * @param shards       - 分片的数据库连接配置
+     * @param virtualNodes - 每个分片的虚拟节点数，推荐100 ~ 200
+     */
+    public ShardRouter(List<RDBMSConnectionConfiguration> shards, int virtualNodes) {
+        if (virtualNodes <= 0) {
+            throw new IllegalArgumentException("Virtual nodes must be positive");
+        }
+        this.virtualNodes = virtualNodes;
+        for (RDBMSConnectionConfiguration shard : shards) {
+            addShard(shard);
+        }
+    }
+
+    public ShardRouter(List<RDBMSConnectionConfiguration> shards) {
+        this(shards, 160);
+    }
+
+    /**
+     * 新增一个分片，分片已经存在时替换它的连接配置（例如更换了账号密码），键的映射保持不变
+     *
+     * @param shard - 分片的数据库连接配置
+     */
+    public synchronized void addShard(RDBMSConnectionConfiguration shard) {
+        PoolKey poolKey = PoolKey.of(shard);
+        String shardId = shardId(poolKey);
+        RDBMSConnectionConfiguration old = shards.put(shardId, shard);
+        if (old != null) {
+            if (!PoolKey.of(old).equals(poolKey)) {
+                rebuildRing();
+            }
+            return;
+        }
+        TreeMap<Long, RDBMSConnectionConfiguration> newRing = new TreeMap<>(ring);
+        for (long point : points(shardId)) {
+            // 哈希冲突时保留先加入的分片，保证已有键的映射不变
+            newRing.putIfAbsent(point, shard);
+        }
+        ring = newRing;
+    }
+
+    /**
+     * 移除一个分片，原来路由到该分片的键将被重新映射到环上的下一个分片
+     *
+     * @param shard - 分片的数据库连接配置
+     */
+    public synchronized void removeShard(RDBMSConnectionConfiguration shard) {
+        if (shards.remove(shardId(PoolKey.of(shard))) == null) {
+            return;
+        }
+        // 移除后重建，以便恢复之前因哈希冲突而被忽略的虚拟节点
+        rebuildRing();
+    }
+
+    private void rebuildRing() {
+        TreeMap<Long, RDBMSConnectionConfiguration> newRing = new TreeMap<>();
+        for (Map.Entry<String, RDBMSConnectionConfiguration> entry : shards.entrySet()) {
+            for (long point : points(entry.getKey())) {
+                newRing.putIfAbsent(point, entry.getValue());
+            }
+        }
+        ring = newRing;
+    }
+
+    /**
+     * @return 返回当前的全部分片
+     */
+    public synchronized List<RDBMSConnectionConfiguration> listShards() {
+        return new ArrayList<>(shards.values());
+    }
+
+    /**
+     * 获取业务键所在的分片
+     *
+     * @param shardKey - 业务键
+     * @return 返回分片的数据库连接配置
+     */
+    public RDBMSConnectionConfiguration getShard(Object shardKey) {
+        Objects.requireNonNull(shardKey, "Shard key is required");
+        TreeMap<Long, RDBMSConnectionConfiguration> current = ring;
+        if (current.isEmpty()) {
+            throw new IllegalStateException("No shard available");
+        }
+        long hash = hash(md5(String.valueOf(shardKey)), 0);
+        SortedMap<Long, RDBMSConnectionConfiguration> tail = current.tailMap(hash);
+        return tail.isEmpty() ? current.firstEntry().getValue() : tail.get(tail.firstKey());
+    }
+
+    /**
+     * 创建并返回业务键所在分片的支持重试的数据库连接
+     *
+     * @param shardKey - 业务键
+     */
+    public RetryableConnection getRetryableConnection(Object shardKey) {
+        return RDBMSDataSourcePoolUtil.getRetryableConnection(getShard(shardKey));
+    }
+
+    /**
+     * 同 {@link #scatterQuery(ExecuteSQLFunction, Comparator, int, int, long)}，
+     * 同一台数据库服务器上最多同时查询 {@link #DEFAULT_MAX_CONCURRENCY_PER_SERVER} 个分片
+     */
+    public <R> List<R> scatterQuery(ExecuteSQLFunction<List<R>> fun, Comparator<? super R> comparator,
+                                    int parallelism, long timeoutMillis) throws SQLException, InterruptedException {
+        return scatterQuery(fun, comparator, parallelism, Math.min(parallelism, DEFAULT_MAX_CONCURRENCY_PER_SERVER),
+                timeoutMillis);
+    }
+
+    /**
+     * 在全部分片上并发执行查询，并将各分片的结果归并为一个有序的列表。
+     *
+     * <p>各分片返回的列表必须已经按照 comparator 排好序（例如SQL中使用相同的 ORDER BY），归并时不会重新排序。
+     * 任何一个分片失败或超时都将导致整个查询失败，避免返回缺失部分分片的结果。
+     *
+     * @param fun                     - 在每个分片上执行的查询方法，返回该分片的有序结果
+     * @param comparator              - 结果的排序规则
+     * @param parallelism             - 同时执行查询的分片数
+     * @param maxConcurrencyPerServer - 同一台数据库服务器（地址与端口）上同时执行查询的分片数
+     * @param timeoutMillis           - 整体超时时间
+     * @return 返回归并后的有序结果
+     * @throws SQLException 如果有分片执行失败或超时，则抛出此异常
+     */
+    public <R> List<R> scatterQuery(ExecuteSQLFunction<List<R>> fun, Comparator<? super R> comparator,
+                                    int parallelism, int maxConcurrencyPerServer, long timeoutMillis)
+            throws SQLException, InterruptedException {
+        Objects.requireNonNull(comparator, "Comparator is required");
+        List<List<R>> results = new ArrayList<>();
+        List<ScatterGatherResult<List<R>>> failures = new ArrayList<>();
+        RDBMSDataSourcePoolUtil.scatterGather(listShards(), fun, parallelism, maxConcurrencyPerServer, timeoutMillis,
+                r -> {
+                    if (r.isSuccess()) {
+                        results.add(r.getResult() == null ? Collections.emptyList() : r.getResult());
+                    } else {
+                        failures.add(r);
+                    }
+                });
+        if (!failures.isEmpty()) {
+            throw scatterQueryException(failures);
+        }
+        return merge(results, comparator);
+    }
+
+    private static <R> SQLException scatterQueryException(List<ScatterGatherResult<List<R>>> failures) {
+        StringBuilder message = new StringBuilder("Scatter query failed on ").append(failures.size()).append(" shard(s):");
+        for (ScatterGatherResult<List<R>> failure : failures) {
+            message.append(' ').append(PoolKey.of(failure.getConfig())).append('=').append(failure.getStatus());
+        }
+        SQLException e = new SQLException(message.toString());
+        for (ScatterGatherResult<List<R>> failure : failures) {
+            if (failure.getException() != null) {
+                e.addSuppressed(failure.getException());
+            }
+        }
+        return e;
+    }
+
+    /**
+     * 多路归并有序列表
+     */
+    static <R> List<R> merge(List<List<R>> sortedLists, Comparator<? super R> comparator) {
+        int total = 0;
+        PriorityQueue<Cursor<R>> heap = new PriorityQueue<>(Math.max(1, sortedLists.size()),
+                (a, b) -> comparator.compare(a.head, b.head));
+        for (List<R> list : sortedLists) {
+            total += list.size();
+            Iterator<R> it = list.iterator();
+            if (it.hasNext()) {
+                heap.add(new Cursor<>(it));
+            }
+        }
+        List<R> merged = new ArrayList<>(total);
+        while (!heap.isEmpty()) {
+            Cursor<R> cursor = heap.poll();
+            merged.add(cursor.head);
+            if (cursor.advance()) {
+                heap.add(cursor);
+            }
+        }
+        return merged;
+    }
+
+    /**
+     * 分片在环上的标识，不包含账号密码
+     */
+    private static String shardId(PoolKey poolKey) {
+        return poolKey.getType() + "://" + poolKey.getServer() + ":" + poolKey.getPort() + "/" + poolKey.getDatabase();
+    }
+
+    private long[] points(String shardId) {
+        long[] points = new long[virtualNodes];
+        // 每个MD5摘要可以产生4个32位的哈希值
+        for (int i = 0; i < virtualNodes; i += 4) {
+            byte[] digest = md5(shardId + "#" + i);
+            for (int j = 0; j < 4 && i + j < virtualNodes; j++) {
+                points[i + j] = hash(digest, j);
+            }
+        }
+        return points;
+    }
+
+    private static long hash(byte[] digest, int index) {
+        return ((long) (digest[3 + index * 4] & 0xFF) << 24)
+                | ((long) (digest[2 + index * 4] & 0xFF) << 16)
+                | ((long) (digest[1 + index * 4] & 0xFF) << 8)
+                | (digest[index * 4] & 0xFF);
+    }
+
+    private static byte[] md5(String value) {
+        // digest 完成后会重置，可以在同一线程中复用
+        return MD5.get().digest(value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static class Cursor<R> {
+
+        private final Iterator<R> it;
+        private R head;
+
+        Cursor(Iterator<R> it) {
+            this.it = it;
+            this.head = it.next();
+        }
+
+        boolean advance() {
+            if (!it.hasNext()) {
+                return false;
+            }
+            head = it.next();
+            return true;
+        }
+
+    }
+
+}
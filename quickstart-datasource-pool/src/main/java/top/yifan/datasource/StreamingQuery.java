@@ -0,0 +1,152 @@
+package top.yifan.datasource;
+
+import top.yifan.DBUtil;
+import top.yifan.Interruptable;
+import top.yifan.RowHandler;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Objects;
+
+/**
+ * 流式查询，用于导出大表等结果集无法全部放入内存的场景。
+ *
+ * <p>根据数据库类型使用对应的流式读取方式（参见 {@link AbstractRDBMSDataSourcePool#prepareStreamingStatement}），
+ * 并在读取线程中逐行同步调用 {@link RowHandler}，处理速度慢时读取也随之变慢，内存中最多只保留 fetchSize 行数据。
+ *
+ * <p>当 RowHandler 返回false、Interruptable 被中断或调用 {@link #cancel()} 时，将通过
+ * {@link DBUtil#cancelStatement} 取消服务端的查询后再关闭资源，避免关闭结果集时驱动读完剩余的数据。
+ * 一个 StreamingQuery 对象同一时间只能执行一次查询。
+ *
+ * @author Star Zheng
+ */
+public class StreamingQuery {
+
+    private final String sql;
+    private final Object[] parameters;
+    private final int fetchSize;
+    private final Interruptable interruptable;
+
+    private volatile PreparedStatement statement;
+    private volatile boolean cancelled;
+
+    private StreamingQuery(Builder builder) {
+        this.sql = builder.sql;
+        this.parameters = builder.parameters;
+        this.fetchSize = builder.fetchSize;
+        this.interruptable = builder.interruptable;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * 使用连接池中的连接执行查询，查询结束后连接将归还到连接池中
+     *
+     * @param config  - 数据库连接配置
+     * @param handler - 行处理器
+     * @return 返回处理的行数
+     */
+    public long execute(RDBMSConnectionConfiguration config, RowHandler handler) throws SQLException {
+        return execute(PoolKey.of(config), handler);
+    }
+
+    /**
+     * 使用连接池中的连接执行查询，查询结束后连接将归还到连接池中
+     *
+     * @param poolKey - 连接池缓存键
+     * @param handler - 行处理器
+     * @return 返回处理的行数
+     */
+    public long execute(PoolKey poolKey, RowHandler handler) throws SQLException {
+        AbstractRDBMSDataSourcePool pool = AbstractRDBMSDataSourcePool.findInstance(poolKey.getType());
+        cancelled = false;
+        Connection conn = null;
+        PreparedStatement ps = null;
+        ResultSet rs = null;
+        long rows = 0;
+        boolean completed = false;
+        try {
+            conn = pool.getConnection(poolKey);
+            ps = pool.prepareStreamingStatement(conn, sql, fetchSize);
+            statement = ps;
+            for (int i = 0; i < parameters.length; i++) {
+                ps.setObject(i + 1, parameters[i]);
+            }
+            if (isAborted()) {
+                return rows;
+            }
+            rs = ps.executeQuery();
+            while (!isAborted() && rs.next()) {
+                rows++;
+                if (!handler.onRow(rs)) {
+                    return rows;
+                }
+            }
+            completed = !isAborted();
+            return rows;
+        } finally {
+            statement = null;
+            if (!completed) {
+                DBUtil.cancelStatement(ps);
+            }
+            DBUtil.closeDBResources(rs, ps, conn);
+        }
+    }
+
+    /**
+     * 取消正在执行的查询，可以在其它线程中调用
+     */
+    public void cancel() {
+        cancelled = true;
+        DBUtil.cancelStatement(statement);
+    }
+
+    private boolean isAborted() {
+        return cancelled || (interruptable != null && interruptable.isInterrupted());
+    }
+
+    public static class Builder {
+
+        private String sql;
+        private Object[] parameters = new Object[0];
+        private int fetchSize = 1000;
+        private Interruptable interruptable;
+
+        public StreamingQuery build() {
+            Objects.requireNonNull(sql, "SQL is required");
+            if (fetchSize <= 0) {
+                throw new IllegalArgumentException("Fetch size must be positive");
+            }
+            return new StreamingQuery(this);
+        }
+
+        public Builder sql(String sql) {
+            this.sql = sql;
+            return this;
+        }
+
+        public Builder parameters(Object... parameters) {
+            this.parameters = parameters == null ? new Object[0] : parameters;
+            return this;
+        }
+
+        /**
+         * 每次从服务端拉取的行数，MySQL 使用逐行流式读取，忽略此参数
+         */
+        public Builder fetchSize(int fetchSize) {
+            this.fetchSize = fetchSize;
+            return this;
+        }
+
+        public Builder interruptable(Interruptable interruptable) {
+            this.interruptable = interruptable;
+            return this;
+        }
+
+    }
+
+}
@@ -0,0 +1,287 @@
+package top.yifan.datasource;
+
+import top.yifan.BulkheadRejectedException;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.IntSupplier;
+
+/**
+ * 单个连接池的租户隔离舱，在调用 dataSource.getConnection() 之前限制每个租户同时持有的连接数。
+ *
+ * <p>租户未超出配额且连接池有空余时立即放行；否则进入该租户的等待队列，队列已满时立即拒绝。
+ * 有连接归还时，在未超出配额的排队租户中选择 已持有连接数 / 权重 最小的租户放行，权重相同时先到先得，
+ * 从而避免一个繁忙的租户占满连接池的全部连接。
+ *
+ * <p>租户没有持有的连接且没有排队的请求时即被移除，租户数量不会随着访问过的租户无限增长，
+ * 所以被拒绝的次数只统计租户最近一次活跃期间的请求。
+ *
+ * @author Star Zheng
+ */
+class TenantBulkhead {
+
+    private final PoolKey poolKey;
+    private final IntSupplier capacity;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Map<String, Tenant> tenants = new LinkedHashMap<>();
+
+    private int inFlight;
+    private long sequence;
+
+    /**
+     * @param poolKey  - 连接池缓存键
+     * @param capacity - 连接池当前的最大连接数，连接池大小可能被动态调整，所以每次都重新读取
+     */
+    TenantBulkhead(PoolKey poolKey, IntSupplier capacity) {
+        this.poolKey = poolKey;
+        this.capacity = capacity;
+    }
+
+    PoolKey getPoolKey() {
+        return poolKey;
+    }
+
+    /**
+     * 获取一个许可，成功后必须调用 {@link #release(String)}
+     *
+     * @throws BulkheadRejectedException 如果等待队列已满或者等待超时
+     */
+    void acquire(String tenantId, TenantBulkheadConfig config) throws SQLException {
+        Waiter waiter;
+        lock.lock();
+        try {
+            Tenant tenant = tenants.computeIfAbsent(tenantId, Tenant::new);
+            tenant.weight = config.getWeight(tenantId);
+            tenant.limit = tenantLimit(tenant, config);
+            if (tenant.queue.size() >= config.getMaxQueuedPerTenant() && !canGrant(tenant)) {
+                tenant.rejected++;
+                removeIfIdle(tenant);
+                throw new BulkheadRejectedException("Tenant " + tenantId + " exceeds its connection share ("
+                        + tenant.limit + ") of " + poolKey, tenantId);
+            }
+            waiter = new Waiter(lock.newCondition(), sequence++);
+            tenant.queue.add(waiter);
+            dispatch();
+            long nanos = TimeUnit.MILLISECONDS.toNanos(config.getMaxWaitMillis());
+            while (!waiter.granted) {
+                if (nanos <= 0L) {
+                    tenant.queue.remove(waiter);
+                    tenant.rejected++;
+                    removeIfIdle(tenant);
+                    throw new BulkheadRejectedException("Tenant " + tenantId + " waited more than "
+                            + config.getMaxWaitMillis() + "ms for a connection of " + poolKey, tenantId);
+                }
+                try {
+                    nanos = waiter.condition.awaitNanos(nanos);
+                } catch (InterruptedException e) {
+                    if (waiter.granted) {
+                        releaseLocked(tenant);
+                    } else {
+                        tenant.queue.remove(waiter);
+                        removeIfIdle(tenant);
+                    }
+                    Thread.currentThread().interrupt();
+                    throw new SQLException("Interrupted while waiting for a connection of " + poolKey, e);
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    void release(String tenantId) {
+        lock.lock();
+        try {
+            Tenant tenant = tenants.get(tenantId);
+            if (tenant != null) {
+                releaseLocked(tenant);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 获取许可后从连接池获取连接，连接关闭时归还许可
+     */
+    Connection getConnection(String tenantId, TenantBulkheadConfig config, PooledDataSource dataSource)
+            throws SQLException {
+        acquire(tenantId, config);
+        Connection conn;
+        try {
+            conn = dataSource.getDataSource().getConnection();
+        } catch (SQLException | RuntimeException e) {
+            release(tenantId);
+            throw e;
+        }
+        return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(), new Class[]{Connection.class},
+                new PermitConnectionHandler(conn, tenantId));
+    }
+
+    /**
+     * @return 返回每个租户当前的状态
+     */
+    List<TenantSnapshot> snapshot() {
+        lock.lock();
+        try {
+            List<TenantSnapshot> snapshots = new ArrayList<>(tenants.size());
+            for (Tenant tenant : tenants.values()) {
+                snapshots.add(new TenantSnapshot(tenant.id, tenant.weight, tenant.limit, tenant.inFlight,
+                        tenant.queue.size(), tenant.rejected));
+            }
+            return snapshots;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void releaseLocked(Tenant tenant) {
+        tenant.inFlight--;
+        inFlight--;
+        dispatch();
+        removeIfIdle(tenant);
+    }
+
+    private void removeIfIdle(Tenant tenant) {
+        if (tenant.inFlight == 0 && tenant.queue.isEmpty()) {
+            tenants.remove(tenant.id, tenant);
+        }
+    }
+
+    private boolean canGrant(Tenant tenant) {
+        return inFlight < capacity.getAsInt() && tenant.inFlight < tenant.limit;
+    }
+
+    private int tenantLimit(Tenant tenant, TenantBulkheadConfig config) {
+        int max = capacity.getAsInt();
+        return (int) Math.max(1, Math.min(max, Math.ceil(max * config.getMaxTenantShare() * tenant.weight)));
+    }
+
+    /**
+     * 在连接池有空余时，按加权公平的顺序放行排队的请求
+     */
+    private void dispatch() {
+        while (inFlight < capacity.getAsInt()) {
+            Tenant next = null;
+            for (Tenant tenant : tenants.values()) {
+                if (tenant.queue.isEmpty() || tenant.inFlight >= tenant.limit) {
+                    continue;
+                }
+                if (next == null) {
+                    next = tenant;
+                    continue;
+                }
+                // 比较 inFlight / weight，交叉相乘避免浮点运算
+                long diff = (long) tenant.inFlight * next.weight - (long) next.inFlight * tenant.weight;
+                if (diff < 0 || (diff == 0 && tenant.queue.peek().sequence < next.queue.peek().sequence)) {
+                    next = tenant;
+                }
+            }
+            if (next == null) {
+                return;
+            }
+            Waiter waiter = next.queue.poll();
+            next.inFlight++;
+            inFlight++;
+            waiter.granted = true;
+            waiter.condition.signal();
+        }
+    }
+
+    private static class Tenant {
+
+        private final String id;
+        private final ArrayDeque<Waiter> queue = new ArrayDeque<>();
+        private int weight = 1;
+        private int limit = 1;
+        private int inFlight;
+        private long rejected;
+
+        Tenant(String id) {
+            this.id = id;
+        }
+
+    }
+
+    private static class Waiter {
+
+        private final Condition condition;
+        private final long sequence;
+        private boolean granted;
+
+        Waiter(Condition condition, long sequence) {
+            this.condition = condition;
+            this.sequence = sequence;
+        }
+
+    }
+
+    static class TenantSnapshot {
+
+        final String tenant;
+        final int weight;
+        final int limit;
+        final int inFlight;
+        final int queued;
+        final long rejected;
+
+        TenantSnapshot(String tenant, int weight, int limit, int inFlight, int queued, long rejected) {
+            this.tenant = tenant;
+            this.weight = weight;
+            this.limit = limit;
+            this.inFlight = inFlight;
+            this.queued = queued;
+            this.rejected = rejected;
+        }
+
+    }
+
+    /**
+     * 连接关闭时归还许可，重复关闭只归还一次
+     */
+    private class PermitConnectionHandler implements InvocationHandler {
+
+        private final Connection conn;
+        private final String tenantId;
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        PermitConnectionHandler(Connection conn, String tenantId) {
+            this.conn = conn;
+            this.tenantId = tenantId;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            if ("close".equals(method.getName()) && method.getParameterCount() == 0) {
+                try {
+                    conn.close();
+                } finally {
+                    if (released.compareAndSet(false, true)) {
+                        release(tenantId);
+                    }
+                }
+                return null;
+            }
+            try {
+                return method.invoke(conn, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+
+    }
+
+}
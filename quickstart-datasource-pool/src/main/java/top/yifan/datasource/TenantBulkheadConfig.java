@@ -0,0 +1,103 @@
+package top.yifan.datasource;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 租户隔离配置
+ *
+ * @author Star Zheng
+ */
+public class TenantBulkheadConfig {
+
+    private double maxTenantShare;      // 权重为1的租户最多占用连接池最大连接数的比例
+    private int maxQueuedPerTenant;     // 每个租户最多排队等待的请求数，超出时立即拒绝
+    private long maxWaitMillis;         // 排队等待的最长时间
+    private Map<String, Integer> weights;
+
+    private TenantBulkheadConfig() {
+    }
+
+    public double getMaxTenantShare() {
+        return maxTenantShare;
+    }
+
+    public int getMaxQueuedPerTenant() {
+        return maxQueuedPerTenant;
+    }
+
+    public long getMaxWaitMillis() {
+        return maxWaitMillis;
+    }
+
+    /**
+     * @return 返回租户的权重，未配置时为1
+     */
+    public int getWeight(String tenant) {
+        return weights.getOrDefault(tenant, 1);
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public static class Builder {
+
+        private double maxTenantShare = 0.5;
+        private int maxQueuedPerTenant = 50;
+        private long maxWaitMillis = 30 * 1000L;
+        private final Map<String, Integer> weights = new HashMap<>();
+
+        public TenantBulkheadConfig build() {
+            if (maxTenantShare <= 0 || maxTenantShare > 1) {
+                throw new IllegalArgumentException("Max tenant share must be in (0, 1]");
+            }
+            if (maxQueuedPerTenant < 0) {
+                throw new IllegalArgumentException("Max queued per tenant must not be negative");
+            }
+            if (maxWaitMillis < 0) {
+                throw new IllegalArgumentException("Max wait must not be negative");
+            }
+            TenantBulkheadConfig config = new TenantBulkheadConfig();
+            config.maxTenantShare = maxTenantShare;
+            config.maxQueuedPerTenant = maxQueuedPerTenant;
+            config.maxWaitMillis = maxWaitMillis;
+            config.weights = new HashMap<>(weights);
+            return config;
+        }
+
+        /**
+         * 租户最多同时占用的连接数为 ceil(最大连接数 * maxTenantShare * 权重)，且不超过最大连接数
+         */
+        public Builder maxTenantShare(double maxTenantShare) {
+            this.maxTenantShare = maxTenantShare;
+            return this;
+        }
+
+        /**
+         * 设置为0时，租户超出配额后的请求将直接被拒绝，不再排队
+         */
+        public Builder maxQueuedPerTenant(int maxQueuedPerTenant) {
+            this.maxQueuedPerTenant = maxQueuedPerTenant;
+            return this;
+        }
+
+        public Builder maxWaitMillis(long maxWaitMillis) {
+            this.maxWaitMillis = maxWaitMillis;
+            return this;
+        }
+
+        /**
+         * 租户的权重，权重越大可以占用的连接越多，排队时也越优先获得空闲的连接
+         */
+        public Builder tenantWeight(String tenant, int weight) {
+            if (weight <= 0) {
+                throw new IllegalArgumentException("Weight must be positive");
+            }
+            this.weights.put(tenant, weight);
+            return this;
+        }
+
+    }
+
+}
@@ -0,0 +1,174 @@
+package top.yifan;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import javax.sql.rowset.CachedRowSet;
+import javax.sql.rowset.RowSetMetaDataImpl;
+import javax.sql.rowset.RowSetProvider;
+import java.lang.reflect.Method;
+import java.math.BigDecimal;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 对比 {@link BeanRowMapper} 与基于列名查找和 Method.invoke 的反射映射
+ *
+ * <p>运行方式：在IDE中直接运行 main 方法，或执行
+ * {@code mvn test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=top.yifan.BeanRowMapperBenchmark}
+ *
+ * @author Star Zheng
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class BeanRowMapperBenchmark {
+
+    private static final String[] COLUMNS = {"id", "customer_name", "quantity", "amount", "created_at", "paid"};
+    private static final int[] TYPES = {Types.BIGINT, Types.VARCHAR, Types.INTEGER, Types.DECIMAL, Types.TIMESTAMP,
+            Types.BOOLEAN};
+
+    @Param({"1000"})
+    private int rows;
+
+    private CachedRowSet rs;
+    private Map<String, Method> setters;
+
+    @Setup
+    public void setup() throws SQLException {
+        RowSetMetaDataImpl metaData = new RowSetMetaDataImpl();
+        metaData.setColumnCount(COLUMNS.length);
+        for (int i = 0; i < COLUMNS.length; i++) {
+            metaData.setColumnName(i + 1, COLUMNS[i]);
+            metaData.setColumnLabel(i + 1, COLUMNS[i]);
+            metaData.setColumnType(i + 1, TYPES[i]);
+        }
+        rs = RowSetProvider.newFactory().createCachedRowSet();
+        rs.setMetaData(metaData);
+        long now = System.currentTimeMillis();
+        for (int i = 0; i < rows; i++) {
+            rs.moveToInsertRow();
+            rs.updateLong(1, i);
+            rs.updateString(2, "customer_" + i);
+            rs.updateInt(3, i % 10);
+            rs.updateBigDecimal(4, BigDecimal.valueOf(i, 2));
+            rs.updateTimestamp(5, new Timestamp(now + i));
+            rs.updateBoolean(6, i % 2 == 0);
+            rs.insertRow();
+        }
+        rs.moveToCurrentRow();
+
+        setters = new HashMap<>();
+        for (Method method : Order.class.getMethods()) {
+            if (method.getName().startsWith("set") && method.getParameterCount() == 1) {
+                setters.put(method.getName().substring(3).toLowerCase(Locale.ROOT), method);
+            }
+        }
+    }
+
+    @Benchmark
+    public void beanRowMapper(Blackhole bh) throws SQLException {
+        rs.beforeFirst();
+        BeanRowMapper<Order> mapper = BeanRowMapper.of(Order.class, rs.getMetaData());
+        while (rs.next()) {
+            bh.consume(mapper.mapRow(rs));
+        }
+    }
+
+    @Benchmark
+    public void reflection(Blackhole bh) throws Exception {
+        rs.beforeFirst();
+        ResultSetMetaData metaData = rs.getMetaData();
+        while (rs.next()) {
+            Order order = Order.class.newInstance();
+            for (int i = 1; i <= metaData.getColumnCount(); i++) {
+                String label = metaData.getColumnLabel(i);
+                Method setter = setters.get(label.replace("_", "").toLowerCase(Locale.ROOT));
+                if (setter != null) {
+                    setter.invoke(order, rs.getObject(label));
+                }
+            }
+            bh.consume(order);
+        }
+    }
+
+    public static class Order {
+
+        private long id;
+        private String customerName;
+        private int quantity;
+        private BigDecimal amount;
+        private Timestamp createdAt;
+        private boolean paid;
+
+        public long getId() {
+            return id;
+        }
+
+        public void setId(long id) {
+            this.id = id;
+        }
+
+        public String getCustomerName() {
+            return customerName;
+        }
+
+        public void setCustomerName(String customerName) {
+            this.customerName = customerName;
+        }
+
+        public int getQuantity() {
+            return quantity;
+        }
+
+        public void setQuantity(int quantity) {
+            this.quantity = quantity;
+        }
+
+        public BigDecimal getAmount() {
+            return amount;
+        }
+
+        public void setAmount(BigDecimal amount) {
+            this.amount = amount;
+        }
+
+        public Timestamp getCreatedAt() {
+            return createdAt;
+        }
+
+        public void setCreatedAt(Timestamp createdAt) {
+            this.createdAt = createdAt;
+        }
+
+        public boolean isPaid() {
+            return paid;
+        }
+
+        public void setPaid(boolean paid) {
+            this.paid = paid;
+        }
+
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(BeanRowMapperBenchmark.class.getSimpleName())
+                .build();
+        new Runner(options).run();
+    }
+
+}
@@ -0,0 +1,34 @@
+package top.yifan;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * LatencyHistogramTest
+ *
+ * @author Star Zheng
+ */
+public class LatencyHistogramTest {
+
+    @Test
+    public void testSnapshotDiffReflectsRecentValues() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 0; i < 100000; i++) {
+            histogram.record(100);
+        }
+        LatencyHistogram.Snapshot before = histogram.snapshot();
+        for (int i = 0; i < 100; i++) {
+            histogram.record(50000);
+        }
+        LatencyHistogram.Snapshot interval = histogram.snapshot().minus(before);
+
+        // 累计的 p99 几乎不受最近的慢请求影响，区间内的 p99 可以反映出来
+        Assert.assertTrue(histogram.getPercentile(99) < 200);
+        Assert.assertEquals(100, interval.getCount());
+        Assert.assertEquals(100L * 50000, interval.getSum());
+        long p99 = interval.getPercentile(99);
+        Assert.assertTrue(p99 >= 50000 && p99 <= 50000 * 9 / 8);
+        Assert.assertEquals(50000, interval.getMax());
+    }
+
+}
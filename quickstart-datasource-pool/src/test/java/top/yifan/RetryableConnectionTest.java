@@ -0,0 +1,55 @@
+package top.yifan;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * RetryableConnectionTest
+ *
+ * @author Star Zheng
+ */
+public class RetryableConnectionTest {
+
+    @Test
+    public void testExecuteAsyncCompletesWhenConnectionSupplierThrowsError() throws Exception {
+        RetryableConnection conn = new RetryableConnection(() -> {
+            throw new NoClassDefFoundError("Driver");
+        });
+        assertFailsWith(NoClassDefFoundError.class, conn.executeAsync(c -> 1, 3));
+    }
+
+    @Test
+    public void testExecuteAsyncCompletesWhenFunctionThrowsError() throws Exception {
+        RetryableConnection conn = new RetryableConnection(RetryableConnectionTest::newConnection);
+        assertFailsWith(AssertionError.class, conn.executeAsync(c -> {
+            throw new AssertionError("Function failed");
+        }, 3));
+    }
+
+    private static void assertFailsWith(Class<? extends Throwable> type, CompletableFuture<?> future)
+            throws Exception {
+        try {
+            future.get(10, TimeUnit.SECONDS);
+            Assert.fail("Future should complete exceptionally");
+        } catch (ExecutionException e) {
+            Assert.assertEquals(type, e.getCause().getClass());
+        }
+    }
+
+    private static Connection newConnection() {
+        return (Connection) Proxy.newProxyInstance(RetryableConnectionTest.class.getClassLoader(),
+                new Class<?>[]{Connection.class}, (proxy, method, args) -> {
+                    if ("isClosed".equals(method.getName())) {
+                        return false;
+                    }
+                    return null;
+                });
+    }
+
+}
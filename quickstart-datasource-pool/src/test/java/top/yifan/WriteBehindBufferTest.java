@@ -0,0 +1,157 @@
+package top.yifan;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+/**
+ * WriteBehindBufferTest
+ *
+ * @author Star Zheng
+ */
+public class WriteBehindBufferTest {
+
+    /**
+     * 模拟的计数器表，提交时累加各行的增量
+     */
+    private final Map<String, Long> counters = new ConcurrentHashMap<>();
+
+    @Test
+    public void testCounterFlushFailsPartway() throws Exception {
+        CountDownLatch firstBatchStarted = new CountDownLatch(1);
+        CountDownLatch releaseFirstBatch = new CountDownLatch(1);
+        AtomicInteger boundRows = new AtomicInteger();
+        WriteBehindBuffer<String, Long> buffer = WriteBehindBuffer.<String, Long>builder()
+                .name("test")
+                .connection(this::newConnection)
+                .sql("UPDATE counter SET value = value + ? WHERE id = ?")
+                .binder((ps, row) -> {
+                    int index = boundRows.incrementAndGet();
+                    if (index == 1) {
+                        firstBatchStarted.countDown();
+                        try {
+                            releaseFirstBatch.await();
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                        }
+                    }
+                    // 第二次刷新的第二个分块中途失败，且不是 SQLException
+                    if (index == 8) {
+                        throw new IllegalStateException("Binder failed");
+                    }
+                    ps.setObject(1, row.getKey());
+                    ps.setObject(2, row.getValue());
+                })
+                .merger(Long::sum)
+                .flushSize(3)
+                .flushInterval(1, TimeUnit.HOURS)
+                .maxBufferedKeys(100)
+                .build();
+        try {
+            for (String key : new String[]{"a", "b", "c"}) {
+                buffer.put(key, 1L);
+            }
+            // 第一次刷新阻塞期间继续写入，下一次刷新会有多个分块
+            Assert.assertTrue(firstBatchStarted.await(10, TimeUnit.SECONDS));
+            for (String key : new String[]{"d", "e", "f", "g", "h", "i", "a"}) {
+                buffer.put(key, 1L);
+            }
+            releaseFirstBatch.countDown();
+            await(() -> buffer.getFlushFailures() == 1 && buffer.getBufferedKeys() == 4);
+
+            // 失败的分块之前已提交的行不会重新合并，刷新线程仍然存活
+            Assert.assertEquals(6, buffer.getFlushedRows());
+            buffer.put("j", 1L);
+            buffer.flush();
+        } finally {
+            buffer.close();
+        }
+        Assert.assertEquals(10, counters.size());
+        Assert.assertEquals(2L, (long) counters.get("a"));
+        for (Map.Entry<String, Long> entry : counters.entrySet()) {
+            if (!"a".equals(entry.getKey())) {
+                Assert.assertEquals(entry.getKey(), 1L, (long) entry.getValue());
+            }
+        }
+    }
+
+    private Connection newConnection() {
+        List<Object[]> batch = new ArrayList<>();
+        List<Object[]> uncommitted = new ArrayList<>();
+        Object[] params = new Object[2];
+        boolean[] autoCommit = {true};
+        PreparedStatement ps = proxy(PreparedStatement.class, (method, args) -> {
+            switch (method) {
+                case "setObject":
+                    params[(int) args[0] - 1] = args[1];
+                    return null;
+                case "addBatch":
+                    batch.add(params.clone());
+                    return null;
+                case "executeBatch":
+                    uncommitted.addAll(batch);
+                    batch.clear();
+                    return new int[uncommitted.size()];
+                default:
+                    return null;
+            }
+        });
+        return proxy(Connection.class, (method, args) -> {
+            switch (method) {
+                case "prepareStatement":
+                    return ps;
+                case "getAutoCommit":
+                    return autoCommit[0];
+                case "setAutoCommit":
+                    autoCommit[0] = (boolean) args[0];
+                    return null;
+                case "commit":
+                    for (Object[] row : uncommitted) {
+                        counters.merge((String) row[0], (Long) row[1], Long::sum);
+                    }
+                    uncommitted.clear();
+                    return null;
+                case "rollback":
+                case "close":
+                    batch.clear();
+                    uncommitted.clear();
+                    return null;
+                case "isClosed":
+                    return false;
+                default:
+                    return null;
+            }
+        });
+    }
+
+    private interface Handler {
+        Object invoke(String method, Object[] args);
+    }
+
+    private static <T> T proxy(Class<T> type, Handler handler) {
+        return type.cast(Proxy.newProxyInstance(WriteBehindBufferTest.class.getClassLoader(), new Class<?>[]{type},
+                (proxy, method, args) -> handler.invoke(method.getName(), args)));
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10_000L;
+        while (!condition.getAsBoolean()) {
+            if (System.currentTimeMillis() > deadline) {
+                Assert.fail("Condition not met within 10s");
+            }
+            Thread.sleep(5);
+        }
+    }
+
+}
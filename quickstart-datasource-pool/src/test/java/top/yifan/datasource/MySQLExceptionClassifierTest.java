@@ -0,0 +1,39 @@
+package top.yifan.datasource;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.sql.SQLException;
+import java.sql.SQLSyntaxErrorException;
+import java.sql.SQLTransientConnectionException;
+
+/**
+ * MySQLExceptionClassifierTest
+ *
+ * @author Star Zheng
+ */
+public class MySQLExceptionClassifierTest {
+
+    private final MySQLExceptionClassifier classifier = MySQLExceptionClassifier.INSTANCE;
+
+    @Test
+    public void testRetryable() {
+        Assert.assertTrue(classifier.isRetryable(new SQLException("Deadlock found", "40001", 1213)));
+        Assert.assertTrue(classifier.isRetryable(new SQLException("Lock wait timeout", "HY000", 1205)));
+        Assert.assertTrue(classifier.isRetryable(new SQLException("Communications link failure", "08S01", 0)));
+        Assert.assertTrue(classifier.isRetryable(new SQLTransientConnectionException(
+                "HikariPool-1 - Connection is not available, request timed out after 90000ms.")));
+        // 可重试的异常被包装在cause中
+        Assert.assertTrue(classifier.isRetryable(new SQLException("wrapped",
+                new SQLException("MySQL server has gone away", "HY000", 2006))));
+    }
+
+    @Test
+    public void testNotRetryable() {
+        Assert.assertFalse(classifier.isRetryable(new SQLSyntaxErrorException("You have an error in your SQL syntax",
+                "42000", 1064)));
+        Assert.assertFalse(classifier.isRetryable(new SQLException("Duplicate entry", "23000", 1062)));
+        Assert.assertFalse(classifier.isRetryable(new SQLException((String) null)));
+    }
+
+}
@@ -0,0 +1,97 @@
+package top.yifan.datasource;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * ShardRouterTest
+ *
+ * @author Star Zheng
+ */
+public class ShardRouterTest {
+
+    private static RDBMSConnectionConfiguration shard(int index) {
+        return RDBMSConnectionConfiguration.builder()
+                .type(RDBMSType.MySQL)
+                .server("10.0.0." + index)
+                .database("orders")
+                .username("app")
+                .password("secret")
+                .build();
+    }
+
+    @Test
+    public void testAddShardRemapsFewKeys() {
+        List<RDBMSConnectionConfiguration> shards = new ArrayList<>();
+        for (int i = 1; i <= 4; i++) {
+            shards.add(shard(i));
+        }
+        ShardRouter router = new ShardRouter(shards);
+        int keys = 10000;
+        RDBMSConnectionConfiguration[] before = new RDBMSConnectionConfiguration[keys];
+        for (int i = 0; i < keys; i++) {
+            before[i] = router.getShard("order-" + i);
+        }
+
+        RDBMSConnectionConfiguration added = shard(5);
+        router.addShard(added);
+        int moved = 0;
+        for (int i = 0; i < keys; i++) {
+            RDBMSConnectionConfiguration after = router.getShard("order-" + i);
+            if (after != before[i]) {
+                // 只允许迁移到新分片上
+                Assert.assertSame(added, after);
+                moved++;
+            }
+        }
+        // 理想情况下迁移 1/5 的键
+        Assert.assertTrue("moved " + moved, moved > keys / 10 && moved < keys * 3 / 10);
+
+        router.removeShard(added);
+        for (int i = 0; i < keys; i++) {
+            Assert.assertSame(before[i], router.getShard("order-" + i));
+        }
+    }
+
+    @Test
+    public void testRotatingCredentialsKeepsMapping() {
+        List<RDBMSConnectionConfiguration> shards = new ArrayList<>();
+        for (int i = 1; i <= 4; i++) {
+            shards.add(shard(i));
+        }
+        ShardRouter router = new ShardRouter(shards);
+        int keys = 1000;
+        RDBMSConnectionConfiguration[] before = new RDBMSConnectionConfiguration[keys];
+        for (int i = 0; i < keys; i++) {
+            before[i] = router.getShard("order-" + i);
+        }
+
+        RDBMSConnectionConfiguration rotated = RDBMSConnectionConfiguration.builder()
+                .type(RDBMSType.MySQL)
+                .server("10.0.0.2")
+                .database("orders")
+                .username("app_v2")
+                .password("rotated")
+                .build();
+        router.addShard(rotated);
+        Assert.assertEquals(4, router.listShards().size());
+        for (int i = 0; i < keys; i++) {
+            RDBMSConnectionConfiguration after = router.getShard("order-" + i);
+            Assert.assertSame(before[i] == shards.get(1) ? rotated : before[i], after);
+        }
+    }
+
+    @Test
+    public void testMerge() {
+        List<List<Integer>> lists = Arrays.asList(Arrays.asList(1, 4, 7), Arrays.<Integer>asList(),
+                Arrays.asList(2, 5, 8, 9), Arrays.asList(3, 6));
+        Assert.assertEquals(Arrays.asList(1, 2, 3, 4, 5, 6, 7, 8, 9),
+                ShardRouter.merge(lists, Comparator.naturalOrder()));
+    }
+
+}
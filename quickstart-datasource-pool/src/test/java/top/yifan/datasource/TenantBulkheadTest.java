@@ -0,0 +1,107 @@
+package top.yifan.datasource;
+
+import org.junit.Assert;
+import org.junit.Test;
+import top.yifan.BulkheadRejectedException;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * TenantBulkheadTest
+ *
+ * @author Star Zheng
+ */
+public class TenantBulkheadTest {
+
+    private final TenantBulkhead bulkhead = new TenantBulkhead(PoolKey.of(RDBMSConnectionConfiguration.builder()
+            .type(RDBMSType.MySQL)
+            .server("10.0.0.1")
+            .database("shared")
+            .username("app")
+            .password("secret")
+            .build()), () -> 4);
+
+    @Test
+    public void testRejectOverShare() throws Exception {
+        TenantBulkheadConfig config = TenantBulkheadConfig.builder()
+                .maxTenantShare(0.5)
+                .maxQueuedPerTenant(0)
+                .build();
+        bulkhead.acquire("a", config);
+        bulkhead.acquire("a", config);
+        try {
+            bulkhead.acquire("a", config);
+            Assert.fail();
+        } catch (BulkheadRejectedException e) {
+            Assert.assertEquals("a", e.getTenant());
+        }
+        // 其它租户不受影响
+        bulkhead.acquire("b", config);
+        bulkhead.release("a");
+        bulkhead.acquire("a", config);
+    }
+
+    @Test
+    public void testWeightedFairDispatch() throws Exception {
+        TenantBulkheadConfig config = TenantBulkheadConfig.builder()
+                .maxTenantShare(1)
+                .tenantWeight("b", 3)
+                .build();
+        for (int i = 0; i < 4; i++) {
+            bulkhead.acquire("a", config);
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            Future<?> a = executor.submit(() -> {
+                bulkhead.acquire("a", config);
+                return null;
+            });
+            while (bulkhead.snapshot().get(0).queued == 0) {
+                Thread.sleep(1);
+            }
+            Future<?> b = executor.submit(() -> {
+                bulkhead.acquire("b", config);
+                return null;
+            });
+            while (bulkhead.snapshot().size() < 2 || bulkhead.snapshot().get(1).queued == 0) {
+                Thread.sleep(1);
+            }
+            // a 持有4个连接，b 虽然后到，但 inFlight / weight 更小，所以先获得许可
+            bulkhead.release("a");
+            b.get(5, TimeUnit.SECONDS);
+            Assert.assertFalse(a.isDone());
+            bulkhead.release("a");
+            a.get(5, TimeUnit.SECONDS);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testIdleTenantsAreRemoved() throws Exception {
+        TenantBulkheadConfig config = TenantBulkheadConfig.builder()
+                .maxTenantShare(0.25)
+                .maxQueuedPerTenant(0)
+                .build();
+        for (int i = 0; i < 100; i++) {
+            bulkhead.acquire("tenant-" + i, config);
+            bulkhead.release("tenant-" + i);
+        }
+        Assert.assertTrue(bulkhead.snapshot().isEmpty());
+
+        bulkhead.acquire("a", config);
+        try {
+            bulkhead.acquire("a", config);
+            Assert.fail();
+        } catch (BulkheadRejectedException e) {
+            // 仍持有连接的租户不会被移除
+            Assert.assertEquals(1, bulkhead.snapshot().size());
+        }
+        bulkhead.release("a");
+        Assert.assertTrue(bulkhead.snapshot().isEmpty());
+    }
+
+}
@@ -5,6 +5,10 @@ import org.apache.kafka.common.TopicPartition;
 import org.apache.kafka.common.serialization.StringDeserializer;
 import org.springframework.kafka.core.DefaultKafkaConsumerFactory;
 import org.springframework.util.CollectionUtils;
+import top.yifan.consumer.KafkaConsumerRunner;
+import top.yifan.consumer.KafkaConsumerRunnerConfig;
+import top.yifan.consumer.OffsetCommitManager;
+import top.yifan.consumer.RecordHandler;
 
 import java.time.Duration;
 import java.util.Collections;
@@ -19,23 +23,29 @@ import java.util.Map;
  */
 public class KafkaConsumerTemplate {
 
+    private static final long COMMIT_INTERVAL_MS = 1000L;
+    private static final long COMMIT_BATCH_SIZE = 500L;
+
     private final Consumer<String, String> kafkaConsumer;
+    private final OffsetCommitManager commitManager;
 
     public KafkaConsumerTemplate(String bootstrapServers, String groupId, String clientId) {
         this.kafkaConsumer = this.createConservativeKafkaConsumer(bootstrapServers, groupId, clientId);
+        this.commitManager = new OffsetCommitManager(kafkaConsumer, COMMIT_INTERVAL_MS, COMMIT_BATCH_SIZE);
     }
 
     public KafkaConsumerTemplate(Map<String, Object> configs) {
         this.kafkaConsumer = this.createKafkaConsumer(configs);
+        this.commitManager = new OffsetCommitManager(kafkaConsumer, COMMIT_INTERVAL_MS, COMMIT_BATCH_SIZE);
     }
 
     /**
-     * 订阅主题
+     * 订阅主题，分区被回收前同步提交已通过 {@link #ack(ConsumerRecord)} 确认的位移
      *
      * @param topics topics
      */
     public void subscribe(List<String> topics) {
-        this.kafkaConsumer.subscribe(topics);
+        this.kafkaConsumer.subscribe(topics, commitManager);
     }
 
     /**
@@ -54,24 +64,57 @@ public class KafkaConsumerTemplate {
      * @return 消息记录集合
      */
     public ConsumerRecords<String, String> pollOnce(long ttl) {
+        // 没有新的确认时，也要按时间间隔提交之前确认的位移
+        this.commitManager.maybeCommitAsync();
         return this.kafkaConsumer.poll(Duration.ofMillis(ttl));
     }
 
     /**
-     * 同步提交消息
+     * 确认消息已处理完成，位移在内存中合并，达到时间间隔（1s）或确认数量（500）后异步提交，
+     * 分区被回收或者调用 {@link #close()} 时同步提交，必须与 {@link #pollOnce(long)} 在同一线程中调用
+     *
+     * @param consumerRecord 消息记录
+     */
+    public void ack(ConsumerRecord<String, String> consumerRecord) {
+        this.commitManager.ack(new TopicPartition(consumerRecord.topic(), consumerRecord.partition()),
+                consumerRecord.offset() + 1);
+        this.commitManager.maybeCommitAsync();
+    }
+
+    /**
+     * 同步提交消息，每次调用都需要等待一次broker的响应，吞吐量要求较高时使用 {@link #ack(ConsumerRecord)}
      *
      * @param consumerRecord 消息记录
      */
     public void ackSync(ConsumerRecord<String, String> consumerRecord) {
-        Map<TopicPartition, OffsetAndMetadata> commits = Collections.singletonMap(
-                new TopicPartition(consumerRecord.topic(), consumerRecord.partition()),
-                new OffsetAndMetadata(consumerRecord.offset() + 1));
-        // ack 消息
-        this.kafkaConsumer.commitSync(commits);
+        TopicPartition tp = new TopicPartition(consumerRecord.topic(), consumerRecord.partition());
+        // 与 ack 共用已确认的位移，避免提交比 ack 更小的位移导致回退
+        this.commitManager.ack(tp, consumerRecord.offset() + 1);
+        this.commitManager.commitSync(Collections.singleton(tp));
+    }
+
+    /**
+     * 创建一个托管的并行消费者，由它订阅主题、拉取消息并提交位移，创建后不要再通过此对象直接使用 Consumer，
+     * 调用 {@link KafkaConsumerRunner#start()} 开始消费，{@link KafkaConsumerRunner#close()} 停止消费并关闭 Consumer
+     *
+     * <p>runner 通过暂停积压的分区实现背压，处理缓慢时不会被踢出消费组，
+     * 所以通过 {@link #KafkaConsumerTemplate(Map)} 创建时可以调大 max.poll.records 以提高吞吐量
+     *
+     * @param topics  topics
+     * @param handler 消息处理方法，在工作线程中调用
+     * @param config  并行消费配置
+     * @return 返回尚未启动的 KafkaConsumerRunner
+     */
+    public KafkaConsumerRunner createRunner(List<String> topics, RecordHandler handler, KafkaConsumerRunnerConfig config) {
+        return new KafkaConsumerRunner(this.kafkaConsumer, topics, handler, config);
     }
 
     public void close() {
-        this.kafkaConsumer.close();
+        try {
+            this.commitManager.commitSync();
+        } finally {
+            this.kafkaConsumer.close();
+        }
     }
 
     private Consumer<String, String> createConservativeKafkaConsumer(String bootstrapServers, String groupId, String clientId) {
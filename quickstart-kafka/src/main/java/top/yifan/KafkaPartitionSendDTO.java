@@ -0,0 +1,68 @@
+package top.yifan;
+
+import top.yifan.entity.BaseObject;
+
+/**
+ * KafkaPartitionSendDTO
+ *
+ * @author Star Zheng
+ */
+public class KafkaPartitionSendDTO extends BaseObject {
+
+    private String topic;
+
+    private Integer partition;
+
+    private Long sent;
+
+    private Long failed;
+
+    private Integer inFlight;
+
+    public KafkaPartitionSendDTO() {}
+
+    public KafkaPartitionSendDTO(String topic, Integer partition) {
+        this.topic = topic;
+        this.partition = partition;
+    }
+
+    public String getTopic() {
+        return topic;
+    }
+
+    public void setTopic(String topic) {
+        this.topic = topic;
+    }
+
+    public Integer getPartition() {
+        return partition;
+    }
+
+    public void setPartition(Integer partition) {
+        this.partition = partition;
+    }
+
+    public Long getSent() {
+        return sent;
+    }
+
+    public void setSent(Long sent) {
+        this.sent = sent;
+    }
+
+    public Long getFailed() {
+        return failed;
+    }
+
+    public void setFailed(Long failed) {
+        this.failed = failed;
+    }
+
+    public Integer getInFlight() {
+        return inFlight;
+    }
+
+    public void setInFlight(Integer inFlight) {
+        this.inFlight = inFlight;
+    }
+}
@@ -1,15 +1,26 @@
 package top.yifan;
 
 import org.apache.kafka.clients.producer.ProducerConfig;
+import org.apache.kafka.common.PartitionInfo;
+import org.apache.kafka.common.TopicPartition;
 import org.apache.kafka.common.serialization.StringSerializer;
 import org.springframework.kafka.core.DefaultKafkaProducerFactory;
 import org.springframework.kafka.core.KafkaTemplate;
 import org.springframework.kafka.support.SendResult;
 import org.springframework.util.CollectionUtils;
 import org.springframework.util.concurrent.ListenableFuture;
+import top.yifan.partitioner.Murmur2PartitionSelector;
+import top.yifan.partitioner.PartitionSelector;
+import top.yifan.partitioner.PartitionSendStats;
+import top.yifan.partitioner.StickyPartitionSelector;
 
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * KafkaProducerTemplate
@@ -19,6 +30,8 @@ import java.util.Map;
 public class KafkaProducerTemplate {
 
     private final KafkaTemplate<String, String> kafkaTemplate;
+    private final PartitionSendStats partitionStats = new PartitionSendStats();
+    private volatile PartitionSelector partitionSelector = new Murmur2PartitionSelector();
 
     public KafkaProducerTemplate(Map<String, Object> configs) {
         this.kafkaTemplate = this.createKafkaTemplate(configs);
@@ -28,6 +41,21 @@ public class KafkaProducerTemplate {
         this.kafkaTemplate = this.createConservativeKafkaTemplate(bootstrapServers);
     }
 
+    public KafkaProducerTemplate(String bootstrapServers, KafkaThroughputConfig config) {
+        this.kafkaTemplate = this.createThroughputKafkaTemplate(bootstrapServers, config);
+        this.partitionSelector = new Murmur2PartitionSelector(new StickyPartitionSelector(config.getBatchSize()));
+    }
+
+    /**
+     * 设置 {@link #send(String, String, String)} 与 {@link #sendBatch(String, Collection)} 选择分区的方式，
+     * 默认有key时按 murmur2 选择分区，没有key时使用粘性分区
+     *
+     * @param partitionSelector 分区选择器，参见 top.yifan.partitioner 包中的实现
+     */
+    public void setPartitionSelector(PartitionSelector partitionSelector) {
+        this.partitionSelector = Objects.requireNonNull(partitionSelector, "Partition selector is required");
+    }
+
     /**
      * 异步发送消息
      *
@@ -37,7 +65,82 @@ public class KafkaProducerTemplate {
      * @return 返回发送后的Future对象，调用Future.get()方法可以实现异步转同步
      */
     public ListenableFuture<SendResult<String, String>> send(String topic, int partition, String data) {
-        return kafkaTemplate.send(topic, partition, String.valueOf(partition), data);
+        return doSend(topic, partition, String.valueOf(partition), data);
+    }
+
+    /**
+     * 异步发送消息，由分区选择器根据业务key选择分区，同一个key的消息总是写入同一个分区
+     *
+     * @param topic topic
+     * @param key   业务key，为null时消息不保证顺序，由分区选择器选择任意分区
+     * @param data  数据
+     * @return 返回发送后的Future对象，调用Future.get()方法可以实现异步转同步
+     */
+    public ListenableFuture<SendResult<String, String>> send(String topic, String key, String data) {
+        Objects.requireNonNull(topic, "Topic is required");
+        List<PartitionInfo> partitions = kafkaTemplate.partitionsFor(topic);
+        return doSend(topic, selectPartition(topic, key, data, partitions), key, data);
+    }
+
+    /**
+     * 异步发送一批消息，消息不指定key，由分区选择器选择分区（默认的粘性分区使同一批次尽量写入同一分区，减少请求数）。
+     *
+     * <p>返回的Future在所有消息都得到响应后完成，结果与 data 的迭代顺序一致；
+     * 只要有一条消息发送失败，Future就以其中一条失败的异常完成，此时其余消息可能已经发送成功。
+     *
+     * @param topic topic
+     * @param data  数据
+     * @return 返回聚合后的Future对象
+     */
+    public CompletableFuture<List<SendResult<String, String>>> sendBatch(String topic, Collection<String> data) {
+        Objects.requireNonNull(topic, "Topic is required");
+        List<PartitionInfo> partitions = kafkaTemplate.partitionsFor(topic);
+        List<CompletableFuture<SendResult<String, String>>> futures = new ArrayList<>(data.size());
+        for (String value : data) {
+            futures.add(doSend(topic, selectPartition(topic, null, value, partitions), null, value).completable());
+        }
+        return CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0])).thenApply(v -> {
+            List<SendResult<String, String>> results = new ArrayList<>(futures.size());
+            for (CompletableFuture<SendResult<String, String>> future : futures) {
+                results.add(future.join());
+            }
+            return results;
+        });
+    }
+
+    /**
+     * @return 返回每个分区的累计发送数、失败数以及尚未得到响应的消息数
+     */
+    public List<KafkaPartitionSendDTO> listPartitionSendStats() {
+        List<KafkaPartitionSendDTO> list = new ArrayList<>();
+        for (TopicPartition tp : partitionStats.partitions()) {
+            KafkaPartitionSendDTO dto = new KafkaPartitionSendDTO(tp.topic(), tp.partition());
+            dto.setSent(partitionStats.getSent(tp));
+            dto.setFailed(partitionStats.getFailed(tp));
+            dto.setInFlight(partitionStats.getInFlight(tp));
+            list.add(dto);
+        }
+        return list;
+    }
+
+    private int selectPartition(String topic, String key, String data, List<PartitionInfo> partitions) {
+        // 按字符数估算消息大小，只用于粘性分区判断何时更换分区
+        int valueSize = data == null ? 0 : data.length();
+        return partitionSelector.select(topic, key, valueSize, partitions, partitionStats);
+    }
+
+    private ListenableFuture<SendResult<String, String>> doSend(String topic, int partition, String key, String data) {
+        TopicPartition tp = new TopicPartition(topic, partition);
+        partitionStats.onSend(tp);
+        ListenableFuture<SendResult<String, String>> future;
+        try {
+            future = kafkaTemplate.send(topic, partition, key, data);
+        } catch (RuntimeException e) {
+            partitionStats.onComplete(tp, false);
+            throw e;
+        }
+        future.addCallback(result -> partitionStats.onComplete(tp, true), e -> partitionStats.onComplete(tp, false));
+        return future;
     }
 
     /**
@@ -75,6 +178,47 @@ public class KafkaProducerTemplate {
         return createKafkaTemplate(configs);
     }
 
+    /**
+     * 创建一个高吞吐的KafkaTemplate对象。
+     *
+     * <p>与 {@link #createConservativeKafkaTemplate(String)} 相反，它让KafkaProducer在 linger.ms 内把发往同一分区的消息
+     * 合并为一个批次并压缩后发送，一个请求可以携带成百上千条消息。开启幂等生产者，使 acks=all 时的重试
+     * 不会产生重复消息，且每个连接最多5个未完成的请求时仍能保证分区内的顺序。
+     * 除bootstrapServers外，使用了如下的配置：
+     * <ul>
+     *  <li>batch.size、linger.ms、compression.type、buffer.memory、max.block.ms、acks 取自 config</li>
+     *  <li>max.in.flight.requests.per.connection=5</li>
+     *  <li>enable.idempotence=true（仅当acks=all时）</li>
+     *  <li>serializer=string</li>
+     * </ul>
+     *
+     * @param bootstrapServers Kafka服务器地址
+     * @param config           高吞吐配置
+     * @return 返回创建成功后的KafkaTemplate对象
+     */
+    private KafkaTemplate<String, String> createThroughputKafkaTemplate(String bootstrapServers,
+                                                                       KafkaThroughputConfig config) {
+        Objects.requireNonNull(config, "Config is required");
+        boolean idempotence = "all".equals(config.getAcks()) || "-1".equals(config.getAcks());
+        Map<String, Object> configs = new HashMap<>();
+        configs.put(ProducerConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrapServers);
+        configs.put(ProducerConfig.ACKS_CONFIG, config.getAcks());
+        configs.put(ProducerConfig.ENABLE_IDEMPOTENCE_CONFIG, idempotence);
+        configs.put(ProducerConfig.MAX_IN_FLIGHT_REQUESTS_PER_CONNECTION, 5);
+        configs.put(ProducerConfig.MAX_REQUEST_SIZE_CONFIG, 10485760); // set to 10MB, default: 1MB
+        configs.put(ProducerConfig.BATCH_SIZE_CONFIG, config.getBatchSize());
+        configs.put(ProducerConfig.LINGER_MS_CONFIG, config.getLingerMs());
+        configs.put(ProducerConfig.COMPRESSION_TYPE_CONFIG, config.getCompressionType());
+        configs.put(ProducerConfig.BUFFER_MEMORY_CONFIG, config.getBufferMemory());
+        configs.put(ProducerConfig.MAX_BLOCK_MS_CONFIG, config.getMaxBlockMs());
+        configs.put(ProducerConfig.REQUEST_TIMEOUT_MS_CONFIG, 90 * 1000);
+        configs.put(ProducerConfig.KEY_SERIALIZER_CLASS_CONFIG, StringSerializer.class);
+        configs.put(ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG, StringSerializer.class);
+        configs.put(ProducerConfig.METADATA_MAX_AGE_CONFIG, 60 * 1000); // 强制刷新元数据时间间隔, 60s
+
+        return createKafkaTemplate(configs);
+    }
+
     private KafkaTemplate<String, String> createKafkaTemplate(Map<String, Object> producerConfigs) {
         if (CollectionUtils.isEmpty(producerConfigs)) {
             throw new IllegalArgumentException("Configuration cannot be empty");
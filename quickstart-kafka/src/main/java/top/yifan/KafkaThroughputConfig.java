@@ -0,0 +1,126 @@
+package top.yifan;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 高吞吐生产者配置，参见 {@link KafkaProducerTemplate#KafkaProducerTemplate(String, KafkaThroughputConfig)}
+ *
+ * @author Star Zheng
+ */
+public class KafkaThroughputConfig {
+
+    private static final List<String> COMPRESSION_TYPES = Arrays.asList("none", "gzip", "snappy", "lz4", "zstd");
+
+    private int batchSize;            // 每个分区一个批次的最大字节数
+    private int lingerMs;             // 批次未满时最多等待的时间
+    private String compressionType;   // 压缩方式，lz4 CPU 开销最小，zstd 压缩比最高
+    private long bufferMemory;        // 等待发送的消息可以使用的内存，用完后 send 将阻塞 maxBlockMs
+    private long maxBlockMs;          // send 因缓冲区已满或等待元数据而阻塞的最长时间
+    private String acks;
+
+    private KafkaThroughputConfig() {
+    }
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    public int getLingerMs() {
+        return lingerMs;
+    }
+
+    public String getCompressionType() {
+        return compressionType;
+    }
+
+    public long getBufferMemory() {
+        return bufferMemory;
+    }
+
+    public long getMaxBlockMs() {
+        return maxBlockMs;
+    }
+
+    public String getAcks() {
+        return acks;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public static class Builder {
+
+        private int batchSize = 256 * 1024;
+        private int lingerMs = 10;
+        private String compressionType = "lz4";
+        private long bufferMemory = 128L * 1024 * 1024;
+        private long maxBlockMs = 60 * 1000L;
+        private String acks = "all";
+
+        public KafkaThroughputConfig build() {
+            if (batchSize <= 0) {
+                throw new IllegalArgumentException("Batch size must be positive");
+            }
+            if (lingerMs < 0) {
+                throw new IllegalArgumentException("Linger must not be negative");
+            }
+            if (!COMPRESSION_TYPES.contains(compressionType)) {
+                throw new IllegalArgumentException("Compression type must be one of " + COMPRESSION_TYPES);
+            }
+            if (bufferMemory < batchSize) {
+                throw new IllegalArgumentException("Buffer memory must be at least one batch");
+            }
+            if (maxBlockMs < 0) {
+                throw new IllegalArgumentException("Max block must not be negative");
+            }
+            KafkaThroughputConfig config = new KafkaThroughputConfig();
+            config.batchSize = batchSize;
+            config.lingerMs = lingerMs;
+            config.compressionType = compressionType;
+            config.bufferMemory = bufferMemory;
+            config.maxBlockMs = maxBlockMs;
+            config.acks = acks;
+            return config;
+        }
+
+        public Builder batchSize(int batchSize) {
+            this.batchSize = batchSize;
+            return this;
+        }
+
+        public Builder lingerMs(int lingerMs) {
+            this.lingerMs = lingerMs;
+            return this;
+        }
+
+        /**
+         * @param compressionType - none、gzip、snappy、lz4 或 zstd
+         */
+        public Builder compressionType(String compressionType) {
+            this.compressionType = compressionType;
+            return this;
+        }
+
+        public Builder bufferMemory(long bufferMemory) {
+            this.bufferMemory = bufferMemory;
+            return this;
+        }
+
+        public Builder maxBlockMs(long maxBlockMs) {
+            this.maxBlockMs = maxBlockMs;
+            return this;
+        }
+
+        /**
+         * @param acks - 0、1 或 all，默认为 all，配合幂等生产者保证不丢失、不重复
+         */
+        public Builder acks(String acks) {
+            this.acks = acks;
+            return this;
+        }
+
+    }
+
+}
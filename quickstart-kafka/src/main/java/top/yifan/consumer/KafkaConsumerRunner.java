@@ -0,0 +1,487 @@
+package top.yifan.consumer;
+
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerRebalanceListener;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.ConsumerRecords;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.errors.WakeupException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 托管的并行消费者：由一个拉取线程负责 poll 与提交位移，消息分发到工作线程池中处理。
+ *
+ * <p>每个分区（{@link OrderingMode#KEY} 模式下为分区中的每组key）对应一个串行通道，通道内的消息按位移顺序依次处理，
+ * 不同通道在线程池中并行执行，所以一条处理缓慢的消息只会阻塞它所在的通道。消息可能乱序完成，
+ * 每个分区只提交从最早的未完成消息之前连续完成的位移，保证至少处理一次，
+ * 位移由 {@link OffsetCommitManager} 合并后提交。
+ *
+ * <p>分区积压的消息超过高水位时暂停拉取该分区，降到低水位以下时恢复（参见 {@link KafkaConsumerRunnerConfig.Builder#waterMarks}），
+ * 拉取线程始终在 poll，所以处理缓慢不会超过 max.poll.interval.ms 而触发再均衡，max.poll.records 也可以相应调大。
+ *
+ * <p>{@link RecordHandler} 抛出 Error 时该消息不会被标记为完成，所在的通道不再处理后续的消息，runner 随之停止：
+ * 提交各分区中已连续完成的位移后关闭 Consumer，这条消息及之后的消息将在重启后重新消费。
+ *
+ * <p>Consumer 不是线程安全的，所有对它的调用（poll、提交、再均衡回调）都在拉取线程中进行，工作线程只更新位移跟踪器。
+ *
+ * @author Star Zheng
+ */
+public class KafkaConsumerRunner implements Closeable {
+
+    private static final Logger log = LoggerFactory.getLogger(KafkaConsumerRunner.class);
+
+    private static final AtomicInteger RUNNER_SEQUENCE = new AtomicInteger();
+
+    private final Consumer<String, String> consumer;
+    private final Collection<String> topics;
+    private final RecordHandler handler;
+    private final KafkaConsumerRunnerConfig config;
+    private final int id = RUNNER_SEQUENCE.incrementAndGet();
+    private final ExecutorService workers;
+
+    private final Map<TopicPartition, PartitionOffsetTracker> trackers = new ConcurrentHashMap<>();
+    /**
+     * 只在拉取线程中访问
+     */
+    private final Map<TopicPartition, Lane[]> lanes = new HashMap<>();
+    private final OffsetCommitManager commitManager;
+    /**
+     * 因为积压而暂停拉取的分区，只在拉取线程中修改
+     */
+    private final Set<TopicPartition> paused = ConcurrentHashMap.newKeySet();
+
+    private final AtomicLong processedCount = new AtomicLong();
+    private final AtomicLong failedCount = new AtomicLong();
+
+    private volatile boolean running;
+    private Thread pollThread;
+
+    /**
+     * @param consumer - 由此对象独占使用的 Consumer，需关闭自动提交，关闭 runner 时一并关闭
+     * @param topics   - 订阅的主题
+     * @param handler  - 消息处理方法
+     * @param config   - 配置
+     */
+    public KafkaConsumerRunner(Consumer<String, String> consumer, Collection<String> topics, RecordHandler handler,
+                               KafkaConsumerRunnerConfig config) {
+        this.consumer = Objects.requireNonNull(consumer, "Consumer is required");
+        this.topics = new ArrayList<>(Objects.requireNonNull(topics, "Topics is required"));
+        this.handler = Objects.requireNonNull(handler, "Handler is required");
+        this.config = Objects.requireNonNull(config, "Config is required");
+        this.commitManager = new OffsetCommitManager(consumer, config.getCommitIntervalMs(), config.getCommitBatchSize());
+        AtomicInteger threadSequence = new AtomicInteger();
+        this.workers = new ThreadPoolExecutor(config.getWorkerThreads(), config.getWorkerThreads(),
+                0L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(), r -> {
+            Thread t = new Thread(r, "kafka-consumer-runner-" + id + "-worker-" + threadSequence.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /**
+     * 启动拉取线程，只能调用一次
+     */
+    public synchronized void start() {
+        if (pollThread != null) {
+            throw new IllegalStateException("Runner has already been started");
+        }
+        running = true;
+        pollThread = new Thread(this::pollLoop, "kafka-consumer-runner-" + id);
+        pollThread.start();
+    }
+
+    /**
+     * 停止拉取，丢弃尚未开始处理的消息（它们的位移不会被提交，重启后将重新消费），
+     * 等待正在处理的消息完成后提交位移并关闭 Consumer
+     */
+    @Override
+    public void close() {
+        Thread thread;
+        synchronized (this) {
+            thread = pollThread;
+            if (thread == null || !running) {
+                return;
+            }
+            running = false;
+        }
+        consumer.wakeup();
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * @return 拉取线程是否仍在运行，调用 {@link #close()} 或处理方法抛出 Error 后返回false
+     */
+    public boolean isRunning() {
+        return running;
+    }
+
+    public long getProcessedCount() {
+        return processedCount.get();
+    }
+
+    public long getFailedCount() {
+        return failedCount.get();
+    }
+
+    public long getCommitCount() {
+        return commitManager.getCommitCount();
+    }
+
+    /**
+     * @return 返回当前因为积压而暂停拉取的分区
+     */
+    public Set<TopicPartition> getPausedPartitions() {
+        return Collections.unmodifiableSet(paused);
+    }
+
+    private void pollLoop() {
+        try {
+            consumer.subscribe(topics, new RebalanceListener());
+            while (running) {
+                ConsumerRecords<String, String> records = consumer.poll(Duration.ofMillis(config.getPollTimeoutMs()));
+                for (ConsumerRecord<String, String> record : records) {
+                    dispatch(record);
+                }
+                ackCompleted(trackers.keySet());
+                applyBackpressure();
+                commitManager.maybeCommitAsync();
+            }
+        } catch (WakeupException e) {
+            if (running) {
+                log.error("Kafka consumer runner-{} woken up unexpectedly", id, e);
+            }
+        } catch (Exception e) {
+            log.error("Kafka consumer runner-{} stopped", id, e);
+        } finally {
+            running = false;
+            shutdown();
+        }
+    }
+
+    private void dispatch(ConsumerRecord<String, String> record) {
+        TopicPartition tp = new TopicPartition(record.topic(), record.partition());
+        PartitionOffsetTracker tracker = trackers.computeIfAbsent(tp, k -> new PartitionOffsetTracker());
+        tracker.track(record.offset());
+        Lane[] partitionLanes = lanes.computeIfAbsent(tp, k ->
+                new Lane[config.getOrderingMode() == OrderingMode.KEY ? config.getKeyLanesPerPartition() : 1]);
+        int index = record.key() == null ? 0 : Math.floorMod(record.key().hashCode(), partitionLanes.length);
+        Lane lane = partitionLanes[index];
+        if (lane == null) {
+            lane = new Lane(tracker);
+            partitionLanes[index] = lane;
+        }
+        lane.submit(record);
+    }
+
+    private void process(ConsumerRecord<String, String> record, PartitionOffsetTracker tracker) {
+        try {
+            handler.handle(record);
+        } catch (Exception e) {
+            failedCount.incrementAndGet();
+            try {
+                config.getErrorHandler().accept(record, e);
+            } catch (RuntimeException ex) {
+                log.error("Error handler failed for record {}-{}@{}", record.topic(), record.partition(),
+                        record.offset(), ex);
+            }
+        } catch (Error e) {
+            // 不标记为完成，该分区的位移停在这条消息之前，停止后重新消费，保证至少处理一次
+            failedCount.incrementAndGet();
+            log.error("Handler threw error for record {}-{}@{}, stopping runner-{}", record.topic(),
+                    record.partition(), record.offset(), id, e);
+            // 拉取线程在下一次 poll 返回后退出
+            running = false;
+            throw e;
+        }
+        processedCount.incrementAndGet();
+        tracker.complete(record.offset());
+    }
+
+    /**
+     * 暂停积压超过高水位的分区，恢复积压已降到低水位以下的分区。暂停只影响拉取，
+     * 下一次 poll 仍会发送心跳，已拉取的消息照常处理
+     */
+    private void applyBackpressure() {
+        List<TopicPartition> toPause = new ArrayList<>();
+        List<TopicPartition> toResume = new ArrayList<>();
+        for (Map.Entry<TopicPartition, PartitionOffsetTracker> entry : trackers.entrySet()) {
+            TopicPartition tp = entry.getKey();
+            int pending = entry.getValue().pendingCount();
+            if (paused.contains(tp)) {
+                if (pending <= config.getLowWaterMark()) {
+                    toResume.add(tp);
+                }
+            } else if (pending >= config.getHighWaterMark()) {
+                toPause.add(tp);
+            }
+        }
+        if (!toPause.isEmpty()) {
+            consumer.pause(toPause);
+            paused.addAll(toPause);
+            log.debug("Kafka consumer runner-{} paused {}", id, toPause);
+        }
+        if (!toResume.isEmpty()) {
+            consumer.resume(toResume);
+            paused.removeAll(toResume);
+            log.debug("Kafka consumer runner-{} resumed {}", id, toResume);
+        }
+    }
+
+    /**
+     * 将各分区连续完成的位移交给 {@link OffsetCommitManager}，由它决定何时提交
+     */
+    private void ackCompleted(Collection<TopicPartition> partitions) {
+        for (TopicPartition tp : partitions) {
+            PartitionOffsetTracker tracker = trackers.get(tp);
+            if (tracker == null) {
+                continue;
+            }
+            long offset = tracker.committableOffset();
+            if (offset >= 0) {
+                commitManager.ack(tp, offset);
+            }
+        }
+    }
+
+    /**
+     * 在拉取线程中调用，丢弃尚未开始处理的消息，等待正在处理的消息完成，然后提交并关闭
+     */
+    private void shutdown() {
+        for (Lane[] partitionLanes : lanes.values()) {
+            cancel(partitionLanes);
+        }
+        workers.shutdown();
+        try {
+            if (!workers.awaitTermination(config.getShutdownTimeoutMs(), TimeUnit.MILLISECONDS)) {
+                log.warn("Kafka consumer runner-{} timed out waiting for workers", id);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        try {
+            ackCompleted(trackers.keySet());
+            commitFinal();
+        } catch (RuntimeException e) {
+            log.warn("Kafka consumer runner-{} failed to commit offsets on close", id, e);
+        } finally {
+            consumer.close();
+        }
+    }
+
+    /**
+     * close 调用 wakeup 时拉取线程可能不在 poll 中（正在分发消息或异步提交），此时 wakeup 会在下一次调用 Consumer
+     * 的阻塞方法时才抛出 WakeupException。wakeup 只生效一次，重试一次即可提交
+     */
+    private void commitFinal() {
+        try {
+            commitManager.commitSync();
+        } catch (WakeupException e) {
+            commitManager.commitSync();
+        }
+    }
+
+    private static void cancel(Lane[] partitionLanes) {
+        for (Lane lane : partitionLanes) {
+            if (lane != null) {
+                lane.cancel();
+            }
+        }
+    }
+
+    private class RebalanceListener implements ConsumerRebalanceListener {
+
+        @Override
+        public void onPartitionsRevoked(Collection<TopicPartition> partitions) {
+            // 丢弃尚未处理的消息并等待正在处理的消息完成，然后提交已完成的部分。不等待的话，分区被重新分配回来后
+            // 会从已提交的位移重新拉取，同一条消息可能在新旧两个通道中同时处理，后面的消息也可能先于它完成
+            drain(partitions);
+            ackCompleted(partitions);
+            commitManager.onPartitionsRevoked(partitions);
+            release(partitions);
+        }
+
+        @Override
+        public void onPartitionsAssigned(Collection<TopicPartition> partitions) {
+        }
+
+        @Override
+        public void onPartitionsLost(Collection<TopicPartition> partitions) {
+            // 分区已被其它消费者接管，不能再提交
+            commitManager.onPartitionsLost(partitions);
+            release(partitions);
+        }
+
+        /**
+         * 取消分区的全部通道，最多等待 shutdownTimeoutMs 让正在处理的消息完成
+         */
+        private void drain(Collection<TopicPartition> partitions) {
+            List<Lane> draining = new ArrayList<>();
+            for (TopicPartition tp : partitions) {
+                Lane[] partitionLanes = lanes.get(tp);
+                if (partitionLanes == null) {
+                    continue;
+                }
+                for (Lane lane : partitionLanes) {
+                    if (lane != null) {
+                        lane.cancel();
+                        draining.add(lane);
+                    }
+                }
+            }
+            long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(config.getShutdownTimeoutMs());
+            try {
+                for (Lane lane : draining) {
+                    if (!lane.awaitIdle(deadline)) {
+                        log.warn("Kafka consumer runner-{} timed out waiting for in-flight records of {}",
+                                id, partitions);
+                        return;
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        private void release(Collection<TopicPartition> partitions) {
+            for (TopicPartition tp : partitions) {
+                Lane[] partitionLanes = lanes.remove(tp);
+                if (partitionLanes != null) {
+                    cancel(partitionLanes);
+                }
+                trackers.remove(tp);
+                // 重新分配的分区默认不是暂停状态
+                paused.remove(tp);
+            }
+        }
+
+    }
+
+    /**
+     * 串行通道，消息按提交顺序依次处理；每处理一条消息后重新提交到线程池，避免一个繁忙的通道长期占用工作线程
+     */
+    private class Lane implements Runnable {
+
+        private final PartitionOffsetTracker tracker;
+        private final ArrayDeque<ConsumerRecord<String, String>> queue = new ArrayDeque<>();
+        private boolean scheduled;
+        private boolean cancelled;
+        /**
+         * 是否有消息正在处理
+         */
+        private boolean processing;
+
+        Lane(PartitionOffsetTracker tracker) {
+            this.tracker = tracker;
+        }
+
+        void submit(ConsumerRecord<String, String> record) {
+            synchronized (this) {
+                if (cancelled) {
+                    return;
+                }
+                queue.addLast(record);
+                if (scheduled) {
+                    return;
+                }
+                scheduled = true;
+            }
+            schedule();
+        }
+
+        synchronized void cancel() {
+            cancelled = true;
+            queue.clear();
+        }
+
+        /**
+         * 等待正在处理的消息完成
+         *
+         * @return 超过 deadlineNanos 仍未完成时返回false
+         */
+        synchronized boolean awaitIdle(long deadlineNanos) throws InterruptedException {
+            while (processing) {
+                long remaining = deadlineNanos - System.nanoTime();
+                if (remaining <= 0) {
+                    return false;
+                }
+                TimeUnit.NANOSECONDS.timedWait(this, remaining);
+            }
+            return true;
+        }
+
+        @Override
+        public void run() {
+            ConsumerRecord<String, String> record;
+            synchronized (this) {
+                record = queue.pollFirst();
+                if (record == null) {
+                    scheduled = false;
+                    return;
+                }
+                processing = true;
+            }
+            boolean completed = false;
+            try {
+                process(record, tracker);
+                completed = true;
+            } finally {
+                boolean hasMore;
+                synchronized (this) {
+                    if (!completed) {
+                        // 处理方法抛出了 Error，后续的消息不能越过这条未完成的消息处理
+                        cancelled = true;
+                        queue.clear();
+                    }
+                    processing = false;
+                    notifyAll();
+                    hasMore = !queue.isEmpty();
+                    if (!hasMore) {
+                        scheduled = false;
+                    }
+                }
+                if (hasMore) {
+                    schedule();
+                }
+            }
+        }
+
+        private void schedule() {
+            try {
+                workers.execute(this);
+            } catch (RejectedExecutionException e) {
+                // 线程池已关闭，剩余的消息不再处理
+                synchronized (this) {
+                    scheduled = false;
+                    queue.clear();
+                }
+            }
+        }
+
+    }
+
+}
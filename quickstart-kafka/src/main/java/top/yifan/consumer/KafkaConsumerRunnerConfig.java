@@ -0,0 +1,178 @@
+package top.yifan.consumer;
+
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Objects;
+import java.util.function.BiConsumer;
+
+/**
+ * {@link KafkaConsumerRunner} 的配置
+ *
+ * @author Star Zheng
+ */
+public class KafkaConsumerRunnerConfig {
+
+    private static final Logger log = LoggerFactory.getLogger(KafkaConsumerRunner.class);
+
+    private int workerThreads;               // 处理消息的线程数
+    private OrderingMode orderingMode;
+    private int keyLanesPerPartition;        // KEY 模式下每个分区的并行度，key 按哈希值分配到各个通道
+    private long pollTimeoutMs;
+    private long commitIntervalMs;           // 提交位移的间隔
+    private long commitBatchSize;            // 确认的位移数达到此值时不等间隔结束立即提交
+    private long shutdownTimeoutMs;          // 关闭时等待正在处理的消息完成的最长时间
+    private int highWaterMark;               // 分区中未完成的消息数达到此值时暂停拉取该分区
+    private int lowWaterMark;                // 暂停的分区中未完成的消息数降到此值以下时恢复拉取
+    private BiConsumer<ConsumerRecord<String, String>, Exception> errorHandler;
+
+    private KafkaConsumerRunnerConfig() {
+    }
+
+    public int getWorkerThreads() {
+        return workerThreads;
+    }
+
+    public OrderingMode getOrderingMode() {
+        return orderingMode;
+    }
+
+    public int getKeyLanesPerPartition() {
+        return keyLanesPerPartition;
+    }
+
+    public long getPollTimeoutMs() {
+        return pollTimeoutMs;
+    }
+
+    public long getCommitIntervalMs() {
+        return commitIntervalMs;
+    }
+
+    public long getCommitBatchSize() {
+        return commitBatchSize;
+    }
+
+    public long getShutdownTimeoutMs() {
+        return shutdownTimeoutMs;
+    }
+
+    public int getHighWaterMark() {
+        return highWaterMark;
+    }
+
+    public int getLowWaterMark() {
+        return lowWaterMark;
+    }
+
+    public BiConsumer<ConsumerRecord<String, String>, Exception> getErrorHandler() {
+        return errorHandler;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public static class Builder {
+
+        private int workerThreads = Runtime.getRuntime().availableProcessors() * 2;
+        private OrderingMode orderingMode = OrderingMode.PARTITION;
+        private int keyLanesPerPartition = 16;
+        private long pollTimeoutMs = 100L;
+        private long commitIntervalMs = 1000L;
+        private long commitBatchSize = 10000L;
+        private long shutdownTimeoutMs = 30 * 1000L;
+        private int highWaterMark = 2000;
+        private int lowWaterMark = 1000;
+        private BiConsumer<ConsumerRecord<String, String>, Exception> errorHandler = (record, e) ->
+                log.error("Failed to handle record {}-{}@{}", record.topic(), record.partition(), record.offset(), e);
+
+        public KafkaConsumerRunnerConfig build() {
+            if (workerThreads <= 0) {
+                throw new IllegalArgumentException("Worker threads must be positive");
+            }
+            if (keyLanesPerPartition <= 0) {
+                throw new IllegalArgumentException("Key lanes per partition must be positive");
+            }
+            if (pollTimeoutMs <= 0 || commitIntervalMs <= 0 || commitBatchSize <= 0) {
+                throw new IllegalArgumentException("Poll timeout, commit interval and commit batch size must be positive");
+            }
+            if (shutdownTimeoutMs < 0) {
+                throw new IllegalArgumentException("Shutdown timeout must not be negative");
+            }
+            if (lowWaterMark < 0 || lowWaterMark >= highWaterMark) {
+                throw new IllegalArgumentException("Low water mark must be between 0 and high water mark");
+            }
+            KafkaConsumerRunnerConfig config = new KafkaConsumerRunnerConfig();
+            config.workerThreads = workerThreads;
+            config.orderingMode = Objects.requireNonNull(orderingMode, "Ordering mode is required");
+            config.keyLanesPerPartition = keyLanesPerPartition;
+            config.pollTimeoutMs = pollTimeoutMs;
+            config.commitIntervalMs = commitIntervalMs;
+            config.commitBatchSize = commitBatchSize;
+            config.shutdownTimeoutMs = shutdownTimeoutMs;
+            config.highWaterMark = highWaterMark;
+            config.lowWaterMark = lowWaterMark;
+            config.errorHandler = Objects.requireNonNull(errorHandler, "Error handler is required");
+            return config;
+        }
+
+        public Builder workerThreads(int workerThreads) {
+            this.workerThreads = workerThreads;
+            return this;
+        }
+
+        public Builder orderingMode(OrderingMode orderingMode) {
+            this.orderingMode = orderingMode;
+            return this;
+        }
+
+        public Builder keyLanesPerPartition(int keyLanesPerPartition) {
+            this.keyLanesPerPartition = keyLanesPerPartition;
+            return this;
+        }
+
+        public Builder pollTimeoutMs(long pollTimeoutMs) {
+            this.pollTimeoutMs = pollTimeoutMs;
+            return this;
+        }
+
+        public Builder commitIntervalMs(long commitIntervalMs) {
+            this.commitIntervalMs = commitIntervalMs;
+            return this;
+        }
+
+        public Builder commitBatchSize(long commitBatchSize) {
+            this.commitBatchSize = commitBatchSize;
+            return this;
+        }
+
+        public Builder shutdownTimeoutMs(long shutdownTimeoutMs) {
+            this.shutdownTimeoutMs = shutdownTimeoutMs;
+            return this;
+        }
+
+        /**
+         * 分区中已拉取但尚未连续完成的消息数达到 highWaterMark 时暂停拉取该分区，降到 lowWaterMark 以下时恢复，
+         * 暂停期间仍然 poll 以维持心跳，所以处理缓慢时不会被踢出消费组。
+         * 一次 poll 最多返回 max.poll.records 条消息，所以每个分区缓冲的消息数最多为 highWaterMark + max.poll.records
+         */
+        public Builder waterMarks(int lowWaterMark, int highWaterMark) {
+            this.lowWaterMark = lowWaterMark;
+            this.highWaterMark = highWaterMark;
+            return this;
+        }
+
+        /**
+         * @param errorHandler - {@link RecordHandler} 抛出异常时调用，默认记录日志；调用后该消息仍视为已完成。
+         *                     抛出 Error 时不调用此方法，该消息不会被标记为完成，runner 将停止，重启后重新消费
+         */
+        public Builder errorHandler(BiConsumer<ConsumerRecord<String, String>, Exception> errorHandler) {
+            this.errorHandler = errorHandler;
+            return this;
+        }
+
+    }
+
+}
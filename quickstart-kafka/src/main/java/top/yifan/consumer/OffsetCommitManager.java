@@ -0,0 +1,183 @@
+package top.yifan.consumer;
+
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerRebalanceListener;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.common.TopicPartition;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 合并提交位移：确认的位移先记录在内存中，每个分区只保留最大值，达到时间间隔或确认数量后用一次 commitAsync 提交所有分区，
+ * 分区被回收或者关闭时再用 commitSync 提交剩余的部分。与每条消息一次 commitSync 相比，提交请求减少了几个数量级，
+ * 而且仍然只提交已确认的位移，所以保证至少处理一次。
+ *
+ * <p>{@link #ack} 可以在任意线程中调用；其它方法会调用 Consumer，必须在拉取线程中调用。
+ * 作为 {@link ConsumerRebalanceListener} 使用时，分区被回收前同步提交，分区丢失时（已被其它消费者接管）只丢弃不提交。
+ *
+ * @author Star Zheng
+ */
+public class OffsetCommitManager implements ConsumerRebalanceListener {
+
+    private static final Logger log = LoggerFactory.getLogger(OffsetCommitManager.class);
+
+    private final Consumer<?, ?> consumer;
+    private final long commitIntervalMs;
+    private final long commitBatchSize;
+
+    private final Map<TopicPartition, Long> acked = new ConcurrentHashMap<>();
+    /**
+     * 只在拉取线程中访问，commitAsync 的回调也在拉取线程中执行
+     */
+    private final Map<TopicPartition, Long> committed = new HashMap<>();
+    private final AtomicLong pendingAcks = new AtomicLong();
+    private final AtomicLong commitCount = new AtomicLong();
+
+    private long lastCommitTime = System.currentTimeMillis();
+
+    /**
+     * @param consumer         - 提交位移所用的 Consumer
+     * @param commitIntervalMs - 两次异步提交的最长间隔
+     * @param commitBatchSize  - 确认的位移数达到此值时立即异步提交，不必等到间隔结束
+     */
+    public OffsetCommitManager(Consumer<?, ?> consumer, long commitIntervalMs, long commitBatchSize) {
+        if (commitIntervalMs <= 0 || commitBatchSize <= 0) {
+            throw new IllegalArgumentException("Commit interval and batch size must be positive");
+        }
+        this.consumer = Objects.requireNonNull(consumer, "Consumer is required");
+        this.commitIntervalMs = commitIntervalMs;
+        this.commitBatchSize = commitBatchSize;
+    }
+
+    /**
+     * 确认分区中 nextOffset 之前的消息都已处理完成，小于已确认位移的调用将被忽略
+     *
+     * @param partition  - 分区
+     * @param nextOffset - 下一条要消费的位移，即最后一条已处理消息的位移 + 1
+     */
+    public void ack(TopicPartition partition, long nextOffset) {
+        acked.compute(partition, (tp, old) -> {
+            if (old == null) {
+                pendingAcks.incrementAndGet();
+                return nextOffset;
+            }
+            if (nextOffset > old) {
+                pendingAcks.addAndGet(nextOffset - old);
+                return nextOffset;
+            }
+            return old;
+        });
+    }
+
+    /**
+     * 距上次提交超过时间间隔，或者确认的位移数达到 commitBatchSize 时，异步提交所有分区
+     */
+    public void maybeCommitAsync() {
+        if (pendingAcks.get() >= commitBatchSize || System.currentTimeMillis() - lastCommitTime >= commitIntervalMs) {
+            commitAsync();
+        }
+    }
+
+    /**
+     * 异步提交所有有新进展的分区，失败时在下一次提交中重试
+     */
+    public void commitAsync() {
+        lastCommitTime = System.currentTimeMillis();
+        pendingAcks.set(0L);
+        Map<TopicPartition, OffsetAndMetadata> offsets = collectOffsets(acked.keySet());
+        if (offsets.isEmpty()) {
+            return;
+        }
+        // 提前记录，避免回调之前的下一次提交重复提交相同的位移
+        offsets.forEach((tp, offset) -> committed.put(tp, offset.offset()));
+        commitCount.incrementAndGet();
+        consumer.commitAsync(offsets, (result, e) -> {
+            if (e != null) {
+                log.warn("Failed to commit offsets {}", result, e);
+                result.forEach((tp, offset) -> committed.remove(tp, offset.offset()));
+            }
+        });
+    }
+
+    /**
+     * 同步提交所有有新进展的分区
+     */
+    public void commitSync() {
+        commitSync(acked.keySet());
+    }
+
+    /**
+     * 同步提交指定分区中有新进展的部分
+     *
+     * @throws org.apache.kafka.common.KafkaException 如果提交失败
+     */
+    public void commitSync(Collection<TopicPartition> partitions) {
+        Map<TopicPartition, OffsetAndMetadata> offsets = collectOffsets(partitions);
+        if (offsets.isEmpty()) {
+            return;
+        }
+        commitCount.incrementAndGet();
+        consumer.commitSync(offsets);
+        offsets.forEach((tp, offset) -> committed.put(tp, offset.offset()));
+    }
+
+    /**
+     * 丢弃指定分区的记录，分区重新分配给当前消费者后从已提交的位移开始跟踪
+     */
+    public void forget(Collection<TopicPartition> partitions) {
+        for (TopicPartition tp : partitions) {
+            acked.remove(tp);
+            committed.remove(tp);
+        }
+    }
+
+    @Override
+    public void onPartitionsRevoked(Collection<TopicPartition> partitions) {
+        try {
+            commitSync(partitions);
+        } catch (RuntimeException e) {
+            log.warn("Failed to commit offsets of revoked partitions {}", partitions, e);
+        } finally {
+            forget(partitions);
+        }
+    }
+
+    @Override
+    public void onPartitionsAssigned(Collection<TopicPartition> partitions) {
+    }
+
+    @Override
+    public void onPartitionsLost(Collection<TopicPartition> partitions) {
+        forget(partitions);
+    }
+
+    /**
+     * @return 返回提交请求的次数，包括异步与同步提交
+     */
+    public long getCommitCount() {
+        return commitCount.get();
+    }
+
+    private Map<TopicPartition, OffsetAndMetadata> collectOffsets(Collection<TopicPartition> partitions) {
+        Map<TopicPartition, OffsetAndMetadata> offsets = new HashMap<>();
+        for (TopicPartition tp : partitions) {
+            Long offset = acked.get(tp);
+            if (offset == null) {
+                continue;
+            }
+            Long last = committed.get(tp);
+            if (last == null || offset > last) {
+                offsets.put(tp, new OffsetAndMetadata(offset));
+            }
+        }
+        return offsets;
+    }
+
+}
@@ -0,0 +1,20 @@
+package top.yifan.consumer;
+
+/**
+ * 消息的处理顺序
+ *
+ * @author Star Zheng
+ */
+public enum OrderingMode {
+
+    /**
+     * 同一分区的消息依次处理，不同分区并行处理
+     */
+    PARTITION,
+
+    /**
+     * 同一分区中相同key的消息依次处理，不同key并行处理；没有key的消息按分区顺序处理
+     */
+    KEY
+
+}
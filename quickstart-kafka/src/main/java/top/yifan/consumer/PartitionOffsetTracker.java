@@ -0,0 +1,48 @@
+package top.yifan.consumer;
+
+import java.util.ArrayDeque;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * 跟踪一个分区中已分发消息的完成情况。消息可以乱序完成，但只有从最早的未完成消息之前连续完成的部分可以提交，
+ * 否则重启后会跳过尚未处理完的消息
+ *
+ * @author Star Zheng
+ */
+class PartitionOffsetTracker {
+
+    /**
+     * 按分发顺序（即位移顺序）排列的未提交的位移，位移之间可能有空洞（压缩的topic、事务标记），所以不能用区间表示
+     */
+    private final ArrayDeque<Long> pending = new ArrayDeque<>();
+    private final Set<Long> completed = new HashSet<>();
+
+    private long committable = -1L;
+
+    synchronized void track(long offset) {
+        pending.addLast(offset);
+    }
+
+    synchronized void complete(long offset) {
+        completed.add(offset);
+        while (!pending.isEmpty() && completed.remove(pending.peekFirst())) {
+            committable = pending.pollFirst() + 1;
+        }
+    }
+
+    /**
+     * @return 返回可以提交的位移（最后一条连续完成的消息的位移 + 1），还没有可提交的位移时返回-1
+     */
+    synchronized long committableOffset() {
+        return committable;
+    }
+
+    /**
+     * @return 返回已分发但尚未连续完成的消息数
+     */
+    synchronized int pendingCount() {
+        return pending.size();
+    }
+
+}
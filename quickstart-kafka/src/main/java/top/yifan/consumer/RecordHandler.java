@@ -0,0 +1,19 @@
+package top.yifan.consumer;
+
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+
+/**
+ * 处理一条消息，由 {@link KafkaConsumerRunner} 的工作线程调用
+ *
+ * @author Star Zheng
+ */
+@FunctionalInterface
+public interface RecordHandler {
+
+    /**
+     * 方法返回（无论是否抛出异常）即视为该消息已处理完成，其位移可以被提交，
+     * 所以需要重试的消息应当在方法内部重试，或者在 {@link KafkaConsumerRunnerConfig.Builder#errorHandler} 中转存
+     */
+    void handle(ConsumerRecord<String, String> record) throws Exception;
+
+}
@@ -0,0 +1,150 @@
+package top.yifan.partitioner;
+
+import org.apache.kafka.common.Node;
+import org.apache.kafka.common.PartitionInfo;
+import org.apache.kafka.common.TopicPartition;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * 感知负载的粘性分区选择：没有key的消息换分区时，选择 leader 上未响应消息最少的分区；
+ * 当前分区的 leader 未响应的消息超过 maxInFlightPerLeader、且有其它 leader 未超过时提前换分区，避开响应变慢的broker。
+ * 所有 leader 都超过上限时提前换分区无济于事，仍然保持粘性，以免每条消息都换分区而攒不满批次。
+ * 有key的消息仍按 murmur2 选择分区，以保证同一个key的顺序
+ *
+ * @author Star Zheng
+ */
+public class LoadAwarePartitionSelector extends StickyPartitionSelector {
+
+    private final int maxInFlightPerLeader;
+
+    /**
+     * 按分区号缓存的 TopicPartition，避免每次查询统计时创建对象
+     */
+    private final Map<String, TopicPartition[]> topicPartitions = new ConcurrentHashMap<>();
+    /**
+     * shouldSwitch 中计算的负载，紧接着的 choose 直接使用。同一个主题的选择在父类中是串行的
+     */
+    private final Map<String, Loads> pendingLoads = new ConcurrentHashMap<>();
+
+    /**
+     * @param stickyBytes          - 在一个分区上连续写入的字节数，通常与 batch.size 相同
+     * @param maxInFlightPerLeader - 一个 leader 上未响应消息数的上限，超过后换到其它 leader 的分区
+     */
+    public LoadAwarePartitionSelector(int stickyBytes, int maxInFlightPerLeader) {
+        super(stickyBytes);
+        if (maxInFlightPerLeader <= 0) {
+            throw new IllegalArgumentException("Max in-flight per leader must be positive");
+        }
+        this.maxInFlightPerLeader = maxInFlightPerLeader;
+    }
+
+    @Override
+    protected boolean shouldSwitch(String topic, int current, List<PartitionInfo> partitions, PartitionSendStats stats) {
+        Node leader = null;
+        for (PartitionInfo partition : partitions) {
+            if (partition.partition() == current) {
+                leader = partition.leader();
+                break;
+            }
+        }
+        if (leader == null) {
+            return false;
+        }
+        Loads loads = loads(topic, partitions, stats);
+        if (loads.ofLeader(leader) <= maxInFlightPerLeader) {
+            return false;
+        }
+        for (int load : loads.leaders.values()) {
+            if (load <= maxInFlightPerLeader) {
+                pendingLoads.put(topic, loads);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    protected int choose(String topic, int current, List<PartitionInfo> available, List<PartitionInfo> partitions,
+                         PartitionSendStats stats) {
+        Loads loads = pendingLoads.remove(topic);
+        if (loads == null) {
+            loads = loads(topic, partitions, stats);
+        }
+        int chosen = -1;
+        int ties = 0;
+        long minLoad = Long.MAX_VALUE;
+        for (PartitionInfo partition : available) {
+            Node leader = partition.leader();
+            // leader 的负载相同时，再比较分区自身的负载，使同一 leader 上的分区也尽量均匀
+            long load = leader == null ? 0L : (long) loads.ofLeader(leader) << 32;
+            load += loads.ofPartition(partition.partition());
+            if (load < minLoad) {
+                minLoad = load;
+                ties = 0;
+            }
+            // 负载相同的分区中等概率随机选择一个
+            if (load == minLoad && ThreadLocalRandom.current().nextInt(++ties) == 0) {
+                chosen = partition.partition();
+            }
+        }
+        return chosen;
+    }
+
+    /**
+     * 一次遍历统计每个分区与每个 leader 的未响应消息数
+     */
+    private Loads loads(String topic, List<PartitionInfo> partitions, PartitionSendStats stats) {
+        int maxPartition = 0;
+        for (PartitionInfo partition : partitions) {
+            maxPartition = Math.max(maxPartition, partition.partition());
+        }
+        TopicPartition[] tps = topicPartitions(topic, maxPartition);
+        Loads loads = new Loads(maxPartition + 1);
+        for (PartitionInfo partition : partitions) {
+            int inFlight = stats.getInFlight(tps[partition.partition()]);
+            loads.partitions[partition.partition()] = inFlight;
+            if (partition.leader() != null) {
+                loads.leaders.merge(partition.leader(), inFlight, Integer::sum);
+            }
+        }
+        return loads;
+    }
+
+    private TopicPartition[] topicPartitions(String topic, int maxPartition) {
+        TopicPartition[] tps = topicPartitions.get(topic);
+        if (tps == null || tps.length <= maxPartition) {
+            tps = new TopicPartition[maxPartition + 1];
+            for (int i = 0; i < tps.length; i++) {
+                tps[i] = new TopicPartition(topic, i);
+            }
+            topicPartitions.put(topic, tps);
+        }
+        return tps;
+    }
+
+    private static final class Loads {
+
+        private final int[] partitions;
+        private final Map<Node, Integer> leaders = new HashMap<>();
+
+        Loads(int partitionCount) {
+            this.partitions = new int[partitionCount];
+        }
+
+        int ofLeader(Node leader) {
+            Integer load = leaders.get(leader);
+            return load == null ? 0 : load;
+        }
+
+        int ofPartition(int partition) {
+            return partition < partitions.length ? partitions[partition] : 0;
+        }
+
+    }
+
+}
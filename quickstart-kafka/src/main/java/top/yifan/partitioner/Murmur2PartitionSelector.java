@@ -0,0 +1,43 @@
+package top.yifan.partitioner;
+
+import org.apache.kafka.common.PartitionInfo;
+import org.apache.kafka.common.utils.Utils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * 按key的 murmur2 哈希选择分区，与Kafka默认分区器的算法一致，所以与其它使用默认分区器的生产者写入相同的分区，
+ * 同一个key的消息总在同一分区中保持顺序。没有key的消息交给 keylessSelector 处理
+ *
+ * @author Star Zheng
+ */
+public class Murmur2PartitionSelector implements PartitionSelector {
+
+    private final PartitionSelector keylessSelector;
+
+    public Murmur2PartitionSelector() {
+        this(new StickyPartitionSelector());
+    }
+
+    public Murmur2PartitionSelector(PartitionSelector keylessSelector) {
+        this.keylessSelector = Objects.requireNonNull(keylessSelector, "Keyless selector is required");
+    }
+
+    @Override
+    public int select(String topic, String key, int valueSize, List<PartitionInfo> partitions, PartitionSendStats stats) {
+        if (key == null) {
+            return keylessSelector.select(topic, null, valueSize, partitions, stats);
+        }
+        return partitionForKey(key, partitions.size());
+    }
+
+    /**
+     * 按全部分区（而不是可用分区）取模，分区 leader 切换时key所在的分区不会改变
+     */
+    static int partitionForKey(String key, int numPartitions) {
+        return Utils.toPositive(Utils.murmur2(key.getBytes(StandardCharsets.UTF_8))) % numPartitions;
+    }
+
+}
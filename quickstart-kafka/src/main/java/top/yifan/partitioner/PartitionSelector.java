@@ -0,0 +1,24 @@
+package top.yifan.partitioner;
+
+import org.apache.kafka.common.PartitionInfo;
+
+import java.util.List;
+
+/**
+ * 在 KafkaProducerTemplate 发送消息前选择分区
+ *
+ * @author Star Zheng
+ */
+public interface PartitionSelector {
+
+    /**
+     * @param topic      - topic
+     * @param key        - 业务key，可以为null
+     * @param valueSize  - 消息大小的估算值
+     * @param partitions - topic 的全部分区
+     * @param stats      - 每个分区的发送统计
+     * @return 返回分区号
+     */
+    int select(String topic, String key, int valueSize, List<PartitionInfo> partitions, PartitionSendStats stats);
+
+}
@@ -0,0 +1,83 @@
+package top.yifan.partitioner;
+
+import org.apache.kafka.common.Node;
+import org.apache.kafka.common.PartitionInfo;
+import org.apache.kafka.common.TopicPartition;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 每个分区的发送统计：累计发送数、失败数以及已发送但尚未得到响应的消息数
+ *
+ * @author Star Zheng
+ */
+public class PartitionSendStats {
+
+    private final Map<TopicPartition, Counter> counters = new ConcurrentHashMap<>();
+
+    public void onSend(TopicPartition partition) {
+        Counter counter = counters.computeIfAbsent(partition, k -> new Counter());
+        counter.sent.increment();
+        counter.inFlight.incrementAndGet();
+    }
+
+    public void onComplete(TopicPartition partition, boolean success) {
+        Counter counter = counters.get(partition);
+        if (counter == null) {
+            return;
+        }
+        counter.inFlight.decrementAndGet();
+        if (!success) {
+            counter.failed.increment();
+        }
+    }
+
+    public long getSent(TopicPartition partition) {
+        Counter counter = counters.get(partition);
+        return counter == null ? 0L : counter.sent.sum();
+    }
+
+    public long getFailed(TopicPartition partition) {
+        Counter counter = counters.get(partition);
+        return counter == null ? 0L : counter.failed.sum();
+    }
+
+    public int getInFlight(TopicPartition partition) {
+        Counter counter = counters.get(partition);
+        return counter == null ? 0 : counter.inFlight.get();
+    }
+
+    /**
+     * @return 返回 leader 为指定节点的所有分区中尚未得到响应的消息总数
+     */
+    public int getInFlightOfLeader(List<PartitionInfo> partitions, Node leader) {
+        int inFlight = 0;
+        for (PartitionInfo partition : partitions) {
+            if (leader.equals(partition.leader())) {
+                inFlight += getInFlight(new TopicPartition(partition.topic(), partition.partition()));
+            }
+        }
+        return inFlight;
+    }
+
+    /**
+     * @return 返回发送过消息的分区
+     */
+    public Iterable<TopicPartition> partitions() {
+        return Collections.unmodifiableSet(counters.keySet());
+    }
+
+    private static class Counter {
+
+        private final LongAdder sent = new LongAdder();
+        private final LongAdder failed = new LongAdder();
+        private final AtomicInteger inFlight = new AtomicInteger();
+
+    }
+
+}
@@ -0,0 +1,113 @@
+package top.yifan.partitioner;
+
+import org.apache.kafka.common.PartitionInfo;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * 没有key的消息连续写入同一个分区，累计达到 stickyBytes 后再换到另一个可用分区，
+ * 这样KafkaProducer可以攒满一个批次再发送，而不是把消息轮流分散到每个分区、每个批次都只有几条消息。
+ * 有key的消息仍按 murmur2 选择分区
+ *
+ * @author Star Zheng
+ */
+public class StickyPartitionSelector implements PartitionSelector {
+
+    /**
+     * 与 KafkaProducer 默认的 batch.size 一致
+     */
+    public static final int DEFAULT_STICKY_BYTES = 16384;
+
+    private final int stickyBytes;
+    private final Map<String, Sticky> stickies = new ConcurrentHashMap<>();
+
+    public StickyPartitionSelector() {
+        this(DEFAULT_STICKY_BYTES);
+    }
+
+    /**
+     * @param stickyBytes - 在一个分区上连续写入的字节数，通常与 batch.size 相同
+     */
+    public StickyPartitionSelector(int stickyBytes) {
+        if (stickyBytes <= 0) {
+            throw new IllegalArgumentException("Sticky bytes must be positive");
+        }
+        this.stickyBytes = stickyBytes;
+    }
+
+    @Override
+    public int select(String topic, String key, int valueSize, List<PartitionInfo> partitions, PartitionSendStats stats) {
+        if (key != null) {
+            return Murmur2PartitionSelector.partitionForKey(key, partitions.size());
+        }
+        Sticky sticky = stickies.computeIfAbsent(topic, k -> new Sticky());
+        synchronized (sticky) {
+            List<PartitionInfo> available = availablePartitions(partitions);
+            if (sticky.partition < 0 || sticky.bytes >= stickyBytes || !contains(available, sticky.partition)
+                    || shouldSwitch(topic, sticky.partition, partitions, stats)) {
+                sticky.partition = choose(topic, sticky.partition, available, partitions, stats);
+                sticky.bytes = 0;
+            }
+            sticky.bytes += Math.max(valueSize, 1);
+            return sticky.partition;
+        }
+    }
+
+    /**
+     * 在累计的字节数达到 stickyBytes 之前，是否提前换到其它分区
+     */
+    protected boolean shouldSwitch(String topic, int current, List<PartitionInfo> partitions, PartitionSendStats stats) {
+        return false;
+    }
+
+    /**
+     * 选择下一个分区，默认在其它可用分区中随机选择
+     *
+     * @param current    - 当前的分区，没有时为-1
+     * @param available  - 有 leader 的分区，所有分区都没有 leader 时为全部分区
+     * @param partitions - 全部分区
+     */
+    protected int choose(String topic, int current, List<PartitionInfo> available, List<PartitionInfo> partitions,
+                         PartitionSendStats stats) {
+        if (available.size() == 1) {
+            return available.get(0).partition();
+        }
+        for (; ; ) {
+            int partition = available.get(ThreadLocalRandom.current().nextInt(available.size())).partition();
+            if (partition != current) {
+                return partition;
+            }
+        }
+    }
+
+    private static List<PartitionInfo> availablePartitions(List<PartitionInfo> partitions) {
+        List<PartitionInfo> available = new ArrayList<>(partitions.size());
+        for (PartitionInfo partition : partitions) {
+            if (partition.leader() != null) {
+                available.add(partition);
+            }
+        }
+        return available.isEmpty() ? partitions : available;
+    }
+
+    private static boolean contains(List<PartitionInfo> partitions, int partition) {
+        for (PartitionInfo info : partitions) {
+            if (info.partition() == partition) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static class Sticky {
+
+        private int partition = -1;
+        private long bytes;
+
+    }
+
+}
@@ -0,0 +1,324 @@
+package top.yifan.consumer;
+
+import org.apache.kafka.clients.consumer.ConsumerRebalanceListener;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.MockConsumer;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.clients.consumer.OffsetResetStrategy;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.errors.WakeupException;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BooleanSupplier;
+
+/**
+ * KafkaConsumerRunnerTest
+ *
+ * @author Star Zheng
+ */
+public class KafkaConsumerRunnerTest {
+
+    private static final String TOPIC = "quickstart";
+
+    private final TopicPartition tp0 = new TopicPartition(TOPIC, 0);
+    private final TopicPartition tp1 = new TopicPartition(TOPIC, 1);
+
+    @Test
+    public void testPartitionOrderingAndCommit() throws Exception {
+        MockConsumer<String, String> consumer = newConsumer(Arrays.asList(tp0, tp1), 20, false);
+        Map<Integer, List<Long>> handled = new ConcurrentHashMap<>();
+        KafkaConsumerRunnerConfig config = KafkaConsumerRunnerConfig.builder()
+                .workerThreads(4)
+                .commitIntervalMs(10)
+                .build();
+        KafkaConsumerRunner runner = new KafkaConsumerRunner(consumer, Collections.singletonList(TOPIC), record -> {
+            Thread.sleep(ThreadLocalRandom.current().nextInt(2));
+            handled.computeIfAbsent(record.partition(), k -> Collections.synchronizedList(new ArrayList<>()))
+                    .add(record.offset());
+        }, config);
+        runner.start();
+        try {
+            await(() -> runner.getProcessedCount() == 40);
+            await(() -> committed(consumer, tp0) == 20 && committed(consumer, tp1) == 20);
+            for (List<Long> offsets : handled.values()) {
+                List<Long> sorted = new ArrayList<>(offsets);
+                Collections.sort(sorted);
+                Assert.assertEquals(sorted, offsets);
+            }
+        } finally {
+            runner.close();
+        }
+        Assert.assertTrue(consumer.closed());
+    }
+
+    @Test
+    public void testCommitStopsAtFirstIncompleteOffset() throws Exception {
+        MockConsumer<String, String> consumer = newConsumer(Collections.singletonList(tp0), 10, true);
+        CountDownLatch slowRecord = new CountDownLatch(1);
+        KafkaConsumerRunnerConfig config = KafkaConsumerRunnerConfig.builder()
+                .workerThreads(4)
+                .orderingMode(OrderingMode.KEY)
+                .commitIntervalMs(10)
+                .build();
+        KafkaConsumerRunner runner = new KafkaConsumerRunner(consumer, Collections.singletonList(TOPIC), record -> {
+            if (record.offset() == 0) {
+                slowRecord.await();
+            }
+        }, config);
+        runner.start();
+        try {
+            await(() -> runner.getProcessedCount() >= 5);
+            Thread.sleep(50);
+            Assert.assertEquals(-1L, committed(consumer, tp0));
+
+            slowRecord.countDown();
+            await(() -> committed(consumer, tp0) == 10);
+        } finally {
+            runner.close();
+        }
+    }
+
+    @Test
+    public void testHandlerErrorStopsRunner() throws Exception {
+        AtomicLong committedOnClose = new AtomicLong(-1L);
+        MockConsumer<String, String> consumer = new MockConsumer<String, String>(OffsetResetStrategy.EARLIEST) {
+            @Override
+            public synchronized void close() {
+                committedOnClose.set(KafkaConsumerRunnerTest.committed(this, tp0));
+                super.close();
+            }
+        };
+        addPollTask(consumer, Collections.singletonList(tp0), 10, false);
+        KafkaConsumerRunnerConfig config = KafkaConsumerRunnerConfig.builder()
+                .workerThreads(2)
+                .commitIntervalMs(10)
+                .build();
+        KafkaConsumerRunner runner = new KafkaConsumerRunner(consumer, Collections.singletonList(TOPIC), record -> {
+            if (record.offset() == 3) {
+                throw new AssertionError("Handler failed");
+            }
+        }, config);
+        runner.start();
+        try {
+            await(consumer::closed);
+            // 抛出 Error 的消息没有完成，位移停在它之前，后续的消息也不再处理
+            Assert.assertFalse(runner.isRunning());
+            Assert.assertEquals(3L, committedOnClose.get());
+            Assert.assertEquals(3, runner.getProcessedCount());
+            Assert.assertEquals(1, runner.getFailedCount());
+        } finally {
+            runner.close();
+        }
+    }
+
+    @Test
+    public void testRebalanceWaitsForInFlightRecords() throws Exception {
+        ListenerCapturingConsumer consumer = new ListenerCapturingConsumer();
+        consumer.schedulePollTask(() -> {
+            consumer.rebalance(Collections.singletonList(tp0));
+            consumer.updateBeginningOffsets(Collections.singletonMap(tp0, 0L));
+            addRecords(consumer, 0);
+        });
+        CountDownLatch slowRecordStarted = new CountDownLatch(1);
+        // MockConsumer 不会调用再均衡回调，这里模拟 eager 协议：回收全部分区后立即分配回来，并从已提交的位移重新拉取
+        consumer.schedulePollTask(() -> {
+            try {
+                Assert.assertTrue(slowRecordStarted.await(10, TimeUnit.SECONDS));
+            } catch (InterruptedException e) {
+                throw new IllegalStateException(e);
+            }
+            consumer.listener.onPartitionsRevoked(Collections.singletonList(tp0));
+            consumer.rebalance(Collections.emptyList());
+            consumer.rebalance(Collections.singletonList(tp0));
+            consumer.listener.onPartitionsAssigned(Collections.singletonList(tp0));
+            addRecords(consumer, committed(consumer, tp0));
+        });
+        List<Long> handled = Collections.synchronizedList(new ArrayList<>());
+        AtomicInteger active = new AtomicInteger();
+        AtomicInteger maxActive = new AtomicInteger();
+        KafkaConsumerRunnerConfig config = KafkaConsumerRunnerConfig.builder()
+                .workerThreads(4)
+                .commitIntervalMs(10)
+                .build();
+        KafkaConsumerRunner runner = new KafkaConsumerRunner(consumer, Collections.singletonList(TOPIC), record -> {
+            maxActive.accumulateAndGet(active.incrementAndGet(), Math::max);
+            try {
+                if (record.offset() == 1 && slowRecordStarted.getCount() > 0) {
+                    slowRecordStarted.countDown();
+                    Thread.sleep(200);
+                }
+                handled.add(record.offset());
+            } finally {
+                active.decrementAndGet();
+            }
+        }, config);
+        runner.start();
+        try {
+            await(() -> committed(consumer, tp0) == 5);
+            Assert.assertEquals(1, maxActive.get());
+            Assert.assertEquals(Arrays.asList(0L, 1L, 2L, 3L, 4L), handled);
+        } finally {
+            runner.close();
+        }
+    }
+
+    @Test
+    public void testCommitsOnCloseAfterPendingWakeup() throws Exception {
+        AtomicLong committedOnClose = new AtomicLong(-1L);
+        MockConsumer<String, String> consumer = new MockConsumer<String, String>(OffsetResetStrategy.EARLIEST) {
+            private boolean wakeupPending;
+
+            @Override
+            public synchronized void wakeup() {
+                wakeupPending = true;
+                super.wakeup();
+            }
+
+            @Override
+            public synchronized void commitSync(Map<TopicPartition, OffsetAndMetadata> offsets) {
+                // 与 KafkaConsumer 一样，poll 之外到达的 wakeup 在下一次阻塞调用中抛出
+                if (wakeupPending) {
+                    wakeupPending = false;
+                    throw new WakeupException();
+                }
+                super.commitSync(offsets);
+            }
+
+            @Override
+            public synchronized void close() {
+                committedOnClose.set(KafkaConsumerRunnerTest.committed(this, tp0));
+                super.close();
+            }
+        };
+        addPollTask(consumer, Collections.singletonList(tp0), 10, false);
+        KafkaConsumerRunnerConfig config = KafkaConsumerRunnerConfig.builder()
+                .workerThreads(2)
+                .commitIntervalMs(60 * 1000L)
+                .build();
+        KafkaConsumerRunner runner = new KafkaConsumerRunner(consumer, Collections.singletonList(TOPIC), record -> {
+        }, config);
+        runner.start();
+        await(() -> runner.getProcessedCount() == 10);
+        runner.close();
+        Assert.assertEquals(10L, committedOnClose.get());
+    }
+
+    @Test
+    public void testPausesPartitionAboveHighWaterMark() throws Exception {
+        MockConsumer<String, String> consumer = new MockConsumer<>(OffsetResetStrategy.EARLIEST);
+        consumer.schedulePollTask(() -> {
+            consumer.rebalance(Collections.singletonList(tp0));
+            consumer.updateBeginningOffsets(Collections.singletonMap(tp0, 0L));
+        });
+        // 每次 poll 新增5条消息，模拟 max.poll.records=5
+        for (int batch = 0; batch < 10; batch++) {
+            long first = batch * 5L;
+            consumer.schedulePollTask(() -> {
+                for (long offset = first; offset < first + 5; offset++) {
+                    consumer.addRecord(new ConsumerRecord<>(TOPIC, 0, offset, "key", "value-" + offset));
+                }
+            });
+        }
+        CountDownLatch slowRecord = new CountDownLatch(1);
+        KafkaConsumerRunnerConfig config = KafkaConsumerRunnerConfig.builder()
+                .workerThreads(2)
+                .commitIntervalMs(10)
+                .waterMarks(4, 10)
+                .build();
+        KafkaConsumerRunner runner = new KafkaConsumerRunner(consumer, Collections.singletonList(TOPIC), record -> {
+            if (record.offset() == 0) {
+                slowRecord.await();
+            }
+        }, config);
+        runner.start();
+        try {
+            await(() -> runner.getPausedPartitions().contains(tp0));
+            Thread.sleep(50);
+            Assert.assertEquals(10L, consumer.position(tp0));
+
+            slowRecord.countDown();
+            await(() -> committed(consumer, tp0) == 50);
+            Assert.assertTrue(runner.getPausedPartitions().isEmpty());
+        } finally {
+            runner.close();
+        }
+    }
+
+    private MockConsumer<String, String> newConsumer(List<TopicPartition> partitions, int recordsPerPartition,
+                                                     boolean distinctKeys) {
+        MockConsumer<String, String> consumer = new MockConsumer<>(OffsetResetStrategy.EARLIEST);
+        addPollTask(consumer, partitions, recordsPerPartition, distinctKeys);
+        return consumer;
+    }
+
+    private void addPollTask(MockConsumer<String, String> consumer, List<TopicPartition> partitions,
+                             int recordsPerPartition, boolean distinctKeys) {
+        consumer.schedulePollTask(() -> {
+            consumer.rebalance(partitions);
+            Map<TopicPartition, Long> beginningOffsets = new HashMap<>();
+            partitions.forEach(tp -> beginningOffsets.put(tp, 0L));
+            consumer.updateBeginningOffsets(beginningOffsets);
+            for (TopicPartition tp : partitions) {
+                for (long offset = 0; offset < recordsPerPartition; offset++) {
+                    String key = distinctKeys ? "key-" + offset : "key";
+                    consumer.addRecord(new ConsumerRecord<>(TOPIC, tp.partition(), offset, key, "value-" + offset));
+                }
+            }
+        });
+    }
+
+    private static void addRecords(MockConsumer<String, String> consumer, long fromOffset) {
+        for (long offset = fromOffset; offset < 5; offset++) {
+            consumer.addRecord(new ConsumerRecord<>(TOPIC, 0, offset, "key", "value-" + offset));
+        }
+    }
+
+    private static long committed(MockConsumer<String, String> consumer, TopicPartition tp) {
+        OffsetAndMetadata offset = consumer.committed(Collections.singleton(tp)).get(tp);
+        return offset == null ? -1L : offset.offset();
+    }
+
+    /**
+     * 记录订阅时传入的再均衡回调
+     */
+    private static class ListenerCapturingConsumer extends MockConsumer<String, String> {
+
+        private volatile ConsumerRebalanceListener listener;
+
+        ListenerCapturingConsumer() {
+            super(OffsetResetStrategy.EARLIEST);
+        }
+
+        @Override
+        public synchronized void subscribe(Collection<String> topics, ConsumerRebalanceListener listener) {
+            this.listener = listener;
+            super.subscribe(topics, listener);
+        }
+
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10_000L;
+        while (!condition.getAsBoolean()) {
+            if (System.currentTimeMillis() > deadline) {
+                Assert.fail("Condition not met within 10s");
+            }
+            Thread.sleep(5);
+        }
+    }
+
+}
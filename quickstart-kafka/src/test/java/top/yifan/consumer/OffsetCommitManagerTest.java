@@ -0,0 +1,68 @@
+package top.yifan.consumer;
+
+import org.apache.kafka.clients.consumer.MockConsumer;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.clients.consumer.OffsetResetStrategy;
+import org.apache.kafka.common.TopicPartition;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+/**
+ * OffsetCommitManagerTest
+ *
+ * @author Star Zheng
+ */
+public class OffsetCommitManagerTest {
+
+    private final TopicPartition tp0 = new TopicPartition("quickstart", 0);
+    private final TopicPartition tp1 = new TopicPartition("quickstart", 1);
+
+    @Test
+    public void testCoalescesAcksIntoFewCommits() {
+        MockConsumer<String, String> consumer = new MockConsumer<>(OffsetResetStrategy.EARLIEST);
+        consumer.assign(Arrays.asList(tp0, tp1));
+        OffsetCommitManager manager = new OffsetCommitManager(consumer, 60_000L, 100L);
+        for (long offset = 0; offset < 1000; offset++) {
+            manager.ack(tp0, offset + 1);
+            manager.ack(tp1, offset + 1);
+            manager.maybeCommitAsync();
+        }
+        // 每确认100个位移提交一次
+        Assert.assertEquals(20, manager.getCommitCount());
+        Assert.assertEquals(1000L, committed(consumer, tp0));
+
+        // 更小的位移不会导致回退
+        manager.ack(tp0, 10);
+        manager.commitSync();
+        Assert.assertEquals(20, manager.getCommitCount());
+        Assert.assertEquals(1000L, committed(consumer, tp0));
+    }
+
+    @Test
+    public void testCommitsOnRevokeButNotOnLost() {
+        MockConsumer<String, String> consumer = new MockConsumer<>(OffsetResetStrategy.EARLIEST);
+        consumer.assign(Arrays.asList(tp0, tp1));
+        OffsetCommitManager manager = new OffsetCommitManager(consumer, 60_000L, 10_000L);
+        manager.ack(tp0, 5);
+        manager.ack(tp1, 7);
+        manager.maybeCommitAsync();
+        Assert.assertEquals(0, manager.getCommitCount());
+
+        manager.onPartitionsLost(Collections.singleton(tp1));
+        manager.onPartitionsRevoked(Collections.singleton(tp0));
+        Assert.assertEquals(5L, committed(consumer, tp0));
+        Assert.assertEquals(-1L, committed(consumer, tp1));
+
+        manager.commitSync();
+        Assert.assertEquals(1, manager.getCommitCount());
+    }
+
+    private static long committed(MockConsumer<String, String> consumer, TopicPartition tp) {
+        OffsetAndMetadata offset = consumer.committed(Collections.singleton(tp)).get(tp);
+        return offset == null ? -1L : offset.offset();
+    }
+
+}
@@ -0,0 +1,99 @@
+package top.yifan.partitioner;
+
+import org.apache.kafka.clients.producer.internals.DefaultPartitioner;
+import org.apache.kafka.common.Cluster;
+import org.apache.kafka.common.Node;
+import org.apache.kafka.common.PartitionInfo;
+import org.apache.kafka.common.TopicPartition;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * PartitionSelectorTest
+ *
+ * @author Star Zheng
+ */
+public class PartitionSelectorTest {
+
+    private static final String TOPIC = "quickstart";
+
+    private final Node node0 = new Node(0, "localhost", 9092);
+    private final Node node1 = new Node(1, "localhost", 9093);
+
+    @Test
+    public void testKeyedRecordsMatchDefaultPartitioner() {
+        List<PartitionInfo> partitions = partitions(6);
+        Cluster cluster = new Cluster("cluster", java.util.Arrays.asList(node0, node1), partitions,
+                Collections.emptySet(), Collections.emptySet());
+        DefaultPartitioner defaultPartitioner = new DefaultPartitioner();
+        PartitionSelector selector = new Murmur2PartitionSelector();
+        PartitionSendStats stats = new PartitionSendStats();
+        for (int i = 0; i < 100; i++) {
+            String key = "order-" + i;
+            int expected = defaultPartitioner.partition(TOPIC, key, key.getBytes(StandardCharsets.UTF_8), null, null, cluster);
+            Assert.assertEquals(expected, selector.select(TOPIC, key, 10, partitions, stats));
+        }
+    }
+
+    @Test
+    public void testKeylessRecordsStickUntilBatchIsFull() {
+        List<PartitionInfo> partitions = partitions(6);
+        PartitionSelector selector = new StickyPartitionSelector(100);
+        PartitionSendStats stats = new PartitionSendStats();
+        int first = selector.select(TOPIC, null, 10, partitions, stats);
+        for (int i = 1; i < 10; i++) {
+            Assert.assertEquals(first, selector.select(TOPIC, null, 10, partitions, stats));
+        }
+        Assert.assertNotEquals(first, selector.select(TOPIC, null, 10, partitions, stats));
+    }
+
+    @Test
+    public void testLoadAwareAvoidsBusyLeader() {
+        List<PartitionInfo> partitions = partitions(6);
+        PartitionSendStats stats = new PartitionSendStats();
+        for (PartitionInfo partition : partitions) {
+            if (node0.equals(partition.leader())) {
+                for (int i = 0; i < 50; i++) {
+                    stats.onSend(new TopicPartition(TOPIC, partition.partition()));
+                }
+            }
+        }
+        PartitionSelector selector = new LoadAwarePartitionSelector(100, 20);
+        for (int i = 0; i < 100; i++) {
+            int partition = selector.select(TOPIC, null, 10, partitions, stats);
+            Assert.assertEquals(node1, partitions.get(partition).leader());
+        }
+    }
+
+    @Test
+    public void testLoadAwareStaysStickyWhenAllLeadersBusy() {
+        List<PartitionInfo> partitions = partitions(6);
+        PartitionSendStats stats = new PartitionSendStats();
+        for (PartitionInfo partition : partitions) {
+            for (int i = 0; i < 50; i++) {
+                stats.onSend(new TopicPartition(TOPIC, partition.partition()));
+            }
+        }
+        PartitionSelector selector = new LoadAwarePartitionSelector(100, 20);
+        int first = selector.select(TOPIC, null, 10, partitions, stats);
+        // 换到其它 leader 也不会更快，攒满 stickyBytes 之前不换分区
+        for (int i = 1; i < 10; i++) {
+            Assert.assertEquals(first, selector.select(TOPIC, null, 10, partitions, stats));
+        }
+    }
+
+    private List<PartitionInfo> partitions(int count) {
+        List<PartitionInfo> partitions = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            Node leader = i % 2 == 0 ? node0 : node1;
+            partitions.add(new PartitionInfo(TOPIC, i, leader, new Node[]{leader}, new Node[]{leader}));
+        }
+        return partitions;
+    }
+
+}